@@ -0,0 +1,417 @@
+/*
+	mkp-framework
+	Copyright (C) 2013 Fabien Lehuede / Damien Prot / Axel Grimault
+
+	This program is free software; you can redistribute it and/or modify
+	it under the terms of the GNU General Public License as published by
+	the Free Software Foundation; either version 2 of the License, or
+	(at your option) any later version.
+
+	This program is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+	GNU General Public License for more details.
+
+	You should have received a copy of the GNU General Public License along
+	with this program; if not, write to the Free Software Foundation, Inc.,
+	51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package edu.emn.mkp;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+/**
+ * Solves a set of instances in a single JVM, several instances at the same time, and writes
+ * a report comparing the results with the best known values.
+ * 
+ * **command**: java edu.emn.mkp.Batch [options] (directory | file | glob)...
+ * **Options**:
+ *  - -t (int) :maximum number of seconds given to the algorithm for each instance (default 30)
+ *  - -solver (name) :algorithm used to solve the problems (see SolverRegistry)
+ *  - -threads (int) :number of instances solved at the same time (default: number of processors)
+ *  - -seed (int) :seed of the random generators
+ *  - -optimal (file) :best known values, in the format of instances/optimal_solutions.txt
+ *    (default: optimal_solutions.txt in the directory of the first instance, if it exists)
+ *  - -format (csv | json) :format of the report (default csv)
+ *  - -o (file) :file of the report (default: standard output)
+ * 
+ * The CSV report has one line per instance
+ * fileName;objective;time;error;bestKnown;status;gap;message
+ * (same error codes as {@link Main}, and {@link #FAILED} if the instance cannot be read or solved,
+ * with the reason in message; gap to the best known value in percent), followed by a blank line
+ * and the mean, median, 90th and 99th percentiles and maximum of the gaps and times (the instances
+ * that failed are not counted).
+ * 
+ * @author Fabien Lehuede / Damien Prot / Axel Grimault 2016
+ * 
+ */
+public class Batch {
+
+    /** Names of the statistics returned by {@link #statistics(double[])} */
+    private static final String[] STATISTICS = { "mean", "p50", "p90", "p99", "max" };
+
+    /** Error code of an instance that cannot be read or solved */
+    public static final int FAILED = 3;
+
+    /** Result of an instance. */
+    private static class Result {
+	String fileName;
+	long objective;
+	long time;
+	int error;
+	/** Best known value, -1 if unknown */
+	long bestKnown = -1;
+	String status = "";
+	/** Reason of the failure, empty if the instance is solved */
+	String message = "";
+
+	/** @return Gap to the best known value (percent), NaN if unknown or if the instance failed */
+	double getGap() {
+	    if ((bestKnown <= 0) || (error == FAILED))
+		return Double.NaN;
+	    return 100.0 * (bestKnown - objective) / bestKnown;
+	}
+    }
+
+    /**
+     * Main method.
+     * 
+     * @param arg program parameters.
+     */
+    public static void main(String[] arg) {
+	long maxTime = 30;
+	String solverName = SolverRegistry.DEFAULT;
+	int nbThreads = Runtime.getRuntime().availableProcessors();
+	long seed = 0;
+	String optimalFile = null;
+	boolean json = false;
+	String output = null;
+	List<String> patterns = new ArrayList<>();
+
+	try {
+	    for (int i = 0; i < arg.length; i++) {
+		if (arg[i].compareTo("-help") == 0) {
+		    System.err.println("Solve a set of instances and write a report");
+		    System.err.println("command: java edu.emn.mkp.Batch [options] (directory | file | glob)...");
+		    System.err.println("Options:");
+		    System.err.println("\t-t\t\t: maximum number of seconds given to the algorithm for each instance (int)");
+		    System.err.println("\t-solver\t: algorithm used to solve the problems " + SolverRegistry.getNames());
+		    System.err.println("\t-threads\t: number of instances solved at the same time (int), default " + nbThreads);
+		    System.err.println("\t-seed\t: seed of the random generators (int)");
+		    System.err.println("\t-optimal\t: file of the best known values");
+		    System.err.println("\t-format\t: format of the report (csv or json)");
+		    System.err.println("\t-o\t\t: file of the report");
+		    return;
+		} else if (arg[i].compareTo("-t") == 0) {
+		    maxTime = Integer.parseInt(arg[++i]);
+		} else if (arg[i].compareTo("-solver") == 0) {
+		    solverName = arg[++i];
+		    SolverRegistry.create(solverName);
+		} else if (arg[i].compareTo("-threads") == 0) {
+		    nbThreads = Integer.parseInt(arg[++i]);
+		} else if (arg[i].compareTo("-seed") == 0) {
+		    seed = Long.parseLong(arg[++i]);
+		} else if (arg[i].compareTo("-optimal") == 0) {
+		    optimalFile = arg[++i];
+		} else if (arg[i].compareTo("-format") == 0) {
+		    json = arg[++i].equalsIgnoreCase("json");
+		} else if (arg[i].compareTo("-o") == 0) {
+		    output = arg[++i];
+		} else {
+		    patterns.add(arg[i]);
+		}
+	    }
+	} catch (Exception e) {
+	    System.err.println("Error: There is a problem in the program parameters: " + e.getMessage());
+	    System.exit(1);
+	}
+
+	try {
+	    List<String> files = listFiles(patterns);
+	    if (files.isEmpty()) {
+		System.err.println("Error : you must specify instance files, directories or globs as parameters.");
+		System.exit(1);
+	    }
+	    if ((optimalFile == null) && new File(new File(files.get(0)).getParentFile(), "optimal_solutions.txt").exists()) {
+		optimalFile = new File(new File(files.get(0)).getParentFile(), "optimal_solutions.txt").getPath();
+	    }
+	    Map<String, String[]> bestKnown = (optimalFile != null) ? readBestKnown(optimalFile) : new HashMap<>();
+
+	    // Solve the instances: an instance that fails is reported, the others are still solved
+	    ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, nbThreads));
+	    List<Result> results = new ArrayList<>();
+	    try {
+		List<Future<Result>> futures = new ArrayList<>();
+		for (String file : files) {
+		    final String fileName = file;
+		    final String name = solverName;
+		    final long time = maxTime;
+		    final long s = seed;
+		    futures.add(executor.submit(() -> solve(fileName, name, time, s)));
+		}
+		for (int k = 0; k < futures.size(); k++) {
+		    Result result;
+		    try {
+			result = futures.get(k).get();
+		    } catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			result = new Result();
+			result.fileName = files.get(k);
+			result.error = FAILED;
+			result.message = (cause.getMessage() != null) ? cause.getMessage() : cause.toString();
+			System.err.println("Error: " + result.fileName + ": " + result.message);
+		    }
+		    String[] best = bestKnown.get(baseName(result.fileName));
+		    if (best != null) {
+			result.bestKnown = Long.parseLong(best[0]);
+			result.status = best[1];
+		    }
+		    results.add(result);
+		}
+	    } finally {
+		executor.shutdown();
+	    }
+
+	    // Write the report
+	    PrintStream out = (output != null) ? new PrintStream(new FileOutputStream(output)) : System.out;
+	    if (json)
+		writeJson(out, results);
+	    else
+		writeCsv(out, results);
+	    out.flush();
+	    if (output != null)
+		out.close();
+
+	} catch (IOException e) {
+	    System.err.println("Error: An error has been met when reading the input files: " + e.getMessage());
+	    System.exit(1);
+	} catch (Exception e) {
+	    System.err.printf("Error: %s", e.getMessage());
+	    System.err.println();
+	    e.printStackTrace(System.err);
+	    System.exit(1);
+	}
+    }
+
+    /**
+     * Solve an instance as {@link Main} does.
+     */
+    private static Result solve(String fileName, String solverName, long maxTime, long seed) throws Exception {
+	Result result = new Result();
+	result.fileName = fileName;
+
+	MKPSolver mkp = new MKPSolver();
+	mkp.setEngine(SolverRegistry.create(solverName));
+	mkp.setNbThreads(1);
+	mkp.setSeed(seed);
+	Instance prob = new Instance(fileName);
+	mkp.setInstance(prob);
+	mkp.setSolution(new Solution(prob));
+
+	long t = System.currentTimeMillis();
+	mkp.solve(maxTime);
+	result.time = System.currentTimeMillis() - t;
+
+	boolean feasible = mkp.getSolution().validate();
+	mkp.getSolution().evaluate();
+	result.objective = mkp.getSolution().getObjective();
+	if (!feasible)
+	    result.error = 1;
+	else if (mkp.isOverdue() || (result.time > (maxTime + 1) * 1000))
+	    result.error = 2;
+	// The worker does not take the next instance while an abandoned engine still runs
+	mkp.awaitEngine();
+	return result;
+    }
+
+    /**
+     * @param patterns : directories (all the files ending with <code>.dat</code> or <code>.mkpb</code>),
+     * files or globs (such as <code>instances/OR5x*.dat</code>)
+     * @return The instance files, sorted by name within each pattern.
+     */
+    private static List<String> listFiles(List<String> patterns) throws IOException {
+	List<String> files = new ArrayList<>();
+	for (String pattern : patterns) {
+	    File file = new File(pattern);
+	    List<String> matches = new ArrayList<>();
+	    if (file.isDirectory()) {
+		String[] names = file.list((dir, name) -> name.endsWith(".dat") || name.endsWith(".mkpb"));
+		for (String name : names) {
+		    matches.add(new File(file, name).getPath());
+		}
+	    } else if (file.exists()) {
+		matches.add(pattern);
+	    } else {
+		Path parent = Paths.get(pattern).getParent();
+		Path directory = (parent != null) ? parent : Paths.get(".");
+		PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + pattern);
+		try (Stream<Path> paths = Files.list(directory)) {
+		    paths.filter(p -> matcher.matches((parent != null) ? p : p.getFileName()))
+		    .forEach(p -> matches.add(p.toString()));
+		}
+	    }
+	    String[] sorted = matches.toArray(new String[0]);
+	    Arrays.sort(sorted);
+	    files.addAll(Arrays.asList(sorted));
+	}
+	return files;
+    }
+
+    /**
+     * @return The name of the file without directory and extension.
+     */
+    private static String baseName(String fileName) {
+	String name = new File(fileName).getName();
+	int dot = name.lastIndexOf('.');
+	return (dot > 0) ? name.substring(0, dot) : name;
+    }
+
+    /**
+     * Read the best known values: one line per instance with its name, the value and a status
+     * (such as <code>Optimal</code> or <code>Feasible</code>).
+     * 
+     * @return Value and status, by instance name.
+     */
+    private static Map<String, String[]> readBestKnown(String fileName) throws IOException {
+	Map<String, String[]> bestKnown = new HashMap<>();
+	for (String line : Files.readAllLines(Paths.get(fileName))) {
+	    String[] fields = line.trim().split("\\s+");
+	    if ((fields.length >= 2) && fields[1].matches("-?\\d+")) {
+		bestKnown.put(fields[0], new String[] { fields[1], (fields.length >= 3) ? fields[2] : "" });
+	    }
+	}
+	return bestKnown;
+    }
+
+    /**
+     * @param values : sorted values
+     * @param p : percentile (between 0 and 100)
+     * @return The percentile p of the values (nearest rank), NaN if there is none.
+     */
+    private static double percentile(double[] values, double p) {
+	if (values.length == 0)
+	    return Double.NaN;
+	int rank = (int) Math.ceil(p / 100.0 * values.length);
+	return values[Math.min(values.length, Math.max(1, rank)) - 1];
+    }
+
+    /**
+     * @return The statistics of the values: mean, p50, p90, p99, max (NaN if there is no value).
+     */
+    private static double[] statistics(double[] values) {
+	Arrays.sort(values);
+	double mean = 0;
+	for (double value : values) {
+	    mean += value;
+	}
+	mean = (values.length == 0) ? Double.NaN : mean / values.length;
+	return new double[] { mean, percentile(values, 50), percentile(values, 90), percentile(values, 99),
+		percentile(values, 100) };
+    }
+
+    /**
+     * @return The gaps of the instances with a best known value.
+     */
+    private static double[] gaps(List<Result> results) {
+	return results.stream().mapToDouble(Result::getGap).filter(g -> !Double.isNaN(g)).toArray();
+    }
+
+    /**
+     * @return The solving times.
+     */
+    private static double[] times(List<Result> results) {
+	return results.stream().filter(r -> r.error != FAILED).mapToDouble(r -> r.time).toArray();
+    }
+
+    /**
+     * Write the report in the CSV format.
+     */
+    private static void writeCsv(PrintStream out, List<Result> results) {
+	out.println("fileName;objective;time;error;bestKnown;status;gap;message");
+	for (Result r : results) {
+	    out.println(r.fileName + ";" + r.objective + ";" + r.time + ";" + r.error + ";"
+		    + ((r.bestKnown >= 0) ? Long.toString(r.bestKnown) : "") + ";" + r.status + ";"
+		    + (Double.isNaN(r.getGap()) ? "" : String.format(Locale.ROOT, "%.3f", r.getGap())) + ";"
+		    + r.message.replace(';', ',').replaceAll("\\s+", " "));
+	}
+	out.println();
+	double[] gap = statistics(gaps(results));
+	double[] time = statistics(times(results));
+	out.println("statistic;gap;time");
+	for (int k = 0; k < STATISTICS.length; k++) {
+	    out.println(STATISTICS[k] + ";" + String.format(Locale.ROOT, "%.3f", gap[k]) + ";"
+		    + String.format(Locale.ROOT, "%.1f", time[k]));
+	}
+    }
+
+    /**
+     * Write the report in the JSON format.
+     */
+    private static void writeJson(PrintStream out, List<Result> results) {
+	out.println("{");
+	out.println("  \"instances\": [");
+	for (int k = 0; k < results.size(); k++) {
+	    Result r = results.get(k);
+	    out.print("    {\"fileName\": " + jsonString(r.fileName)
+		    + ", \"objective\": " + r.objective + ", \"time\": " + r.time + ", \"error\": " + r.error
+		    + ", \"bestKnown\": " + ((r.bestKnown >= 0) ? Long.toString(r.bestKnown) : "null")
+		    + ", \"status\": \"" + r.status + "\""
+		    + ", \"gap\": " + jsonNumber(r.getGap())
+		    + ", \"message\": " + jsonString(r.message) + "}");
+	    out.println((k < results.size() - 1) ? "," : "");
+	}
+	out.println("  ],");
+	double[] gap = statistics(gaps(results));
+	double[] time = statistics(times(results));
+	out.println("  \"summary\": {");
+	out.println("    \"instances\": " + results.size() + ",");
+	out.println("    \"errors\": " + results.stream().filter(r -> r.error != 0).count() + ",");
+	out.print("    \"gap\": {");
+	for (int k = 0; k < STATISTICS.length; k++) {
+	    out.print(((k > 0) ? ", " : "") + "\"" + STATISTICS[k] + "\": " + jsonNumber(gap[k]));
+	}
+	out.println("},");
+	out.print("    \"time\": {");
+	for (int k = 0; k < STATISTICS.length; k++) {
+	    out.print(((k > 0) ? ", " : "") + "\"" + STATISTICS[k] + "\": " + jsonNumber(time[k]));
+	}
+	out.println("}");
+	out.println("  }");
+	out.println("}");
+    }
+
+    /**
+     * @return The string in the JSON format, between quotes.
+     */
+    private static String jsonString(String value) {
+	return "\"" + value.replace("\\", "\\\\").replace("\"", "\\\"").replaceAll("\\s+", " ") + "\"";
+    }
+
+    /**
+     * @return The value in the JSON format (<code>null</code> for NaN).
+     */
+    private static String jsonNumber(double value) {
+	return Double.isNaN(value) ? "null" : String.format(Locale.ROOT, "%.3f", value);
+    }
+
+}
@@ -0,0 +1,242 @@
+/*
+	mkp-framework
+	Copyright (C) 2013 Fabien Lehuede / Damien Prot / Axel Grimault
+
+	This program is free software; you can redistribute it and/or modify
+	it under the terms of the GNU General Public License as published by
+	the Free Software Foundation; either version 2 of the License, or
+	(at your option) any later version.
+
+	This program is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+	GNU General Public License for more details.
+
+	You should have received a copy of the GNU General Public License along
+	with this program; if not, write to the Free Software Foundation, Inc.,
+	51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package edu.emn.mkp;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+/**
+ * Micro-benchmarks of the hot paths of {@link Instance}, {@link Solution} and of the solver engines.
+ * 
+ * Each benchmark is run on each instance file of a directory. A run is made of warm-up iterations,
+ * whose results are discarded, followed by measured iterations. The number of operations of an
+ * iteration is calibrated so that the iteration lasts about <code>-ms</code> milliseconds.
+ * The results of the operations are accumulated in a checksum so that the JIT compiler cannot
+ * remove them.
+ * 
+ * **command**: java edu.emn.mkp.Benchmark [options] [directory]
+ * **Options**:
+ *  - -w (int) :number of warm-up iterations (default 3)
+ *  - -i (int) :number of measured iterations (default 5)
+ *  - -ms (int) :duration of an iteration in milliseconds (default 200)
+ *  - -b (regex) :only run the benchmarks whose name matches the regular expression
+ * 
+ * **Program output**: one line per benchmark and instance
+ * benchmark;fileName;nsPerOp;stdDev
+ * 
+ * @author Fabien Lehuede / Damien Prot / Axel Grimault 2016
+ * 
+ */
+public class Benchmark {
+
+    /** An operation measured by the benchmark. */
+    private interface Operation {
+	/**
+	 * @param k : index of the operation in the iteration
+	 * @return A value added to the checksum.
+	 */
+	long run(int k) throws Exception;
+    }
+
+    /** Sum of the values returned by the operations */
+    private static long s_checksum = 0;
+
+    /** Number of random item indices prepared for the operations */
+    private static final int NB_INDICES = 1 << 12;
+
+    /**
+     * Main method.
+     * 
+     * @param arg program parameters.
+     */
+    public static void main(String[] arg) {
+	String directory = "instances";
+	int warmup = 3;
+	int iterations = 5;
+	long duration = 200;
+	Pattern filter = Pattern.compile(".*");
+
+	try {
+	    for (int i = 0; i < arg.length; i++) {
+		if (arg[i].compareTo("-w") == 0) {
+		    warmup = Integer.parseInt(arg[++i]);
+		} else if (arg[i].compareTo("-i") == 0) {
+		    iterations = Integer.parseInt(arg[++i]);
+		} else if (arg[i].compareTo("-ms") == 0) {
+		    duration = Integer.parseInt(arg[++i]);
+		} else if (arg[i].compareTo("-b") == 0) {
+		    filter = Pattern.compile(arg[++i]);
+		} else {
+		    directory = arg[i];
+		}
+	    }
+	} catch (Exception e) {
+	    System.err.println("Error: There is a problem in the program parameters: " + e.getMessage());
+	    System.exit(1);
+	}
+
+	File[] files = new File(directory).listFiles((dir, name) -> name.endsWith(".dat"));
+	if (files == null) {
+	    System.err.println("Error: " + directory + " is not a directory.");
+	    System.exit(1);
+	}
+	Arrays.sort(files);
+
+	System.out.println("benchmark;fileName;nsPerOp;stdDev");
+	try {
+	    for (File file : files) {
+		for (Map.Entry<String, Operation> entry : operations(file.getPath()).entrySet()) {
+		    if (filter.matcher(entry.getKey()).matches()) {
+			double[] result = measure(entry.getValue(), warmup, iterations, duration);
+			System.out.printf("%s;%s;%.1f;%.1f%n", entry.getKey(), file.getPath(), result[0], result[1]);
+		    }
+		}
+	    }
+	} catch (Exception e) {
+	    System.err.printf("Error: %s", e.getMessage());
+	    System.err.println();
+	    e.printStackTrace(System.err);
+	    System.exit(1);
+	}
+	System.err.println("Checksum: " + s_checksum);
+    }
+
+    /**
+     * @param fileName : the instance file
+     * @return The benchmarks of the instance, by name.
+     */
+    private static Map<String, Operation> operations(final String fileName) throws Exception {
+	final Instance inst = new Instance(fileName);
+	final int nbItems = inst.getNbItems();
+	final Random random = new Random(0);
+	final int[] items = new int[NB_INDICES];
+	for (int k = 0; k < NB_INDICES; k++) {
+	    items[k] = random.nextInt(nbItems);
+	}
+
+	// A solution filled by the efficiency greedy, as met during a search
+	MKPSolver mkp = new MKPSolver();
+	mkp.setInstance(inst);
+	mkp.setSolution(new Solution(inst));
+	new SurrogateGreedySolver().solve(mkp);
+	final Solution sol = mkp.getSolution();
+
+	Map<String, Operation> operations = new LinkedHashMap<>();
+	operations.put("Instance.load", k -> new Instance(fileName).getNbItems());
+	operations.put("Solution.addItem+removeItem", k -> {
+	    int j = items[k & (NB_INDICES - 1)];
+	    if (sol.isSelected(j)) {
+		sol.removeItem(j);
+		sol.addItem(j);
+	    } else {
+		sol.addItem(j);
+		sol.removeItem(j);
+	    }
+	    return sol.getObjective();
+	});
+	operations.put("Solution.add+remove", k -> {
+	    int j = items[k & (NB_INDICES - 1)];
+	    if (sol.selected(j)) {
+		sol.remove(j);
+		sol.add(j);
+	    } else {
+		sol.add(j);
+		sol.remove(j);
+	    }
+	    return sol.getObjective();
+	});
+	operations.put("Solution.addingPossible", k -> sol.addingPossible(items[k & (NB_INDICES - 1)]) ? 1 : 0);
+	operations.put("Solution.fits", k -> sol.fits(items[k & (NB_INDICES - 1)]) ? 1 : 0);
+	operations.put("Solution.deltaFlip", k -> sol.deltaFlip(items[k & (NB_INDICES - 1)]));
+	operations.put("Solution.deltaSwap", k -> {
+	    int out = sol.nextSelected(items[k & (NB_INDICES - 1)]);
+	    return (out < 0) ? 0 : sol.deltaSwap(out, items[(k + 1) & (NB_INDICES - 1)]);
+	});
+	operations.put("Solution.clone", k -> sol.clone().getObjective());
+	final Solution copy = new Solution(inst);
+	operations.put("Solution.copyFrom", k -> {
+	    copy.copyFrom(sol);
+	    return copy.getObjective();
+	});
+	operations.put("Solution.validate", k -> sol.validate() ? 1 : 0);
+	operations.put("Solution.evaluate", k -> (long) sol.evaluate());
+	for (final String name : new String[] { "greedy", "surrogate" }) {
+	    operations.put("solve." + name, k -> {
+		MKPSolver solver = new MKPSolver();
+		solver.setInstance(inst);
+		solver.setSolution(new Solution(inst));
+		solver.setDeadline(new Deadline(3600 * 1000));
+		SolverRegistry.create(name).solve(solver);
+		return solver.getSolution().getObjective();
+	    });
+	}
+	return operations;
+    }
+
+    /**
+     * @return The mean and the standard deviation of the time of an operation, in nanoseconds.
+     */
+    private static double[] measure(Operation operation, int warmup, int iterations, long duration) throws Exception {
+	// Calibration: number of operations lasting about <code>duration</code> ms
+	long nbOps = 1;
+	long time = iterate(operation, nbOps);
+	while (time < duration * 1000000L / 10) {
+	    nbOps *= 2;
+	    time = iterate(operation, nbOps);
+	}
+	nbOps = Math.max(1, nbOps * duration * 1000000L / Math.max(1, time));
+
+	for (int it = 0; it < warmup; it++) {
+	    iterate(operation, nbOps);
+	}
+	double[] samples = new double[iterations];
+	double mean = 0;
+	for (int it = 0; it < iterations; it++) {
+	    samples[it] = (double) iterate(operation, nbOps) / nbOps;
+	    mean += samples[it];
+	}
+	mean /= Math.max(1, iterations);
+	double variance = 0;
+	for (double sample : samples) {
+	    variance += (sample - mean) * (sample - mean);
+	}
+	variance /= Math.max(1, iterations - 1);
+	return new double[] { mean, Math.sqrt(variance) };
+    }
+
+    /**
+     * @return The time (in nanoseconds) taken by <code>nbOps</code> operations.
+     */
+    private static long iterate(Operation operation, long nbOps) throws Exception {
+	long sum = 0;
+	long t = System.nanoTime();
+	for (int k = 0; k < nbOps; k++) {
+	    sum += operation.run(k);
+	}
+	t = System.nanoTime() - t;
+	s_checksum += sum;
+	return t;
+    }
+
+}
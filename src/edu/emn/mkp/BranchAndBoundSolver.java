@@ -0,0 +1,278 @@
+/*
+	mkp-framework
+	Copyright (C) 2013 Fabien Lehuede / Damien Prot / Axel Grimault
+
+	This program is free software; you can redistribute it and/or modify
+	it under the terms of the GNU General Public License as published by
+	the Free Software Foundation; either version 2 of the License, or
+	(at your option) any later version.
+
+	This program is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+	GNU General Public License for more details.
+
+	You should have received a copy of the GNU General Public License along
+	with this program; if not, write to the Free Software Foundation, Inc.,
+	51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package edu.emn.mkp;
+
+import java.util.Arrays;
+
+/**
+ * Exact engine (<code>-solver bnb</code>): depth-first branch and bound.
+ * 
+ * Preprocessing:
+ *  - the initial lower bound is the best of the incumbent and of the efficiency greedy
+ *    ({@link SurrogateGreedySolver}), built again with the dual values once the relaxation is solved;
+ *  - the items are fixed by reduced cost with the linear relaxation ({@link LPRelaxation#reducedCostFixing(long)}),
+ *    solved within {@link SurrogateGreedySolver#LP_SHARE} of the time left;
+ *  - the free items are sorted by decreasing efficiency for the surrogate constraint whose
+ *    multipliers are the dual values of the relaxation.
+ * 
+ * Search: the free items are branched on in this order, the branch "item in the knapsack" first.
+ * The weights of the constraints are updated incrementally. The upper bound of a node is its profit
+ * plus the fractional bound of the surrogate knapsack over the items not branched yet, computed in
+ * O(log n) with prefix sums. The open nodes are kept in an array of depths: each item put in the
+ * knapsack on the current path is an open node whose other branch (item not in the knapsack) is
+ * still to explore.
+ * 
+ * The search stops at the deadline of the solver with the best solution found; if the tree is
+ * explored completely, the solution is optimal.
+ * 
+ * @author Fabien Lehuede / Damien Prot / Axel Grimault 2016
+ * 
+ */
+public class BranchAndBoundSolver implements SolverEngine {
+
+    // ---------------------------------------------
+    // --------------- ATTRIBUTES ------------------
+    // ---------------------------------------------
+
+    /** <code>true</code> if the last search explored the whole tree */
+    private boolean m_optimal = false;
+
+    /** Number of nodes of the last search */
+    private long m_nbNodes = 0;
+
+    // --------------------------------------------
+    // ------------ GETTERS AND SETTERS -----------
+    // --------------------------------------------
+
+    /**
+     * @return <code>true</code> if the last search proved that its solution is optimal.
+     */
+    public boolean isOptimal() {
+	return m_optimal;
+    }
+
+    /**
+     * @return Number of nodes explored by the last search.
+     */
+    public long getNbNodes() {
+	return m_nbNodes;
+    }
+
+    // -------------------------------------
+    // -------------- METHODS --------------
+    // -------------------------------------
+
+    @Override
+    public void solve(MKPSolver solver) throws Exception {
+	Instance instance = solver.getInstance();
+	Incumbent incumbent = solver.getIncumbent();
+	Deadline deadline = solver.getDeadline();
+	int nbItems = instance.getNbItems();
+	int nbConstraints = instance.getNbConstraints();
+	int[] weights = instance.getWeightsByItem();
+	int[] capacities = instance.getCapacities();
+	m_optimal = false;
+	m_nbNodes = 0;
+
+	// Initial lower bound, without waiting for the relaxation
+	double[] multipliers = SurrogateGreedySolver.dualMultipliers(instance);
+	double[] efficiency = SurrogateGreedySolver.efficiencies(instance, multipliers);
+	int[] order = SurrogateGreedySolver.sortDecreasing(efficiency);
+	Solution initial = solver.getSolution().clone();
+	Solution best = solver.getSolution();
+	SurrogateGreedySolver.repair(best, order);
+	incumbent.offer(best);
+	if (incumbent.getObjective() > best.getObjective())
+	    best = incumbent.get().clone();
+	solver.setSolution(best);
+	long lowerBound = best.getObjective();
+
+	// Reduced cost fixing (valid even if the relaxation is stopped by its deadline), the rest of the time
+	// is left to the tree search
+	long lpTime = (long) (deadline.getRemainingTime() * SurrogateGreedySolver.LP_SHARE);
+	LPRelaxation relaxation = instance.getRelaxation(new Deadline(deadline, lpTime));
+	if (relaxation.isOptimal()) {
+	    // The order of the initial lower bound did not use the duals if the relaxation was not solved yet
+	    double[] duals = SurrogateGreedySolver.dualMultipliers(instance);
+	    if (!Arrays.equals(duals, multipliers)) {
+		multipliers = duals;
+		efficiency = SurrogateGreedySolver.efficiencies(instance, multipliers);
+		order = SurrogateGreedySolver.sortDecreasing(efficiency);
+		SurrogateGreedySolver.repair(initial, order);
+		incumbent.offer(initial);
+		if (initial.getObjective() > best.getObjective()) {
+		    best = initial;
+		    solver.setSolution(best);
+		    lowerBound = best.getObjective();
+		}
+	    }
+	}
+	byte[] fixed = relaxation.reducedCostFixing(lowerBound);
+	long[] used = new long[nbConstraints];
+	long profit = 0;
+	int nbFree = 0;
+	for (int j = 0; j < nbItems; j++) {
+	    if (fixed[j] == 1) {
+		profit += instance.profit(j);
+		for (int i = 0; i < nbConstraints; i++) {
+		    used[i] += weights[j * nbConstraints + i];
+		}
+	    } else if (fixed[j] < 0) {
+		nbFree++;
+	    }
+	}
+	for (int i = 0; i < nbConstraints; i++) {
+	    if (used[i] > capacities[i]) {
+		// No solution better than the lower bound
+		m_optimal = true;
+		return;
+	    }
+	}
+
+	// Free items by decreasing surrogate efficiency, with prefix sums of profits and surrogate weights
+	int[] free = new int[nbFree];
+	double[] surrogate = new double[nbFree];
+	double[] sumProfit = new double[nbFree + 1];
+	double[] sumSurrogate = new double[nbFree + 1];
+	int k = 0;
+	for (int j : order) {
+	    if (fixed[j] >= 0)
+		continue;
+	    free[k] = j;
+	    for (int i = 0; i < nbConstraints; i++) {
+		surrogate[k] += multipliers[i] * weights[j * nbConstraints + i];
+	    }
+	    sumProfit[k + 1] = sumProfit[k] + instance.profit(j);
+	    sumSurrogate[k + 1] = sumSurrogate[k] + surrogate[k];
+	    k++;
+	}
+	double surrogateUsed = 0;
+	double surrogateCapacity = 0;
+	for (int i = 0; i < nbConstraints; i++) {
+	    surrogateCapacity += multipliers[i] * capacities[i];
+	    surrogateUsed += multipliers[i] * used[i];
+	}
+	// Tolerance on the surrogate capacity against rounding errors
+	surrogateCapacity += 1e-7 * Math.max(1, surrogateCapacity);
+
+	// Items of the order fixed to 0 by reduced cost when the lower bound improves during the search
+	boolean[] banned = new boolean[nbFree];
+
+	// Depth-first search. pool[0..size-1] are the depths of the items in the knapsack on the current path.
+	int[] pool = new int[nbFree];
+	int size = 0;
+	int depth = 0;
+	boolean exhausted = false;
+	while (!deadline.expired()) {
+	    // Go down: put the items in the knapsack while they fit and the bound is good enough
+	    while (depth < nbFree) {
+		m_nbNodes++;
+		double bound = profit + surrogateBound(depth, surrogateCapacity - surrogateUsed, surrogate, sumProfit, sumSurrogate);
+		if (Math.floor(bound + 1e-6) <= lowerBound)
+		    break;
+		int j = free[depth];
+		int offset = j * nbConstraints;
+		boolean fits = !banned[depth];
+		for (int i = 0; fits && (i < nbConstraints); i++) {
+		    if (used[i] + weights[offset + i] > capacities[i])
+			fits = false;
+		}
+		if (fits) {
+		    for (int i = 0; i < nbConstraints; i++) {
+			used[i] += weights[offset + i];
+		    }
+		    profit += instance.profit(j);
+		    surrogateUsed += surrogate[depth];
+		    pool[size++] = depth;
+		}
+		depth++;
+	    }
+
+	    // Leaf: new best solution
+	    if ((depth == nbFree) && (profit > lowerBound)) {
+		lowerBound = profit;
+		best = new Solution(instance);
+		for (int j = 0; j < nbItems; j++) {
+		    if (fixed[j] == 1)
+			best.add(j);
+		}
+		for (int p = 0; p < size; p++) {
+		    best.add(free[pool[p]]);
+		}
+		incumbent.offer(best);
+		solver.setSolution(best);
+		byte[] refixed = relaxation.reducedCostFixing(lowerBound);
+		for (int p = 0; p < nbFree; p++) {
+		    banned[p] = banned[p] || (refixed[free[p]] == 0);
+		}
+	    }
+
+	    // Backtrack: explore the other branch of the deepest open node
+	    if (size == 0) {
+		exhausted = true;
+		break;
+	    }
+	    depth = pool[--size];
+	    int j = free[depth];
+	    int offset = j * nbConstraints;
+	    for (int i = 0; i < nbConstraints; i++) {
+		used[i] -= weights[offset + i];
+	    }
+	    profit -= instance.profit(j);
+	    surrogateUsed -= surrogate[depth];
+	    depth++;
+	}
+
+	m_optimal = exhausted;
+	solver.getMetrics().add(SearchMetrics.EVALUATED, m_nbNodes);
+	System.err.println("Branch and bound: " + m_nbNodes + " nodes, " + nbFree + " free items, "
+		+ (m_optimal ? "optimality proven." : "stopped at the time limit."));
+    }
+
+    /**
+     * Fractional bound of the surrogate knapsack over the items <code>from..n-1</code> (sorted by
+     * decreasing efficiency): the items are taken in order while they fit, then a fraction of the next one.
+     * 
+     * @return The bound on the profit of these items.
+     */
+    static double surrogateBound(int from, double capacity, double[] surrogate, double[] sumProfit,
+	    double[] sumSurrogate) {
+	int n = surrogate.length;
+	if (capacity < 0)
+	    return Double.NEGATIVE_INFINITY;
+	double limit = sumSurrogate[from] + capacity;
+	if (sumSurrogate[n] <= limit)
+	    return sumProfit[n] - sumProfit[from];
+	// Binary search of the first item that does not fit: sumSurrogate[t + 1] > limit
+	int low = from;
+	int high = n - 1;
+	while (low < high) {
+	    int mid = (low + high) >>> 1;
+	    if (sumSurrogate[mid + 1] > limit)
+		high = mid;
+	    else
+		low = mid + 1;
+	}
+	double bound = sumProfit[low] - sumProfit[from];
+	double remaining = limit - sumSurrogate[low];
+	return bound + (sumProfit[low + 1] - sumProfit[low]) * remaining / surrogate[low];
+    }
+
+}
@@ -0,0 +1,131 @@
+/*
+	mkp-framework
+	Copyright (C) 2013 Fabien Lehuede / Damien Prot / Axel Grimault
+
+	This program is free software; you can redistribute it and/or modify
+	it under the terms of the GNU General Public License as published by
+	the Free Software Foundation; either version 2 of the License, or
+	(at your option) any later version.
+
+	This program is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+	GNU General Public License for more details.
+
+	You should have received a copy of the GNU General Public License along
+	with this program; if not, write to the Free Software Foundation, Inc.,
+	51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package edu.emn.mkp;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Sends problems to a {@link Server} and prints its answers.
+ * 
+ * **command**: java edu.emn.mkp.Client [options] file...
+ * **Options**:
+ *  - -host (name) :host of the server (default: loopback address)
+ *  - -port (int) :port of the server (default {@link Server#DEFAULT_PORT})
+ *  - -send :send the content of the files instead of their names (the server does not read the files)
+ *  - -t, -solver, -seed, -core :options of the requests, as for {@link Main}
+ * 
+ * **Program output**: one line per file, as printed by {@link Main}
+ * fileName;objective;time;e
+ * The requests are sent on a single connection, one after the other.
+ * 
+ * @author Fabien Lehuede / Damien Prot / Axel Grimault 2016
+ * 
+ */
+public class Client {
+
+    /**
+     * Main method.
+     * 
+     * @param arg program parameters.
+     */
+    public static void main(String[] arg) {
+	String host = null;
+	int port = Server.DEFAULT_PORT;
+	boolean send = false;
+	StringBuilder options = new StringBuilder();
+	List<String> files = new ArrayList<>();
+
+	try {
+	    for (int i = 0; i < arg.length; i++) {
+		if (arg[i].compareTo("-help") == 0) {
+		    System.err.println("Send problems to edu.emn.mkp.Server");
+		    System.err.println("command: java edu.emn.mkp.Client [options] file...");
+		    System.err.println("Options:");
+		    System.err.println("\t-host\t: host of the server, default loopback address");
+		    System.err.println("\t-port\t: port of the server (int), default " + port);
+		    System.err.println("\t-send\t: send the content of the files instead of their names");
+		    System.err.println("\t-t, -solver, -seed, -core\t: options of the requests (see Main)");
+		    return;
+		} else if (arg[i].compareTo("-host") == 0) {
+		    host = arg[++i];
+		} else if (arg[i].compareTo("-port") == 0) {
+		    port = Integer.parseInt(arg[++i]);
+		} else if (arg[i].compareTo("-send") == 0) {
+		    send = true;
+		} else if ((arg[i].compareTo("-t") == 0) || (arg[i].compareTo("-solver") == 0)
+			|| (arg[i].compareTo("-seed") == 0) || (arg[i].compareTo("-core") == 0)) {
+		    options.append(arg[i]).append(' ').append(arg[++i]).append(' ');
+		} else {
+		    files.add(arg[i]);
+		}
+	    }
+	} catch (Exception e) {
+	    System.err.println("Error: There is a problem in the program parameters: " + e.getMessage());
+	    System.exit(1);
+	}
+	if (files.isEmpty()) {
+	    System.err.println("Error : you must specify instance files as parameters.");
+	    System.exit(1);
+	}
+
+	boolean error = false;
+	try (Socket socket = new Socket((host != null) ? InetAddress.getByName(host) : InetAddress.getLoopbackAddress(), port);
+		BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8))) {
+	    OutputStream out = socket.getOutputStream();
+	    for (String file : files) {
+		if (send) {
+		    byte[] data = Files.readAllBytes(Paths.get(file));
+		    out.write((options + "-data " + data.length + " " + file + "\n").getBytes(StandardCharsets.UTF_8));
+		    out.write(data);
+		} else {
+		    out.write((options + file + "\n").getBytes(StandardCharsets.UTF_8));
+		}
+		out.flush();
+		String response = in.readLine();
+		if (response == null) {
+		    System.err.println("Error: The server closed the connection.");
+		    System.exit(1);
+		}
+		if (response.startsWith("Error")) {
+		    System.err.println(response);
+		    error = true;
+		} else {
+		    System.out.println(response);
+		}
+	    }
+	} catch (IOException e) {
+	    System.err.println("Error: An error has been met when talking to the server: " + e.getMessage());
+	    System.exit(1);
+	}
+	if (error)
+	    System.exit(1);
+    }
+
+}
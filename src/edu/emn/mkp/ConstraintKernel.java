@@ -0,0 +1,260 @@
+/*
+	mkp-framework
+	Copyright (C) 2013 Fabien Lehuede / Damien Prot / Axel Grimault
+
+	This program is free software; you can redistribute it and/or modify
+	it under the terms of the GNU General Public License as published by
+	the Free Software Foundation; either version 2 of the License, or
+	(at your option) any later version.
+
+	This program is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+	GNU General Public License for more details.
+
+	You should have received a copy of the GNU General Public License along
+	with this program; if not, write to the Free Software Foundation, Inc.,
+	51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package edu.emn.mkp;
+
+import java.nio.IntBuffer;
+
+/**
+ * Loops over the constraints used by {@link Solution} to check the capacities and to update the
+ * weights of the knapsack.
+ * 
+ * The constraints are checked by blocks of {@link #BLOCK}: inside a block the loop has no branch,
+ * the violations are accumulated with a bitwise or of the remaining slacks, whose sign tells
+ * whether a capacity is exceeded, and the check stops after the first block with a violation.
+ * Such loops over consecutive elements of primitive arrays are compiled by the JIT into SIMD
+ * instructions (superword vectorization), with the scalar loop as fallback on the processors
+ * without them.
+ * 
+ * The batch method {@link #fitAll(long[], int[], int, int, int[], int[])} checks every item against
+ * the current slacks in one pass over the weights stored constraint by constraint
+ * ({@link Instance#getWeightsByConstraint()}).
+ * 
+ * Each method has a variant reading the weights of a binary instance in the mapped file
+ * ({@link Instance#getMappedWeights()}), so that they are not copied in memory.
+ * 
+ * @author Fabien Lehuede / Damien Prot / Axel Grimault 2016
+ * 
+ */
+public final class ConstraintKernel {
+
+    /** Number of constraints checked without branch before an early exit */
+    public static final int BLOCK = 8;
+
+    private ConstraintKernel() {
+    }
+
+    /**
+     * @param load : weight of the knapsack in each constraint
+     * @param weights : weights stored item by item ({@link Instance#getWeightsByItem()})
+     * @param offset : index of the first weight of the item in <code>weights</code>
+     * @param capacities : capacity of each constraint
+     * @return <code>true</code> if the item fits in every constraint.
+     */
+    public static boolean fits(long[] load, int[] weights, int offset, int[] capacities) {
+	int nbConstraints = load.length;
+	for (int start = 0; start < nbConstraints; start += BLOCK) {
+	    int end = Math.min(nbConstraints, start + BLOCK);
+	    long violation = 0;
+	    for (int i = start; i < end; i++) {
+		violation |= capacities[i] - load[i] - weights[offset + i];
+	    }
+	    if (violation < 0)
+		return false;
+	}
+	return true;
+    }
+
+    /**
+     * @param load : weight of the knapsack in each constraint
+     * @param weights : weights stored item by item ({@link Instance#getWeightsByItem()})
+     * @param offsetOut : index of the first weight of the item removed
+     * @param offsetIn : index of the first weight of the item added
+     * @param capacities : capacity of each constraint
+     * @return <code>true</code> if the knapsack fits in every constraint once the first item is replaced by the second one.
+     */
+    public static boolean fitsSwap(long[] load, int[] weights, int offsetOut, int offsetIn, int[] capacities) {
+	int nbConstraints = load.length;
+	for (int start = 0; start < nbConstraints; start += BLOCK) {
+	    int end = Math.min(nbConstraints, start + BLOCK);
+	    long violation = 0;
+	    for (int i = start; i < end; i++) {
+		violation |= capacities[i] - load[i] + weights[offsetOut + i] - weights[offsetIn + i];
+	    }
+	    if (violation < 0)
+		return false;
+	}
+	return true;
+    }
+
+    /**
+     * @param load : weight of the knapsack in each constraint
+     * @param weights : weights stored item by item ({@link Instance#getWeightsByItem()})
+     * @param offset : index of the first weight of the item removed
+     * @param capacities : capacity of each constraint
+     * @return <code>true</code> if the knapsack fits in every constraint once the item is removed.
+     */
+    public static boolean fitsWithout(long[] load, int[] weights, int offset, int[] capacities) {
+	int nbConstraints = load.length;
+	for (int start = 0; start < nbConstraints; start += BLOCK) {
+	    int end = Math.min(nbConstraints, start + BLOCK);
+	    long violation = 0;
+	    for (int i = start; i < end; i++) {
+		violation |= capacities[i] - load[i] + weights[offset + i];
+	    }
+	    if (violation < 0)
+		return false;
+	}
+	return true;
+    }
+
+    /**
+     * @param load : weight of the knapsack in each constraint
+     * @param capacities : capacity of each constraint
+     * @return <code>true</code> if no capacity is exceeded.
+     */
+    public static boolean feasible(long[] load, int[] capacities) {
+	long violation = 0;
+	for (int i = 0; i < load.length; i++) {
+	    violation |= capacities[i] - load[i];
+	}
+	return violation >= 0;
+    }
+
+    /**
+     * Adds the weights of an item to the load: <code>load[i] += weights[offset + i]</code>.
+     */
+    public static void add(long[] load, int[] weights, int offset) {
+	for (int i = 0; i < load.length; i++) {
+	    load[i] += weights[offset + i];
+	}
+    }
+
+    /**
+     * Removes the weights of an item from the load: <code>load[i] -= weights[offset + i]</code>.
+     */
+    public static void subtract(long[] load, int[] weights, int offset) {
+	for (int i = 0; i < load.length; i++) {
+	    load[i] -= weights[offset + i];
+	}
+    }
+
+    /**
+     * Checks all the items against the current slacks, constraint by constraint: the inner loop runs
+     * over the weights of all the items in a constraint, which are consecutive.
+     * 
+     * @param load : weight of the knapsack in each constraint
+     * @param weightsByConstraint : weights stored constraint by constraint ({@link Instance#getWeightsByConstraint()})
+     * @param stride : length of a constraint in weightsByConstraint ({@link Instance#getConstraintStride()})
+     * @param nbItems : number of items
+     * @param capacities : capacity of each constraint
+     * @param result : for each item, negative if its weight exceeds the slack of a constraint
+     *        (the item does not fit), non negative otherwise
+     */
+    public static void fitAll(long[] load, int[] weightsByConstraint, int stride, int nbItems, int[] capacities,
+	    int[] result) {
+	for (int j = 0; j < nbItems; j++) {
+	    result[j] = 0;
+	}
+	for (int i = 0; i < load.length; i++) {
+	    // Slack clamped to the int range: -1 if the capacity is already exceeded
+	    long slack = capacities[i] - load[i];
+	    int s = (int) Math.max(-1, Math.min(Integer.MAX_VALUE, slack));
+	    int row = i * stride;
+	    for (int j = 0; j < nbItems; j++) {
+		result[j] |= s - weightsByConstraint[row + j];
+	    }
+	}
+    }
+
+    // -------------------------------------
+    // ---------- MAPPED WEIGHTS -----------
+    // -------------------------------------
+
+    /**
+     * Same as {@link #fits(long[], int[], int, int[])} with the weights of the mapped file.
+     */
+    public static boolean fits(long[] load, IntBuffer weights, int offset, int[] capacities) {
+	int nbConstraints = load.length;
+	for (int start = 0; start < nbConstraints; start += BLOCK) {
+	    int end = Math.min(nbConstraints, start + BLOCK);
+	    long violation = 0;
+	    for (int i = start; i < end; i++) {
+		violation |= capacities[i] - load[i] - weights.get(offset + i);
+	    }
+	    if (violation < 0)
+		return false;
+	}
+	return true;
+    }
+
+    /**
+     * Same as {@link #fitsSwap(long[], int[], int, int, int[])} with the weights of the mapped file.
+     */
+    public static boolean fitsSwap(long[] load, IntBuffer weights, int offsetOut, int offsetIn, int[] capacities) {
+	int nbConstraints = load.length;
+	for (int start = 0; start < nbConstraints; start += BLOCK) {
+	    int end = Math.min(nbConstraints, start + BLOCK);
+	    long violation = 0;
+	    for (int i = start; i < end; i++) {
+		violation |= capacities[i] - load[i] + weights.get(offsetOut + i) - weights.get(offsetIn + i);
+	    }
+	    if (violation < 0)
+		return false;
+	}
+	return true;
+    }
+
+    /**
+     * Same as {@link #fitsWithout(long[], int[], int, int[])} with the weights of the mapped file.
+     */
+    public static boolean fitsWithout(long[] load, IntBuffer weights, int offset, int[] capacities) {
+	int nbConstraints = load.length;
+	for (int start = 0; start < nbConstraints; start += BLOCK) {
+	    int end = Math.min(nbConstraints, start + BLOCK);
+	    long violation = 0;
+	    for (int i = start; i < end; i++) {
+		violation |= capacities[i] - load[i] + weights.get(offset + i);
+	    }
+	    if (violation < 0)
+		return false;
+	}
+	return true;
+    }
+
+    /**
+     * Same as {@link #add(long[], int[], int)} with the weights of the mapped file.
+     */
+    public static void add(long[] load, IntBuffer weights, int offset) {
+	for (int i = 0; i < load.length; i++) {
+	    load[i] += weights.get(offset + i);
+	}
+    }
+
+    /**
+     * Same as {@link #subtract(long[], int[], int)} with the weights of the mapped file.
+     */
+    public static void subtract(long[] load, IntBuffer weights, int offset) {
+	for (int i = 0; i < load.length; i++) {
+	    load[i] -= weights.get(offset + i);
+	}
+    }
+
+    /**
+     * Same as {@link #fitAll(long[], int[], int, int, int[], int[])} with the weights of the mapped file,
+     * which are stored item by item: the items are checked one by one.
+     */
+    public static void fitAll(long[] load, IntBuffer weightsByItem, int nbItems, int[] capacities, int[] result) {
+	int nbConstraints = load.length;
+	for (int j = 0; j < nbItems; j++) {
+	    result[j] = fits(load, weightsByItem, j * nbConstraints, capacities) ? 0 : -1;
+	}
+    }
+
+}
@@ -0,0 +1,75 @@
+/*
+	mkp-framework
+	Copyright (C) 2013 Fabien Lehuede / Damien Prot / Axel Grimault
+
+	This program is free software; you can redistribute it and/or modify
+	it under the terms of the GNU General Public License as published by
+	the Free Software Foundation; either version 2 of the License, or
+	(at your option) any later version.
+
+	This program is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+	GNU General Public License for more details.
+
+	You should have received a copy of the GNU General Public License along
+	with this program; if not, write to the Free Software Foundation, Inc.,
+	51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package edu.emn.mkp;
+
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+
+/**
+ * Converts an instance file between the text format of the OR-Library and the
+ * binary format of {@link Instance#writeBinary(String)}.
+ * 
+ * **command**: java edu.emn.mkp.Convert inputFile outputFile
+ * 
+ * The format of the input file is detected automatically. The output file is
+ * written in the text format if its name ends with <code>.dat</code>, in the
+ * binary format otherwise.
+ * 
+ * @author Fabien Lehuede / Damien Prot / Axel Grimault 2016
+ * 
+ */
+public class Convert {
+
+    /**
+     * Main method.
+     * 
+     * @param arg program parameters.
+     */
+    public static void main(String[] arg) {
+	if ((arg.length != 2) || (arg[0].compareTo("-help") == 0)) {
+	    System.err.println("Convert an instance file between the text and the binary formats");
+	    System.err.println("command: java edu.emn.mkp.Convert inputFile outputFile");
+	    System.err.println("The output file is written in the text format if its name ends with .dat,");
+	    System.err.println("in the binary format otherwise.");
+	    System.exit(arg.length == 1 ? 0 : 1);
+	}
+
+	try {
+	    Instance prob = new Instance(arg[0]);
+	    if (arg[1].endsWith(".dat")) {
+		// Buffered: writeText prints the values one by one
+		try (PrintStream out = new PrintStream(new BufferedOutputStream(new FileOutputStream(arg[1])))) {
+		    prob.writeText(out);
+		    if (out.checkError())
+			throw new IOException("the file " + arg[1] + " cannot be written.");
+		}
+	    } else {
+		prob.writeBinary(arg[1]);
+	    }
+	    System.err.println(arg[0] + " -> " + arg[1] + " (" + prob.getNbItems() + " items, "
+		    + prob.getNbConstraints() + " constraints)");
+	} catch (IOException e) {
+	    System.err.println("Error: An error has been met when converting the file: " + e.getMessage());
+	    System.exit(1);
+	}
+    }
+}
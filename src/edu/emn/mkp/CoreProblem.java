@@ -0,0 +1,253 @@
+/*
+	mkp-framework
+	Copyright (C) 2013 Fabien Lehuede / Damien Prot / Axel Grimault
+
+	This program is free software; you can redistribute it and/or modify
+	it under the terms of the GNU General Public License as published by
+	the Free Software Foundation; either version 2 of the License, or
+	(at your option) any later version.
+
+	This program is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+	GNU General Public License for more details.
+
+	You should have received a copy of the GNU General Public License along
+	with this program; if not, write to the Free Software Foundation, Inc.,
+	51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package edu.emn.mkp;
+
+/**
+ * Core problem of an instance: the items are sorted by decreasing efficiency for the surrogate
+ * constraint whose multipliers are the dual values of the linear relaxation, if it can be solved
+ * in the time given, or the capacity multipliers otherwise
+ * ({@link SurrogateGreedySolver#dualMultipliers(Instance, Deadline)}), and the break item
+ * is the first one that does not fit in the surrogate knapsack (the efficiency threshold of the
+ * relaxation). The items far before the break item are fixed in the knapsack, the items far after
+ * are fixed out of it, and the <code>size</code> items around it (the core) are left free.
+ * 
+ * The core is an {@link Instance} on its own: its items are the free items and its capacities are
+ * the capacities left by the items fixed in the knapsack. A solution of the core is mapped back
+ * to a solution of the whole problem by {@link #toSolution(Solution)}.
+ * 
+ * @author Fabien Lehuede / Damien Prot / Axel Grimault 2016
+ * 
+ */
+public class CoreProblem {
+
+    // ---------------------------------------------
+    // --------------- ATTRIBUTES ------------------
+    // ---------------------------------------------
+
+    /** Whole problem */
+    private final Instance m_instance;
+
+    /** Reduced problem on the core items */
+    private final Instance m_core;
+
+    /** Index in the whole problem of each item of the core */
+    private final int[] m_items;
+
+    /** For each item of the whole problem: 1 if fixed in the knapsack, 0 if fixed out, -1 if in the core */
+    private final byte[] m_fixed;
+
+    /** Profit of the items fixed in the knapsack */
+    private final long m_fixedProfit;
+
+    // --------------------------------------------
+    // ------------ GETTERS AND SETTERS -----------
+    // --------------------------------------------
+
+    /**
+     * @return The whole problem.
+     */
+    public Instance getInstance() {
+	return m_instance;
+    }
+
+    /**
+     * @return The reduced problem on the core items.
+     */
+    public Instance getCore() {
+	return m_core;
+    }
+
+    /**
+     * @return The index in the whole problem of each item of the core.
+     * @warning The array is shared, do not modify it.
+     */
+    public int[] getItems() {
+	return m_items;
+    }
+
+    /**
+     * @param j : index of an item of the whole problem
+     * @return 1 if the item is fixed in the knapsack, 0 if it is fixed out of it, -1 if it is in the core.
+     */
+    public int getFixed(int j) {
+	return m_fixed[j];
+    }
+
+    /**
+     * @return The profit of the items fixed in the knapsack.
+     */
+    public long getFixedProfit() {
+	return m_fixedProfit;
+    }
+
+    // -------------------------------------
+    // ------------ CONSTRUCTOR ------------
+    // -------------------------------------
+
+    /**
+     * Builds the core problem of an instance.
+     * 
+     * If the items fixed in the knapsack exceed a capacity, the core is extended towards the
+     * efficient items until they fit: the core may then have more than <code>size</code> items.
+     * 
+     * @param instance : the whole problem
+     * @param size : number of items of the core (all the items if larger than the number of items)
+     */
+    public CoreProblem(Instance instance, int size) {
+	this(instance, size, null);
+    }
+
+    /**
+     * Builds the core problem of an instance, the linear relaxation being solved only if it is
+     * expected to end within a share of the time left before the deadline.
+     * 
+     * @param instance : the whole problem
+     * @param size : number of items of the core (all the items if larger than the number of items)
+     * @param deadline : deadline of the search, <code>null</code> to solve the relaxation only if it is cheap
+     */
+    public CoreProblem(Instance instance, int size, Deadline deadline) {
+	m_instance = instance;
+	int nbItems = instance.getNbItems();
+	int nbConstraints = instance.getNbConstraints();
+	int[] weights = instance.getWeightsByItem();
+	size = Math.max(1, Math.min(size, nbItems));
+
+	// Break item of the surrogate knapsack
+	double[] multipliers = (deadline != null) ? SurrogateGreedySolver.dualMultipliers(instance, deadline)
+		: SurrogateGreedySolver.dualMultipliers(instance);
+	int[] order = SurrogateGreedySolver.efficiencyOrder(instance, multipliers);
+	double capacity = 0;
+	for (int i = 0; i < nbConstraints; i++) {
+	    capacity += multipliers[i] * instance.capacity(i);
+	}
+	int breakItem = 0;
+	double used = 0;
+	while (breakItem < nbItems) {
+	    int offset = order[breakItem] * nbConstraints;
+	    for (int i = 0; i < nbConstraints; i++) {
+		used += multipliers[i] * weights[offset + i];
+	    }
+	    if (used > capacity)
+		break;
+	    breakItem++;
+	}
+
+	// Core: positions first..last-1 of the order, centered on the break item
+	int first = Math.max(0, Math.min(breakItem - size / 2, nbItems - size));
+	int last = first + size;
+
+	// Capacities left by the items fixed in the knapsack, the core is extended while one is exceeded
+	long[] residual = new long[nbConstraints];
+	for (int i = 0; i < nbConstraints; i++) {
+	    residual[i] = instance.capacity(i);
+	}
+	for (int k = 0; k < first; k++) {
+	    int offset = order[k] * nbConstraints;
+	    for (int i = 0; i < nbConstraints; i++) {
+		residual[i] -= weights[offset + i];
+	    }
+	}
+	while ((first > 0) && !nonNegative(residual)) {
+	    first--;
+	    int offset = order[first] * nbConstraints;
+	    for (int i = 0; i < nbConstraints; i++) {
+		residual[i] += weights[offset + i];
+	    }
+	}
+
+	m_fixed = new byte[nbItems];
+	long fixedProfit = 0;
+	for (int k = 0; k < nbItems; k++) {
+	    int j = order[k];
+	    if (k < first) {
+		m_fixed[j] = 1;
+		fixedProfit += instance.profit(j);
+	    } else {
+		m_fixed[j] = (byte) ((k < last) ? -1 : 0);
+	    }
+	}
+	m_fixedProfit = fixedProfit;
+
+	// Reduced instance, the core items keep their order in the whole problem
+	m_items = new int[last - first];
+	int nbCore = 0;
+	for (int j = 0; j < nbItems; j++) {
+	    if (m_fixed[j] < 0)
+		m_items[nbCore++] = j;
+	}
+	int[] profit = new int[nbCore];
+	int[] coreCapacity = new int[nbConstraints];
+	int[] coreWeights = new int[nbCore * nbConstraints];
+	for (int k = 0; k < nbCore; k++) {
+	    profit[k] = instance.profit(m_items[k]);
+	    System.arraycopy(weights, m_items[k] * nbConstraints, coreWeights, k * nbConstraints, nbConstraints);
+	}
+	for (int i = 0; i < nbConstraints; i++) {
+	    coreCapacity[i] = (int) residual[i];
+	}
+	m_core = new Instance(instance.getFileName() + " (core)", profit, coreCapacity, coreWeights);
+    }
+
+    // -------------------------------------
+    // -------------- METHODS --------------
+    // -------------------------------------
+
+    /**
+     * @param core : a solution of the core problem
+     * @return The solution of the whole problem: the items fixed in the knapsack and the items of <code>core</code>.
+     */
+    public Solution toSolution(Solution core) {
+	Solution sol = new Solution(m_instance);
+	for (int j = 0; j < m_fixed.length; j++) {
+	    if (m_fixed[j] == 1)
+		sol.add(j);
+	}
+	for (int k = core.nextSelected(0); k >= 0; k = core.nextSelected(k + 1)) {
+	    sol.add(m_items[k]);
+	}
+	return sol;
+    }
+
+    /**
+     * @param sol : a solution of the whole problem
+     * @return The solution of the core problem made of the core items of <code>sol</code>
+     *         (the fixed items are ignored, the solution may be unfeasible).
+     */
+    public Solution toCore(Solution sol) {
+	Solution core = new Solution(m_core);
+	for (int k = 0; k < m_items.length; k++) {
+	    if (sol.selected(m_items[k]))
+		core.add(k);
+	}
+	return core;
+    }
+
+    /**
+     * @return <code>true</code> if all the values are non negative.
+     */
+    private static boolean nonNegative(long[] values) {
+	for (long value : values) {
+	    if (value < 0)
+		return false;
+	}
+	return true;
+    }
+
+}
@@ -0,0 +1,108 @@
+/*
+	mkp-framework
+	Copyright (C) 2013 Fabien Lehuede / Damien Prot / Axel Grimault
+
+	This program is free software; you can redistribute it and/or modify
+	it under the terms of the GNU General Public License as published by
+	the Free Software Foundation; either version 2 of the License, or
+	(at your option) any later version.
+
+	This program is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+	GNU General Public License for more details.
+
+	You should have received a copy of the GNU General Public License along
+	with this program; if not, write to the Free Software Foundation, Inc.,
+	51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package edu.emn.mkp;
+
+/**
+ * Engine that runs another engine on the core problem of the instance ({@link CoreProblem}),
+ * selected by the option <code>-core (size)</code>: on a large instance the search only
+ * explores the items close to the efficiency threshold of the linear relaxation.
+ * 
+ * The engine starts from the initial solution of the solver restricted to the core
+ * ({@link CoreProblem#toCore(Solution)}), repaired if it exceeds the capacities left by the items
+ * fixed in the knapsack. Each improvement found on the core is mapped back to the whole problem
+ * and offered to the incumbent of the solver, so that the best solution is available even if the
+ * engine is stopped at the time limit.
+ * 
+ * @author Fabien Lehuede / Damien Prot / Axel Grimault 2016
+ * 
+ */
+public class CoreSolver implements SolverEngine {
+
+    // ---------------------------------------------
+    // --------------- ATTRIBUTES ------------------
+    // ---------------------------------------------
+
+    /** Engine run on the core problem */
+    private final SolverEngine m_engine;
+
+    /** Number of items of the core */
+    private final int m_size;
+
+    // -------------------------------------
+    // ------------ CONSTRUCTOR ------------
+    // -------------------------------------
+
+    /**
+     * @param engine : engine run on the core problem
+     * @param size : number of items of the core
+     */
+    public CoreSolver(SolverEngine engine, int size) {
+	m_engine = engine;
+	m_size = size;
+    }
+
+    // -------------------------------------
+    // -------------- METHODS --------------
+    // -------------------------------------
+
+    @Override
+    public void solve(MKPSolver solver) throws Exception {
+	final CoreProblem core = new CoreProblem(solver.getInstance(), m_size, solver.getDeadline());
+	final Incumbent incumbent = solver.getIncumbent();
+
+	// Initial solution of the solver, on the core
+	Solution initial = core.toCore(solver.getSolution());
+	if (!initial.isFeasible())
+	    SurrogateGreedySolver.repair(initial, SurrogateGreedySolver.efficiencyOrder(core.getCore(),
+		    SurrogateGreedySolver.dualMultipliers(core.getCore())));
+
+	MKPSolver reduced = new MKPSolver();
+	reduced.setInstance(core.getCore());
+	reduced.setSolution(initial);
+	reduced.setTime(solver.getTime());
+	reduced.setDeadline(solver.getDeadline());
+	reduced.setNbThreads(solver.getNbThreads());
+	reduced.setSeed(solver.getSeed());
+	reduced.setMetrics(solver.getMetrics());
+	reduced.setEngine(m_engine);
+	// Improvements on the core are published on the whole problem
+	reduced.setIncumbent(new Incumbent() {
+	    @Override
+	    public boolean offer(Solution sol) {
+		if (!super.offer(sol))
+		    return false;
+		incumbent.offer(core.toSolution(sol));
+		return true;
+	    }
+	});
+	System.err.println("Core problem: " + core.getCore().getNbItems() + " items of "
+		+ solver.getInstance().getNbItems());
+
+	m_engine.solve(reduced);
+
+	Solution sol = core.toSolution(reduced.getSolution());
+	incumbent.offer(sol);
+	Solution best = incumbent.get();
+	if ((best != null) && (!sol.isFeasible() || (best.getObjective() > sol.getObjective())))
+	    sol = best.clone();
+	solver.setSolution(sol);
+    }
+
+}
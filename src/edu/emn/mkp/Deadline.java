@@ -0,0 +1,178 @@
+/*
+	mkp-framework
+	Copyright (C) 2013 Fabien Lehuede / Damien Prot / Axel Grimault
+
+	This program is free software; you can redistribute it and/or modify
+	it under the terms of the GNU General Public License as published by
+	the Free Software Foundation; either version 2 of the License, or
+	(at your option) any later version.
+
+	This program is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+	GNU General Public License for more details.
+
+	You should have received a copy of the GNU General Public License along
+	with this program; if not, write to the Free Software Foundation, Inc.,
+	51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package edu.emn.mkp;
+
+/**
+ * Time limit of a search, that can also be cancelled before it is reached.
+ * 
+ * Engines poll the deadline in their main loop and stop as soon as it is expired:
+ *  - {@link #isExpired()} reads the clock at each call;
+ *  - {@link #expired()} reads the clock once every {@link #getStride()} calls only, for loops
+ *    whose iterations are much shorter than a millisecond.
+ * A deadline created for a part of a search ({@link #Deadline(Deadline, long)}) also expires with
+ * the deadline of the whole search. {@link #isExpired()} and {@link #cancel()} may be called by
+ * several threads, but the calls to {@link #expired()} are counted without synchronization: each
+ * thread of a parallel engine polls its own child deadline ({@link #Deadline(Deadline)}), so that
+ * the threads neither lose counts nor write to the same counter.
+ * 
+ * @author Fabien Lehuede / Damien Prot / Axel Grimault 2016
+ * 
+ */
+public class Deadline {
+
+    // ---------------------------------------------
+    // --------------- ATTRIBUTES ------------------
+    // ---------------------------------------------
+
+    /** Default number of calls to {@link #expired()} between two readings of the clock */
+    public static final int DEFAULT_STRIDE = 64;
+
+    /** Creation time (System.nanoTime) */
+    private final long m_start;
+
+    /** Expiration time (System.nanoTime) */
+    private final long m_end;
+
+    /** Number of calls to {@link #expired()} between two readings of the clock (power of 2) */
+    private final int m_stride;
+
+    /** Number of calls to {@link #expired()} by the thread polling this deadline */
+    private int m_calls = 0;
+
+    /** <code>true</code> once the deadline is reached or cancelled */
+    private volatile boolean m_expired = false;
+
+    /** Deadline of the whole search, <code>null</code> if none */
+    private final Deadline m_parent;
+
+    // -------------------------------------
+    // ------------ CONSTRUCTOR ------------
+    // -------------------------------------
+
+    /**
+     * Creates a deadline expiring in <code>timeLimit</code> milliseconds.
+     * 
+     * @param timeLimit : time limit in milliseconds
+     */
+    public Deadline(long timeLimit) {
+	this(timeLimit, DEFAULT_STRIDE);
+    }
+
+    /**
+     * Creates a deadline expiring in <code>timeLimit</code> milliseconds.
+     * 
+     * @param timeLimit : time limit in milliseconds
+     * @param stride : number of calls to {@link #expired()} between two readings of the clock
+     * (rounded up to a power of 2)
+     */
+    public Deadline(long timeLimit, int stride) {
+	m_start = System.nanoTime();
+	m_end = m_start + Math.max(0, timeLimit) * 1000000L;
+	m_stride = (stride <= 1) ? 1 : Integer.highestOneBit(stride - 1) << 1;
+	m_parent = null;
+    }
+
+    /**
+     * Creates a deadline for a thread of a search: it expires with the deadline of the whole search,
+     * but counts its own calls to {@link #expired()}.
+     * 
+     * @param parent : deadline of the whole search
+     */
+    public Deadline(Deadline parent) {
+	m_start = parent.m_start;
+	m_end = parent.m_end;
+	m_stride = parent.m_stride;
+	m_parent = parent;
+	m_expired = parent.m_expired;
+    }
+
+    /**
+     * Creates a deadline for a part of a search: it expires in <code>timeLimit</code> milliseconds,
+     * or when the deadline of the whole search expires or is cancelled if this happens first.
+     * 
+     * @param parent : deadline of the whole search
+     * @param timeLimit : time limit in milliseconds
+     */
+    public Deadline(Deadline parent, long timeLimit) {
+	m_start = System.nanoTime();
+	long end = m_start + Math.max(0, timeLimit) * 1000000L;
+	m_end = (parent.m_end - end < 0) ? parent.m_end : end;
+	m_stride = parent.m_stride;
+	m_parent = parent;
+    }
+
+    // -------------------------------------
+    // -------------- METHODS --------------
+    // -------------------------------------
+
+    /**
+     * @return <code>true</code> if the deadline is reached or cancelled. The clock is read
+     * once every {@link #getStride()} calls only.
+     */
+    public boolean expired() {
+	if ((++m_calls & (m_stride - 1)) != 0)
+	    return m_expired;
+	return isExpired();
+    }
+
+    /**
+     * @return <code>true</code> if the deadline is reached or cancelled.
+     */
+    public boolean isExpired() {
+	if (m_expired)
+	    return true;
+	if ((System.nanoTime() - m_end >= 0) || ((m_parent != null) && m_parent.isExpired())) {
+	    m_expired = true;
+	    return true;
+	}
+	return false;
+    }
+
+    /**
+     * Stop the search: the deadline is expired from now on.
+     */
+    public void cancel() {
+	m_expired = true;
+    }
+
+    /**
+     * @return Number of calls to {@link #expired()} between two readings of the clock.
+     */
+    public int getStride() {
+	return m_stride;
+    }
+
+    /**
+     * @return Time elapsed since the creation of the deadline, in milliseconds.
+     */
+    public long getElapsedTime() {
+	return (System.nanoTime() - m_start) / 1000000L;
+    }
+
+    /**
+     * @return Time remaining before the deadline, in milliseconds (0 if the deadline is expired).
+     */
+    public long getRemainingTime() {
+	if (m_expired || ((m_parent != null) && m_parent.isExpired()))
+	    return 0;
+	return Math.max(0, (m_end - System.nanoTime()) / 1000000L);
+    }
+
+}
@@ -0,0 +1,384 @@
+/*
+	mkp-framework
+	Copyright (C) 2013 Fabien Lehuede / Damien Prot / Axel Grimault
+
+	This program is free software; you can redistribute it and/or modify
+	it under the terms of the GNU General Public License as published by
+	the Free Software Foundation; either version 2 of the License, or
+	(at your option) any later version.
+
+	This program is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+	GNU General Public License for more details.
+
+	You should have received a copy of the GNU General Public License along
+	with this program; if not, write to the Free Software Foundation, Inc.,
+	51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package edu.emn.mkp;
+
+import java.util.Arrays;
+
+/**
+ * Dynamic programming engine (<code>-solver dp</code>), exact for instances with few constraints
+ * or small capacities.
+ * 
+ * The fallback engine is first run for {@link #WARM_START} of the time to get a good lower bound: the
+ * reduced cost fixing and the bounds below depend on it. The reduced cost fixing is skipped if the
+ * linear relaxation is not expected to be solved within {@link SurrogateGreedySolver#LP_SHARE} of the
+ * time left ({@link LPRelaxation#isCheap(Instance, long)}).
+ * The free items (after reduced cost fixing with the linear relaxation) are processed one by one
+ * by decreasing surrogate efficiency. A state is a partial solution on the items processed: its
+ * profit and its weight in each constraint. The states of a layer are stored in primitive arrays,
+ * sorted by decreasing profit, and are removed if:
+ *  - their profit plus the fractional bound of the surrogate knapsack of the remaining items
+ *    is not better than the best known solution;
+ *  - they are dominated (not more profit, not less weight in any constraint) by one of the
+ *    {@link #DOMINANCE_WINDOW} states of the layer with the next larger profits.
+ * Each state keeps the index of its parent in the previous layer, so that the solution is rebuilt
+ * at the end without storing the items of each state.
+ * 
+ * Before the search, the size of the state space is bounded by the size of the dense table (product
+ * of the capacities) and by the number of subsets of the free items. This bound is only reported:
+ * the dynamic program is tried even if it exceeds the memory budget, since the pruning usually keeps
+ * far fewer states. The dynamic program is abandoned as soon as the states exceed the budget, or
+ * after {@link #DP_SHARE} of the time left, and the fallback engine is then run on the solver for
+ * the remaining time.
+ * 
+ * @author Fabien Lehuede / Damien Prot / Axel Grimault 2016
+ * 
+ */
+public class DynamicProgrammingSolver implements SolverEngine {
+
+    // ---------------------------------------------
+    // --------------- ATTRIBUTES ------------------
+    // ---------------------------------------------
+
+    /** Number of states with a larger profit against which the dominance of a state is checked */
+    public static final int DOMINANCE_WINDOW = 32;
+
+    /** Part of the time given to the fallback engine before the dynamic program */
+    public static final double WARM_START = 0.25;
+
+    /** Part of the time left after the relaxation given to the dynamic program, the rest is left to the fallback engine */
+    public static final double DP_SHARE = 0.5;
+
+    /** Memory budget (bytes) of the states */
+    private final long m_maxMemory;
+
+    /** Engine run if the number of states exceeds the budget */
+    private final SolverEngine m_fallback;
+
+    /** <code>true</code> if the last search proved that its solution is optimal */
+    private boolean m_optimal = false;
+
+    // -------------------------------------
+    // ------------ CONSTRUCTOR ------------
+    // -------------------------------------
+
+    /**
+     * Creates an engine whose budget is half of the memory of the JVM, with a local search as fallback.
+     */
+    public DynamicProgrammingSolver() {
+	this(Runtime.getRuntime().maxMemory() / 2, new LocalSearchSolver());
+    }
+
+    /**
+     * @param maxMemory : memory budget (bytes) of the states
+     * @param fallback : engine giving the initial lower bound, and run if the states exceed the budget
+     */
+    public DynamicProgrammingSolver(long maxMemory, SolverEngine fallback) {
+	m_maxMemory = maxMemory;
+	m_fallback = fallback;
+    }
+
+    // --------------------------------------------
+    // ------------ GETTERS AND SETTERS -----------
+    // --------------------------------------------
+
+    /**
+     * @return <code>true</code> if the last search proved that its solution is optimal.
+     */
+    public boolean isOptimal() {
+	return m_optimal;
+    }
+
+    // -------------------------------------
+    // -------------- METHODS --------------
+    // -------------------------------------
+
+    @Override
+    public void solve(MKPSolver solver) throws Exception {
+	Instance instance = solver.getInstance();
+	Incumbent incumbent = solver.getIncumbent();
+	Deadline deadline = solver.getDeadline();
+	int nbItems = instance.getNbItems();
+	int nbConstraints = instance.getNbConstraints();
+	int[] weights = instance.getWeightsByItem();
+	int[] capacities = instance.getCapacities();
+	m_optimal = false;
+
+	// Initial lower bound, without waiting for the relaxation
+	double[] multipliers = SurrogateGreedySolver.dualMultipliers(instance);
+	int[] order = SurrogateGreedySolver.efficiencyOrder(instance, multipliers);
+	Solution initial = solver.getSolution().clone();
+	Solution best = solver.getSolution();
+	SurrogateGreedySolver.repair(best, order);
+	incumbent.offer(best);
+	MKPSolver warmStart = new MKPSolver();
+	warmStart.setInstance(instance);
+	warmStart.setSolution(best.clone());
+	warmStart.setTime(solver.getTime());
+	warmStart.setDeadline(new Deadline(deadline, (long) (deadline.getRemainingTime() * WARM_START)));
+	warmStart.setIncumbent(incumbent);
+	warmStart.setNbThreads(solver.getNbThreads());
+	warmStart.setSeed(solver.getSeed());
+	warmStart.setMetrics(solver.getMetrics());
+	m_fallback.solve(warmStart);
+	incumbent.offer(warmStart.getSolution());
+	if (incumbent.getObjective() > best.getObjective())
+	    best = incumbent.get().clone();
+	solver.setSolution(best);
+	long lowerBound = best.getObjective();
+
+	// Reduced cost fixing: the root state contains the items fixed to 1 (valid even if the relaxation
+	// is stopped by its deadline), skipped if the relaxation would take the time of the dynamic program
+	long lpTime = (long) (deadline.getRemainingTime() * SurrogateGreedySolver.LP_SHARE);
+	LPRelaxation relaxation = instance.getRelaxationIfSolved();
+	if ((relaxation == null) && LPRelaxation.isCheap(instance, lpTime))
+	    relaxation = instance.getRelaxation(new Deadline(deadline, lpTime));
+	if ((relaxation != null) && relaxation.isOptimal()) {
+	    // The order of the initial lower bound did not use the duals if the relaxation was not solved yet
+	    double[] duals = SurrogateGreedySolver.dualMultipliers(instance);
+	    if (!Arrays.equals(duals, multipliers)) {
+		multipliers = duals;
+		order = SurrogateGreedySolver.efficiencyOrder(instance, multipliers);
+		SurrogateGreedySolver.repair(initial, order);
+		incumbent.offer(initial);
+		if (initial.getObjective() > best.getObjective()) {
+		    best = initial;
+		    solver.setSolution(best);
+		    lowerBound = best.getObjective();
+		}
+	    }
+	}
+	byte[] fixed;
+	if (relaxation != null) {
+	    fixed = relaxation.reducedCostFixing(lowerBound);
+	} else {
+	    System.err.println("Dynamic programming: relaxation too long for the time left, no reduced cost fixing.");
+	    fixed = new byte[nbItems];
+	    Arrays.fill(fixed, (byte) -1);
+	}
+	int[] rootWeights = new int[nbConstraints];
+	long rootProfit = 0;
+	int nbFree = 0;
+	for (int j = 0; j < nbItems; j++) {
+	    if (fixed[j] == 1) {
+		rootProfit += instance.profit(j);
+		for (int i = 0; i < nbConstraints; i++) {
+		    rootWeights[i] += weights[j * nbConstraints + i];
+		}
+	    } else if (fixed[j] < 0) {
+		nbFree++;
+	    }
+	}
+	for (int i = 0; i < nbConstraints; i++) {
+	    if (rootWeights[i] > capacities[i]) {
+		// No solution better than the lower bound
+		m_optimal = true;
+		return;
+	    }
+	}
+
+	// Free items by decreasing efficiency, with prefix sums for the surrogate bound
+	int[] free = new int[nbFree];
+	double[] surrogate = new double[nbFree];
+	double[] sumProfit = new double[nbFree + 1];
+	double[] sumSurrogate = new double[nbFree + 1];
+	int n = 0;
+	for (int j : order) {
+	    if (fixed[j] >= 0)
+		continue;
+	    free[n] = j;
+	    for (int i = 0; i < nbConstraints; i++) {
+		surrogate[n] += multipliers[i] * weights[j * nbConstraints + i];
+	    }
+	    sumProfit[n + 1] = sumProfit[n] + instance.profit(j);
+	    sumSurrogate[n + 1] = sumSurrogate[n] + surrogate[n];
+	    n++;
+	}
+	double surrogateCapacity = 0;
+	for (int i = 0; i < nbConstraints; i++) {
+	    surrogateCapacity += multipliers[i] * capacities[i];
+	}
+	surrogateCapacity += 1e-7 * Math.max(1, surrogateCapacity);
+
+	// Size of the state space
+	double estimate = Math.pow(2, nbFree);
+	double table = 1;
+	for (int i = 0; i < nbConstraints; i++) {
+	    table *= capacities[i] - rootWeights[i] + 1.0;
+	}
+	estimate = Math.min(estimate, table);
+	// Memory of a state: parent, and twice (two layers) profit, surrogate weight and weights
+	long stateMemory = 4 + 2 * (8 + 8 + 4 * nbConstraints);
+	System.err.printf("Dynamic programming: %d free items, at most %.3g states per layer%s%n", nbFree, estimate,
+		(estimate * (stateMemory + 4 * nbFree) <= m_maxMemory) ? ""
+			: " (more than the memory budget, tried since the pruning keeps fewer)");
+	Deadline share = new Deadline(deadline, (long) (deadline.getRemainingTime() * DP_SHARE));
+
+	// Layers of states: profit, weights (constraint by constraint of a state), surrogate weight
+	int capacity = 1024;
+	long[] profit = new long[capacity];
+	int[] weight = new int[capacity * nbConstraints];
+	double[] used = new double[capacity];
+	long[] nextProfit = new long[capacity];
+	int[] nextWeight = new int[capacity * nbConstraints];
+	double[] nextUsed = new double[capacity];
+	int[][] parents = new int[nbFree][];
+	int[] nextParent = new int[capacity];
+
+	int size = 1;
+	profit[0] = rootProfit;
+	System.arraycopy(rootWeights, 0, weight, 0, nbConstraints);
+	for (int i = 0; i < nbConstraints; i++) {
+	    used[0] += multipliers[i] * rootWeights[i];
+	}
+	long nbStates = 0;
+	boolean aborted = false;
+	boolean timeout = false;
+
+	for (int k = 0; (k < nbFree) && (size > 0); k++) {
+	    if (share.isExpired()) {
+		timeout = true;
+		break;
+	    }
+	    if (nbStates * 4 + capacity * stateMemory > m_maxMemory) {
+		aborted = true;
+		break;
+	    }
+	    int j = free[k];
+	    int offset = j * nbConstraints;
+	    int itemProfit = instance.profit(j);
+
+	    // Merge of the states without item j and with item j, both sorted by decreasing profit
+	    int nextSize = 0;
+	    int a = 0;
+	    int b = 0;
+	    while ((a < size) || (b < size)) {
+		if (share.expired()) {
+		    timeout = true;
+		    break;
+		}
+		if (nextSize + 1 >= capacity) {
+		    if (nbStates * 4 + 2 * capacity * stateMemory > m_maxMemory) {
+			aborted = true;
+			break;
+		    }
+		    capacity *= 2;
+		    nextProfit = Arrays.copyOf(nextProfit, capacity);
+		    nextWeight = Arrays.copyOf(nextWeight, capacity * nbConstraints);
+		    nextUsed = Arrays.copyOf(nextUsed, capacity);
+		    nextParent = Arrays.copyOf(nextParent, capacity);
+		}
+		boolean include = (b < size) && ((a >= size) || (profit[b] + itemProfit > profit[a]));
+		int s = include ? b++ : a++;
+		long p = include ? profit[s] + itemProfit : profit[s];
+		double u = include ? used[s] + surrogate[k] : used[s];
+
+		// Bound on the items not processed yet
+		double bound = p + BranchAndBoundSolver.surrogateBound(k + 1, surrogateCapacity - u, surrogate, sumProfit, sumSurrogate);
+		if (Math.floor(bound + 1e-6) <= lowerBound)
+		    continue;
+
+		int base = nextSize * nbConstraints;
+		int from = s * nbConstraints;
+		boolean fits = true;
+		for (int i = 0; i < nbConstraints; i++) {
+		    int w = weight[from + i] + (include ? weights[offset + i] : 0);
+		    if (w > capacities[i]) {
+			fits = false;
+			break;
+		    }
+		    nextWeight[base + i] = w;
+		}
+		if (!fits || dominated(nextWeight, base, nextSize, nbConstraints))
+		    continue;
+		nextProfit[nextSize] = p;
+		nextUsed[nextSize] = u;
+		nextParent[nextSize] = (s << 1) | (include ? 1 : 0);
+		nextSize++;
+	    }
+	    if (aborted || timeout)
+		break;
+	    parents[k] = Arrays.copyOf(nextParent, nextSize);
+	    nbStates += nextSize;
+
+	    long[] swapProfit = profit;
+	    profit = nextProfit;
+	    nextProfit = (swapProfit.length >= capacity) ? swapProfit : new long[capacity];
+	    int[] swapWeight = weight;
+	    weight = nextWeight;
+	    nextWeight = (swapWeight.length >= capacity * nbConstraints) ? swapWeight : new int[capacity * nbConstraints];
+	    double[] swapUsed = used;
+	    used = nextUsed;
+	    nextUsed = (swapUsed.length >= capacity) ? swapUsed : new double[capacity];
+	    size = nextSize;
+	}
+
+	solver.getMetrics().add(SearchMetrics.EVALUATED, nbStates);
+	if (timeout || aborted) {
+	    System.err.println("Dynamic programming: " + (timeout ? "time share" : "budget") + " exceeded after "
+		    + nbStates + " states, fallback engine.");
+	    parents = null;
+	    profit = null;
+	    weight = null;
+	    nextProfit = null;
+	    nextWeight = null;
+	    if (!deadline.isExpired())
+		m_fallback.solve(solver);
+	    return;
+	}
+
+	// The states of the last layer are better than the lower bound: the first one is optimal
+	if (size > 0) {
+	    Solution sol = new Solution(instance);
+	    for (int j = 0; j < nbItems; j++) {
+		if (fixed[j] == 1)
+		    sol.add(j);
+	    }
+	    int s = 0;
+	    for (int k = nbFree - 1; k >= 0; k--) {
+		int parent = parents[k][s];
+		if ((parent & 1) != 0)
+		    sol.add(free[k]);
+		s = parent >>> 1;
+	    }
+	    incumbent.offer(sol);
+	    solver.setSolution(sol);
+	}
+	m_optimal = true;
+	System.err.println("Dynamic programming: " + nbStates + " states, optimality proven.");
+    }
+
+    /**
+     * @return <code>true</code> if the state whose weights start at <code>base</code> is dominated by one of
+     *         the previous states of the layer (which have a larger or equal profit).
+     */
+    private static boolean dominated(int[] weight, int base, int size, int nbConstraints) {
+	for (int t = size - 1; (t >= 0) && (t >= size - DOMINANCE_WINDOW); t--) {
+	    int other = t * nbConstraints;
+	    int i = 0;
+	    while ((i < nbConstraints) && (weight[other + i] <= weight[base + i])) {
+		i++;
+	    }
+	    if (i == nbConstraints)
+		return true;
+	}
+	return false;
+    }
+
+}
@@ -0,0 +1,380 @@
+/*
+	mkp-framework
+	Copyright (C) 2013 Fabien Lehuede / Damien Prot / Axel Grimault
+
+	This program is free software; you can redistribute it and/or modify
+	it under the terms of the GNU General Public License as published by
+	the Free Software Foundation; either version 2 of the License, or
+	(at your option) any later version.
+
+	This program is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+	GNU General Public License for more details.
+
+	You should have received a copy of the GNU General Public License along
+	with this program; if not, write to the Free Software Foundation, Inc.,
+	51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package edu.emn.mkp;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Locale;
+
+/**
+ * Generates random instances following Chu and Beasley (the OR-Library instances):
+ *  - the weights w_ij are drawn uniformly in [0, 1000];
+ *  - the capacities are c_i = alpha * sum_j w_ij, where alpha is the tightness ratio;
+ *  - the profits are correlated with the weights: p_j = sum_i w_ij / m + 500 q_j, q_j drawn uniformly in [0, 1).
+ * 
+ * The random values come from a counter-based generator: each value is a hash of the seed and of
+ * its position, so that any weight can be computed again without the others. The file is written
+ * as it is generated, in two passes over the weights (profits and capacities, then the weights),
+ * and only the m capacities are kept in memory: 100x100000 instances can be generated.
+ * 
+ * **command**: java edu.emn.mkp.Generator [options]
+ * **Options**:
+ *  - -m (int) :number of constraints (default 5)
+ *  - -n (int) :number of items (default 100)
+ *  - -tightness (double) :tightness ratio alpha of the constraints (default 0.25)
+ *  - -seed (int) :seed of the generator, also the number of the instance in its name (default 1)
+ *  - -binary :write the binary format (see {@link Instance#writeBinary(String)}) instead of the text format
+ *  - -o (directory) :directory of the file (default: current directory)
+ * 
+ * The file is named as the OR-Library files, for example <code>OR5x100-0.25_1.dat</code>
+ * (<code>.mkpb</code> for the binary format). Its name is printed on the standard output.
+ * 
+ * @author Fabien Lehuede / Damien Prot / Axel Grimault 2016
+ * 
+ */
+public class Generator {
+
+    // ---------------------------------------------
+    // --------------- ATTRIBUTES ------------------
+    // ---------------------------------------------
+
+    /** Largest weight */
+    public static final int MAX_WEIGHT = 1000;
+
+    /** Range of the random part of the profits */
+    public static final int PROFIT_RANGE = 500;
+
+    /** Size of the buffer of the file written */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /** Number of values per line of the text format */
+    private static final int VALUES_PER_LINE = 10;
+
+    /** Number of constraints */
+    private final int m_nbConstraints;
+
+    /** Number of items */
+    private final int m_nbItems;
+
+    /** Tightness ratio of the constraints */
+    private final double m_tightness;
+
+    /** Seed of the generator */
+    private final long m_seed;
+
+    // -------------------------------------
+    // ------------ CONSTRUCTOR ------------
+    // -------------------------------------
+
+    /**
+     * @param nbConstraints : number of constraints
+     * @param nbItems : number of items
+     * @param tightness : tightness ratio of the constraints (between 0 and 1)
+     * @param seed : seed of the generator
+     */
+    public Generator(int nbConstraints, int nbItems, double tightness, long seed) {
+	if ((nbConstraints <= 0) || (nbItems <= 0))
+	    throw new IllegalArgumentException("Error: " + nbItems + " items and " + nbConstraints + " constraints.");
+	if ((tightness <= 0) || (tightness > 1))
+	    throw new IllegalArgumentException("Error: the tightness ratio " + tightness + " is not in ]0, 1].");
+	if ((long) nbItems * MAX_WEIGHT > Integer.MAX_VALUE)
+	    throw new IllegalArgumentException("Error: " + nbItems + " items, the capacities would exceed the int range.");
+	m_nbConstraints = nbConstraints;
+	m_nbItems = nbItems;
+	m_tightness = tightness;
+	m_seed = seed;
+    }
+
+    // -------------------------------------
+    // -------------- METHODS --------------
+    // -------------------------------------
+
+    /**
+     * Main method.
+     * 
+     * @param arg program parameters.
+     */
+    public static void main(String[] arg) {
+	int nbConstraints = 5;
+	int nbItems = 100;
+	double tightness = 0.25;
+	long seed = 1;
+	boolean binary = false;
+	String directory = ".";
+
+	try {
+	    for (int i = 0; i < arg.length; i++) {
+		if (arg[i].compareTo("-help") == 0) {
+		    System.err.println("Generate a random instance following Chu and Beasley");
+		    System.err.println("command: java edu.emn.mkp.Generator [options]");
+		    System.err.println("Options:");
+		    System.err.println("\t-m\t\t: number of constraints (int), default " + nbConstraints);
+		    System.err.println("\t-n\t\t: number of items (int), default " + nbItems);
+		    System.err.println("\t-tightness\t: tightness ratio of the constraints (double), default " + tightness);
+		    System.err.println("\t-seed\t: seed of the generator and number of the instance (int), default " + seed);
+		    System.err.println("\t-binary\t: write the binary format");
+		    System.err.println("\t-o\t\t: directory of the file, default current directory");
+		    return;
+		} else if (arg[i].compareTo("-m") == 0) {
+		    nbConstraints = Integer.parseInt(arg[++i]);
+		} else if (arg[i].compareTo("-n") == 0) {
+		    nbItems = Integer.parseInt(arg[++i]);
+		} else if (arg[i].compareTo("-tightness") == 0) {
+		    tightness = Double.parseDouble(arg[++i]);
+		} else if (arg[i].compareTo("-seed") == 0) {
+		    seed = Long.parseLong(arg[++i]);
+		} else if (arg[i].compareTo("-binary") == 0) {
+		    binary = true;
+		} else if (arg[i].compareTo("-o") == 0) {
+		    directory = arg[++i];
+		} else {
+		    throw new IllegalArgumentException("Value " + arg[i] + " is not a valid parameter.");
+		}
+	    }
+	} catch (Exception e) {
+	    System.err.println("Error: There is a problem in the program parameters: " + e.getMessage());
+	    System.exit(1);
+	}
+
+	try {
+	    Generator generator = new Generator(nbConstraints, nbItems, tightness, seed);
+	    String fileName = new File(directory, generator.getName() + (binary ? ".mkpb" : ".dat")).getPath();
+	    if (binary)
+		generator.writeBinary(fileName);
+	    else
+		generator.writeText(fileName);
+	    System.out.println(fileName);
+	} catch (IllegalArgumentException e) {
+	    System.err.println(e.getMessage());
+	    System.exit(1);
+	} catch (IOException e) {
+	    System.err.println("Error: An error has been met when writing the instance file: " + e.getMessage());
+	    System.exit(1);
+	}
+    }
+
+    /**
+     * @return The name of the instance, as the OR-Library files: <code>OR5x100-0.25_1</code>.
+     */
+    public String getName() {
+	return String.format(Locale.ROOT, "OR%dx%d-%.2f_%d", m_nbConstraints, m_nbItems, m_tightness, m_seed);
+    }
+
+    /**
+     * @param j : index of the item
+     * @param i : index of the constraint
+     * @return The weight of item j in constraint i.
+     */
+    public int weight(int j, int i) {
+	return (int) uniform(((long) i * m_nbItems + j) << 1, MAX_WEIGHT + 1);
+    }
+
+    /**
+     * @param j : index of the item
+     * @return The profit of item j (computed from its weights).
+     */
+    public int profit(int j) {
+	return profit(j, null);
+    }
+
+    /**
+     * Write the instance in the text format of the OR-Library: the number of items and of
+     * constraints (and 0 for the unknown optimal value), the profits, the weights constraint
+     * by constraint and the capacities.
+     * 
+     * @param fileName : the file to write
+     * @throws IOException Returns an error when a problem is met writing the file.
+     */
+    public void writeText(String fileName) throws IOException {
+	try (TextWriter out = new TextWriter(new FileOutputStream(fileName))) {
+	    out.put(m_nbItems);
+	    out.put(m_nbConstraints);
+	    out.put(0);
+	    out.newLine();
+	    // First pass: profits and capacities
+	    long[] sums = new long[m_nbConstraints];
+	    for (int j = 0; j < m_nbItems; j++) {
+		out.putValue(profit(j, sums));
+	    }
+	    out.newLine();
+	    // Second pass: weights
+	    for (int i = 0; i < m_nbConstraints; i++) {
+		for (int j = 0; j < m_nbItems; j++) {
+		    out.putValue(weight(j, i));
+		}
+		out.newLine();
+	    }
+	    for (int i = 0; i < m_nbConstraints; i++) {
+		out.putValue(capacity(sums[i]));
+	    }
+	    out.newLine();
+	}
+    }
+
+    /**
+     * Write the instance in the binary format read by {@link Instance}.
+     * 
+     * @param fileName : the file to write
+     * @throws IOException Returns an error when a problem is met writing the file.
+     */
+    public void writeBinary(String fileName) throws IOException {
+	try (OutputStream out = new FileOutputStream(fileName)) {
+	    ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+	    buffer.putInt(Instance.BINARY_MAGIC);
+	    buffer.putInt(Instance.BINARY_VERSION);
+	    buffer.putInt(m_nbItems);
+	    buffer.putInt(m_nbConstraints);
+	    // First pass: profits and capacities
+	    long[] sums = new long[m_nbConstraints];
+	    for (int j = 0; j < m_nbItems; j++) {
+		buffer = putInt(out, buffer, profit(j, sums));
+	    }
+	    // Second pass: weights, item by item
+	    for (int j = 0; j < m_nbItems; j++) {
+		for (int i = 0; i < m_nbConstraints; i++) {
+		    buffer = putInt(out, buffer, weight(j, i));
+		}
+	    }
+	    for (int i = 0; i < m_nbConstraints; i++) {
+		buffer = putInt(out, buffer, capacity(sums[i]));
+	    }
+	    out.write(buffer.array(), 0, buffer.position());
+	}
+    }
+
+    /**
+     * @param j : index of the item
+     * @param sums : sum of the weights of each constraint, the weights of item j are added (may be <code>null</code>)
+     * @return The profit of item j.
+     */
+    private int profit(int j, long[] sums) {
+	long sum = 0;
+	for (int i = 0; i < m_nbConstraints; i++) {
+	    int w = weight(j, i);
+	    if (sums != null)
+		sums[i] += w;
+	    sum += w;
+	}
+	return (int) (sum / m_nbConstraints + uniform(((long) j << 1) | 1, PROFIT_RANGE));
+    }
+
+    /**
+     * @return The capacity of a constraint whose weights sum to <code>sum</code>.
+     */
+    private int capacity(long sum) {
+	return (int) (m_tightness * sum);
+    }
+
+    /**
+     * Counter-based generator: the value only depends on the seed and on the counter.
+     * 
+     * @param counter : position of the value (weights at even positions, profits at odd positions)
+     * @param bound : number of values
+     * @return A value drawn uniformly in [0, bound).
+     */
+    private long uniform(long counter, int bound) {
+	// SplitMix64 finalizer of the counter in the sequence of the seed
+	long z = m_seed * 0x9E3779B97F4A7C15L + (counter + 1) * 0xBF58476D1CE4E5B9L;
+	z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+	z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+	z = z ^ (z >>> 31);
+	return ((z >>> 32) * bound) >>> 32;
+    }
+
+    /**
+     * Add a little-endian int to the buffer, written to the stream when it is full.
+     * 
+     * @return The buffer.
+     */
+    private static ByteBuffer putInt(OutputStream out, ByteBuffer buffer, int value) throws IOException {
+	if (buffer.remaining() < 4) {
+	    out.write(buffer.array(), 0, buffer.position());
+	    buffer.clear();
+	}
+	buffer.putInt(value);
+	return buffer;
+    }
+
+    /**
+     * Writes the integers of the text format without creating any String.
+     */
+    private static class TextWriter implements AutoCloseable {
+	private final OutputStream out;
+	private final byte[] buffer = new byte[BUFFER_SIZE];
+	private int position = 0;
+	/** Number of values on the current line */
+	private int nbValues = 0;
+
+	TextWriter(OutputStream out) {
+	    this.out = out;
+	}
+
+	/** Write a value of a list, {@link #VALUES_PER_LINE} values per line */
+	void putValue(int value) throws IOException {
+	    if (nbValues == VALUES_PER_LINE)
+		newLine();
+	    put(value);
+	}
+
+	/** Write a value preceded by a blank */
+	void put(int value) throws IOException {
+	    if (position + 12 > buffer.length)
+		flush();
+	    buffer[position++] = ' ';
+	    if (value < 0) {
+		buffer[position++] = '-';
+		value = -value;
+	    }
+	    int end = position + ((value == 0) ? 1 : (int) Math.log10(value) + 1);
+	    for (int k = end - 1; k >= position; k--) {
+		buffer[k] = (byte) ('0' + value % 10);
+		value /= 10;
+	    }
+	    position = end;
+	    nbValues++;
+	}
+
+	/** End the current line, if it has values */
+	void newLine() throws IOException {
+	    if (nbValues == 0)
+		return;
+	    if (position + 1 > buffer.length)
+		flush();
+	    buffer[position++] = '\n';
+	    nbValues = 0;
+	}
+
+	void flush() throws IOException {
+	    out.write(buffer, 0, position);
+	    position = 0;
+	}
+
+	@Override
+	public void close() throws IOException {
+	    flush();
+	    out.close();
+	}
+    }
+
+}
@@ -0,0 +1,302 @@
+/*
+	mkp-framework
+	Copyright (C) 2013 Fabien Lehuede / Damien Prot / Axel Grimault
+
+	This program is free software; you can redistribute it and/or modify
+	it under the terms of the GNU General Public License as published by
+	the Free Software Foundation; either version 2 of the License, or
+	(at your option) any later version.
+
+	This program is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+	GNU General Public License for more details.
+
+	You should have received a copy of the GNU General Public License along
+	with this program; if not, write to the Free Software Foundation, Inc.,
+	51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package edu.emn.mkp;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Genetic algorithm engine (<code>-solver ga</code>) in the style of Chu and Beasley, with an island model.
+ * 
+ * Each island is a steady-state population of solutions that runs on its own thread
+ * ({@link MKPSolver#getNbThreads()} islands). Offspring are created by batches:
+ *  - binary tournament selection of two parents;
+ *  - uniform crossover and mutation of two random items;
+ *  - DROP / ADD repair with the items sorted by efficiency (dual values of the linear relaxation);
+ *  - each offspring that is not already in the population replaces the worst solution.
+ * The offspring are built from the first parent by {@link Solution#copyFrom(Solution)} and
+ * {@link Solution#applyFlips(long[])}: only the items that differ are evaluated, and the solutions
+ * replaced in the population are reused for the next offspring.
+ * 
+ * Every few batches, each island sends a copy of its best solution to the next island through a
+ * lock-free mailbox, and inserts the solution received from the previous island.
+ * The improvements are offered to the incumbent of the solver.
+ * 
+ * @author Fabien Lehuede / Damien Prot / Axel Grimault 2016
+ * 
+ */
+public class GeneticSolver implements SolverEngine {
+
+    // ---------------------------------------------
+    // --------------- ATTRIBUTES ------------------
+    // ---------------------------------------------
+
+    /** Number of solutions of each island */
+    private final int m_populationSize;
+
+    /** Number of offspring created, repaired and inserted together */
+    private final int m_batchSize;
+
+    /** Number of batches between two migrations */
+    private final int m_migrationInterval;
+
+    // -------------------------------------
+    // ------------ CONSTRUCTOR ------------
+    // -------------------------------------
+
+    /**
+     * Creates an engine with islands of 100 solutions, batches of 16 offspring and a migration every 50 batches.
+     */
+    public GeneticSolver() {
+	this(100, 16, 50);
+    }
+
+    /**
+     * @param populationSize : number of solutions of each island
+     * @param batchSize : number of offspring created, repaired and inserted together
+     * @param migrationInterval : number of batches between two migrations
+     */
+    public GeneticSolver(int populationSize, int batchSize, int migrationInterval) {
+	m_populationSize = Math.max(2, populationSize);
+	m_batchSize = Math.max(1, batchSize);
+	m_migrationInterval = Math.max(1, migrationInterval);
+    }
+
+    // -------------------------------------
+    // -------------- METHODS --------------
+    // -------------------------------------
+
+    @Override
+    public void solve(MKPSolver solver) throws Exception {
+	Instance instance = solver.getInstance();
+	int nbIslands = Math.max(1, solver.getNbThreads());
+	int[] order = SurrogateGreedySolver.efficiencyOrder(instance,
+		SurrogateGreedySolver.dualMultipliers(instance, solver.getDeadline()));
+	AtomicReferenceArray<Solution> mailbox = new AtomicReferenceArray<>(nbIslands);
+
+	// The initial solution of the solver is repaired and offered, so that the incumbent is never empty
+	Solution initial = solver.getSolution();
+	SurrogateGreedySolver.repair(initial, order);
+	solver.getIncumbent().offer(initial);
+
+	ExecutorService executor = Executors.newFixedThreadPool(nbIslands);
+	try {
+	    List<Future<?>> futures = new ArrayList<>();
+	    for (int k = 0; k < nbIslands; k++) {
+		final Island island = new Island(solver, order, mailbox, k);
+		futures.add(executor.submit(() -> {
+		    island.run();
+		    return null;
+		}));
+	    }
+	    for (Future<?> future : futures) {
+		future.get();
+	    }
+	} finally {
+	    executor.shutdownNow();
+	}
+
+	Solution best = solver.getIncumbent().get();
+	if (best != null)
+	    solver.setSolution(best.clone());
+    }
+
+    /**
+     * Population of an island, evolved by a single thread.
+     */
+    private class Island {
+
+	private final MKPSolver m_solver;
+	private final int[] m_order;
+	private final AtomicReferenceArray<Solution> m_mailbox;
+	private final int m_index;
+	private final Random m_random;
+	private final Solution[] m_population;
+	private final Solution[] m_offspring;
+	private final long[] m_mask;
+	private Solution m_best;
+
+	Island(MKPSolver solver, int[] order, AtomicReferenceArray<Solution> mailbox, int index) {
+	    m_solver = solver;
+	    m_order = order;
+	    m_mailbox = mailbox;
+	    m_index = index;
+	    m_random = new Random(solver.getSeed() + index);
+	    m_population = new Solution[m_populationSize];
+	    m_offspring = new Solution[m_batchSize];
+	    Instance instance = solver.getInstance();
+	    for (int b = 0; b < m_batchSize; b++) {
+		m_offspring[b] = new Solution(instance);
+	    }
+	    m_mask = new long[m_offspring[0].getBits().length];
+	}
+
+	void run() {
+	    Deadline deadline = new Deadline(m_solver.getDeadline());
+	    Incumbent incumbent = m_solver.getIncumbent();
+	    SearchMetrics metrics = m_solver.getMetrics();
+	    int nbItems = m_order.length;
+	    int nbIslands = m_mailbox.length();
+
+	    // Initial population: items added in a random order while they fit (not completed if the
+	    // deadline is reached, the generations are then not run)
+	    int[] permutation = m_order.clone();
+	    for (int p = 0; (p < m_populationSize) && !deadline.isExpired(); p++) {
+		for (int k = nbItems - 1; k > 0; k--) {
+		    int r = m_random.nextInt(k + 1);
+		    int j = permutation[k];
+		    permutation[k] = permutation[r];
+		    permutation[r] = j;
+		}
+		Solution sol = new Solution(m_solver.getInstance());
+		fill(sol, permutation);
+		m_population[p] = sol;
+		if ((m_best == null) || (sol.getObjective() > m_best.getObjective()))
+		    m_best = sol;
+	    }
+	    if (m_best == null)
+		return;
+	    incumbent.offer(m_best);
+
+	    long nbBatches = 0;
+	    while (!deadline.isExpired()) {
+		// Create and repair a batch of offspring
+		for (int b = 0; b < m_batchSize; b++) {
+		    Solution child = m_offspring[b];
+		    crossover(child, m_population[tournament()], m_population[tournament()]);
+		    child.applyFlip(m_random.nextInt(nbItems));
+		    child.applyFlip(m_random.nextInt(nbItems));
+		    repair(child);
+		}
+
+		// Insert the offspring: the solution replaced becomes an offspring buffer
+		int nbInserted = 0;
+		for (int b = 0; b < m_batchSize; b++) {
+		    Solution child = m_offspring[b];
+		    if (contains(child))
+			continue;
+		    int worst = worst();
+		    if (child.getObjective() <= m_population[worst].getObjective())
+			continue;
+		    m_offspring[b] = m_population[worst];
+		    m_population[worst] = child;
+		    nbInserted++;
+		    if (child.getObjective() > m_best.getObjective()) {
+			m_best = child;
+			incumbent.offer(child);
+		    }
+		}
+
+		metrics.add(SearchMetrics.EVALUATED, m_batchSize);
+		metrics.add(SearchMetrics.ACCEPTED, nbInserted);
+
+		// Migration of the best solutions between the islands
+		if ((nbIslands > 1) && (++nbBatches % m_migrationInterval == 0)) {
+		    m_mailbox.set((m_index + 1) % nbIslands, m_best.clone());
+		    Solution migrant = m_mailbox.getAndSet(m_index, null);
+		    if ((migrant != null) && !contains(migrant)) {
+			int worst = worst();
+			if (migrant.getObjective() > m_population[worst].getObjective())
+			    m_population[worst].copyFrom(migrant);
+			if (migrant.getObjective() > m_best.getObjective())
+			    m_best = m_population[worst];
+		    }
+		}
+	    }
+	}
+
+	/**
+	 * Uniform crossover: <code>child</code> is <code>first</code> in which each item on which the
+	 * parents differ is taken from <code>second</code> with probability 1/2.
+	 */
+	private void crossover(Solution child, Solution first, Solution second) {
+	    child.copyFrom(first);
+	    long[] a = first.getBits();
+	    long[] b = second.getBits();
+	    for (int w = 0; w < m_mask.length; w++) {
+		m_mask[w] = (a[w] ^ b[w]) & m_random.nextLong();
+	    }
+	    child.applyFlips(m_mask);
+	}
+
+	/**
+	 * DROP phase (least efficient items first) while the solution is unfeasible, then ADD phase.
+	 */
+	private void repair(Solution sol) {
+	    long[] bits = sol.getBits();
+	    for (int k = m_order.length - 1; (k >= 0) && !sol.isFeasible(); k--) {
+		int j = m_order[k];
+		if ((bits[j >>> 6] & (1L << j)) != 0)
+		    sol.applyFlip(j);
+	    }
+	    fill(sol, m_order);
+	}
+
+	/**
+	 * Add the items that fit, in the order given.
+	 */
+	private void fill(Solution sol, int[] order) {
+	    long[] bits = sol.getBits();
+	    for (int j : order) {
+		if (((bits[j >>> 6] & (1L << j)) == 0) && (sol.deltaFlip(j) != Solution.INFEASIBLE))
+		    sol.applyFlip(j);
+	    }
+	}
+
+	/**
+	 * @return The index of the best of two random solutions of the population.
+	 */
+	private int tournament() {
+	    int a = m_random.nextInt(m_populationSize);
+	    int b = m_random.nextInt(m_populationSize);
+	    return (m_population[a].getObjective() >= m_population[b].getObjective()) ? a : b;
+	}
+
+	/**
+	 * @return The index of the worst solution of the population.
+	 */
+	private int worst() {
+	    int worst = 0;
+	    for (int p = 1; p < m_populationSize; p++) {
+		if (m_population[p].getObjective() < m_population[worst].getObjective())
+		    worst = p;
+	    }
+	    return worst;
+	}
+
+	/**
+	 * @return <code>true</code> if the population contains a solution with the same items.
+	 */
+	private boolean contains(Solution sol) {
+	    for (Solution other : m_population) {
+		if ((other.getObjective() == sol.getObjective()) && Arrays.equals(other.getBits(), sol.getBits()))
+		    return true;
+	    }
+	    return false;
+	}
+    }
+
+}
@@ -0,0 +1,52 @@
+/*
+	mkp-framework
+	Copyright (C) 2013 Fabien Lehuede / Damien Prot / Axel Grimault
+
+	This program is free software; you can redistribute it and/or modify
+	it under the terms of the GNU General Public License as published by
+	the Free Software Foundation; either version 2 of the License, or
+	(at your option) any later version.
+
+	This program is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+	GNU General Public License for more details.
+
+	You should have received a copy of the GNU General Public License along
+	with this program; if not, write to the Free Software Foundation, Inc.,
+	51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package edu.emn.mkp;
+
+/**
+ * Baseline engine (<code>-solver greedy</code>): adds the items by natural order if possible.
+ * 
+ * @author Fabien Lehuede / Damien Prot / Axel Grimault 2016
+ * 
+ */
+public class GreedySolver implements SolverEngine {
+
+    @Override
+    public void solve(MKPSolver solver) throws Exception {
+	Instance instance = solver.getInstance();
+	Solution solution = solver.getSolution();
+
+	// Example of initial solution :
+	// add objects by natural order if possible
+	for (int j = 0; j < instance.getNbItems(); j++) {
+	    if (!solution.selected(j) && solution.fits(j)) {
+		solution.add(j);
+	    }
+	}
+
+	// Loop for improvements of the solution, until the deadline
+	// (offer each improvement to solver.getIncumbent())
+
+	//	Deadline deadline = solver.getDeadline();
+	//	while (!deadline.expired()) {
+	//	    // Your code here			
+	//	}
+    }
+
+}
@@ -0,0 +1,86 @@
+/*
+	mkp-framework
+	Copyright (C) 2013 Fabien Lehuede / Damien Prot / Axel Grimault
+
+	This program is free software; you can redistribute it and/or modify
+	it under the terms of the GNU General Public License as published by
+	the Free Software Foundation; either version 2 of the License, or
+	(at your option) any later version.
+
+	This program is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+	GNU General Public License for more details.
+
+	You should have received a copy of the GNU General Public License along
+	with this program; if not, write to the Free Software Foundation, Inc.,
+	51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package edu.emn.mkp;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * The best feasible solution found so far, shared by the engines that run in parallel.
+ * 
+ * The solution is replaced without lock (compare-and-set) and only by a solution
+ * with a strictly better objective value.
+ * 
+ * @author Fabien Lehuede / Damien Prot / Axel Grimault 2016
+ * 
+ */
+public class Incumbent {
+
+    /** Copy of the best solution, <code>null</code> if no solution has been offered */
+    private final AtomicReference<Solution> m_best = new AtomicReference<>();
+
+    /** Metrics recording the improvements */
+    private volatile SearchMetrics m_metrics = SearchMetrics.DISABLED;
+
+    /**
+     * @param metrics : metrics recording the improvements of the best solution
+     */
+    public void setMetrics(SearchMetrics metrics) {
+	m_metrics = metrics;
+    }
+
+    /**
+     * @return The best solution found so far, or <code>null</code>.
+     * @warning The solution is shared, clone it before modifying it.
+     */
+    public Solution get() {
+	return m_best.get();
+    }
+
+    /**
+     * @return The objective value of the best solution, or <code>Long.MIN_VALUE</code> if there is none.
+     */
+    public long getObjective() {
+	Solution best = m_best.get();
+	return (best == null) ? Long.MIN_VALUE : best.getObjective();
+    }
+
+    /**
+     * Replaces the best solution by a copy of <code>sol</code> if it is feasible and better.
+     * 
+     * @param sol : a solution (not modified)
+     * @return <code>true</code> if the best solution has been replaced.
+     */
+    public boolean offer(Solution sol) {
+	Solution best = m_best.get();
+	if (((best != null) && (sol.getObjective() <= best.getObjective())) || !sol.isFeasible())
+	    return false;
+	Solution copy = sol.clone();
+	while (!m_best.compareAndSet(best, copy)) {
+	    best = m_best.get();
+	    if ((best != null) && (copy.getObjective() <= best.getObjective()))
+		return false;
+	}
+	SearchMetrics metrics = m_metrics;
+	metrics.add(SearchMetrics.IMPROVEMENTS, 1);
+	metrics.event(SearchMetrics.IMPROVEMENT, copy.getObjective());
+	return true;
+    }
+
+}
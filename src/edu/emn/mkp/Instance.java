@@ -18,10 +18,19 @@
  */
 
 package edu.emn.mkp;
+import java.io.EOFException;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.PrintStream;
-import java.util.Scanner;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
 
 /**
  * The Instance class allows to create an object that contains the data stored
@@ -29,10 +38,17 @@ import java.util.Scanner;
  * 
  * <br>
  * The class is created through its constructor that takes the data file as
- * parameter. The data file is read and the data are stored in the Instance
- * object. The data can then be access calling the object methods.
+ * parameter (or from arrays, for a reduced problem). The data file is read and
+ * the data are stored in the Instance object. The data can then be access
+ * calling the object methods.
  * 
- * @warning Do not modify this class.
+ * <br>
+ * Two file formats are read: the text format of the OR-Library and a binary
+ * format written by {@link #writeBinary(String)}. The binary file is mapped in
+ * memory and the weights are read directly from the mapped file.
+ * 
+ * @warning The arrays returned by the getters are shared with the instance: the engines must not
+ * modify them. The instance itself is only changed through {@link OnlineSolver}.
  * @author Fabien Lehuede / Damien Prot / Axel Grimault 2016
  * 
  */
@@ -42,6 +58,15 @@ public class Instance {
     // --------------- ATTRIBUTES ------------------
     // ---------------------------------------------
 
+    /** First int of a binary instance file ("MKPB" in little-endian) */
+    public static final int BINARY_MAGIC = 0x42504B4D;
+
+    /** Version of the binary format written by {@link #writeBinary(String)} */
+    public static final int BINARY_VERSION = 1;
+
+    /** Size in bytes of the header of a binary file: magic, version, number of items and of constraints */
+    private static final int BINARY_HEADER_SIZE = 16;
+
     /** Number of items */
     private int m_nbItems;
 
@@ -49,17 +74,56 @@ public class Instance {
     private int m_nbConstraints;
 
     /** Profit of each item */
-    private Integer[] m_profit;
+    private int[] m_profit;
 
     /** Capacity of each constraint */
-    private Integer[] m_capacity;
+    private int[] m_capacity;
 
-    /** Matrix of weight of object j in constraint i */
+    /**
+     * Weights stored item by item in a single array:
+     * the weight of item j in constraint i is at index <code>j * m_nbConstraints + i</code>.
+     * For a binary file, this array is only built if {@link #getWeightsByItem()} is called.
+     * After items are added, the array (as {@link #m_profit}) has room for more items than {@link #m_nbItems}.
+     */
+    private int[] m_weightsByItem;
+
+    /**
+     * Weights stored constraint by constraint in a single array:
+     * the weight of item j in constraint i is at index <code>i * m_constraintStride + j</code>.
+     * For a binary file, this array is only built if {@link #getWeightsByConstraint()} is called.
+     */
+    private int[] m_weightsByConstraint;
+
+    /** Length of a constraint in {@link #m_weightsByConstraint}, at least the number of items */
+    private int m_constraintStride;
+
+    /** Weights stored item by item in the mapped binary file (<code>null</code> for a text file) */
+    private IntBuffer m_mappedWeights;
+
+    /** Matrix of weight of object j in constraint i, built on demand by {@link #getWeights()} */
     private Integer[][] m_weight_ji;
 
+    /** Constraints sorted from the tightest to the loosest, built on demand by {@link #getConstraintOrder()} */
+    private int[] m_constraintOrder;
+
+    /** Sum of the weights of all the items in each constraint, computed with the constraint order */
+    private long[] m_weightSums;
+
+    /** Linear relaxation, solved on demand by {@link #getRelaxation(Deadline)}, maybe not to optimality */
+    private volatile LPRelaxation m_relaxation;
+
+    /** Number of items of a block of {@link #getBlockFingerprints()} */
+    public static final int FINGERPRINT_BLOCK = 64;
+
+    /** Fingerprints of the blocks of items, computed on demand by {@link #getBlockFingerprints()} */
+    private long[] m_blockFingerprints;
+
     /** Name of the file corresponding to the instance */
     private String m_fileName;
 
+    /** Number of changes made to the instance since it was created (see {@link #getVersion()}) */
+    private long m_version = 0;
+
     // --------------------------------------------
     // ------------ GETTERS AND SETTERS -----------
     // --------------------------------------------
@@ -106,21 +170,272 @@ public class Instance {
      * @return The weight of object j in constraint i.
      * @throws Exception Throw an exception if indices i and j are not valid.
      **/
-    public Integer getWeight(int j, int i) throws Exception {
+    public int getWeight(int j, int i) throws Exception {
 	if ((j < 0) || (j >= m_nbItems))
 	    throw new Exception("Error: " + j + " n\'is not an index of item between 0 and " + (m_nbItems - 1));
 	if ((i < 0) || (i >= m_nbConstraints))
 	    throw new Exception("Error: " + i + " n\'is not an index of constraint between 0 and " + (m_nbConstraints - 1));
-	return m_weight_ji[j][i];
+	return weight(j, i);
+    }
+
+    /**
+     * Same as {@link #getProfit(int)} without the index check (only checked by an assertion).
+     * 
+     * @param j Index of the item.
+     * @return The profit of item j.
+     */
+    public int profit(int j) {
+	assert (j >= 0) && (j < m_nbItems) : j;
+	return m_profit[j];
+    }
+
+    /**
+     * Same as {@link #getCapacity(int)} without the index check (only checked by an assertion).
+     * 
+     * @param i Index of the constraint.
+     * @return The capacity of constraint i.
+     */
+    public int capacity(int i) {
+	assert (i >= 0) && (i < m_nbConstraints) : i;
+	return m_capacity[i];
+    }
+
+    /**
+     * Same as {@link #getWeight(int, int)} without the index check (only checked by an assertion).
+     * 
+     * @param j Index of the item.
+     * @param i Index of the constraint.
+     * @return The weight of object j in constraint i.
+     */
+    public int weight(int j, int i) {
+	assert (j >= 0) && (j < m_nbItems) && (i >= 0) && (i < m_nbConstraints) : j + ", " + i;
+	if (m_weightsByItem == null)
+	    return m_mappedWeights.get(j * m_nbConstraints + i);
+	return m_weightsByItem[j * m_nbConstraints + i];
+    }
+
+    /**
+     * @return The profits of the items.
+     * @warning The array is shared with the instance, do not modify it.
+     */
+    public int[] getProfits() {
+	return m_profit;
+    }
+
+    /**
+     * @return The capacities of the constraints.
+     * @warning The array is shared with the instance, do not modify it.
+     */
+    public int[] getCapacities() {
+	return m_capacity;
+    }
+
+    /**
+     * @return The weights stored item by item: the weight of item j in constraint i
+     *         is at index <code>j * getNbConstraints() + i</code>.
+     * @warning The array is shared with the instance, do not modify it.
+     * For a binary file, the first call copies the mapped weights in memory.
+     */
+    public int[] getWeightsByItem() {
+	if (m_weightsByItem == null) {
+	    int[] weights = new int[m_mappedWeights.capacity()];
+	    m_mappedWeights.duplicate().get(weights);
+	    m_weightsByItem = weights;
+	}
+	return m_weightsByItem;
+    }
+
+    /**
+     * @return The weights of a binary file stored item by item in the mapped file (same indices as
+     *         {@link #getWeightsByItem()}), or <code>null</code> if the weights are in memory.
+     * Reading the weights through this buffer avoids copying them in memory.
+     */
+    public IntBuffer getMappedWeights() {
+	return (m_weightsByItem == null) ? m_mappedWeights : null;
+    }
+
+    /**
+     * @return <code>true</code> if the weights have been copied in memory (always for a text file).
+     */
+    boolean hasHeapWeights() {
+	return (m_weightsByItem != null) || (m_weightsByConstraint != null);
+    }
+
+    /**
+     * @return The weights stored constraint by constraint: the weight of item j in constraint i
+     *         is at index <code>i * getConstraintStride() + j</code>.
+     * @warning The array is shared with the instance, do not modify it.
+     * For a binary file, the first call builds the array from the mapped weights.
+     */
+    public int[] getWeightsByConstraint() {
+	if (m_weightsByConstraint == null) {
+	    buildWeightsByConstraint(m_profit.length);
+	}
+	return m_weightsByConstraint;
     }
 
     /**
-     * @return The matrix of weights.
+     * @return The length of a constraint in {@link #getWeightsByConstraint()}: the number of items,
+     *         or more once items have been added (the weights beyond the number of items are not used).
+     */
+    public int getConstraintStride() {
+	getWeightsByConstraint();
+	return m_constraintStride;
+    }
+
+    /**
+     * Kept for compatibility: prefer {@link #getWeightsByItem()} or
+     * {@link #getWeightsByConstraint()}, which do not box the values.
+     * 
+     * @return The matrix of weights (element [j][i] is the weight of object j in constraint i).
      */
     public Integer[][] getWeights() {
+	if (m_weight_ji == null) {
+	    Integer[][] weights = new Integer[m_nbItems][m_nbConstraints];
+	    for (int j = 0; j < m_nbItems; j++) {
+		for (int i = 0; i < m_nbConstraints; i++) {
+		    weights[j][i] = weight(j, i);
+		}
+	    }
+	    m_weight_ji = weights;
+	}
 	return m_weight_ji;
     }
 
+    /**
+     * The tightness of a constraint is its capacity divided by the sum of the weights of
+     * all items in this constraint: the tightest constraints are the most likely to be violated.
+     * 
+     * @return The indices of the constraints sorted from the tightest to the loosest.
+     * @warning The array is shared with the instance, do not modify it.
+     */
+    public int[] getConstraintOrder() {
+	if (m_constraintOrder == null) {
+	    if (m_weightSums == null) {
+		long[] sums = new long[m_nbConstraints];
+		for (int j = 0; j < m_nbItems; j++) {
+		    for (int i = 0; i < m_nbConstraints; i++) {
+			sums[i] += weight(j, i);
+		    }
+		}
+		m_weightSums = sums;
+	    }
+	    final double[] tightness = new double[m_nbConstraints];
+	    Integer[] order = new Integer[m_nbConstraints];
+	    for (int i = 0; i < m_nbConstraints; i++) {
+		long sum = m_weightSums[i];
+		tightness[i] = (sum == 0) ? Double.POSITIVE_INFINITY : (double) m_capacity[i] / sum;
+		order[i] = i;
+	    }
+	    Arrays.sort(order, (a, b) -> Double.compare(tightness[a], tightness[b]));
+	    int[] result = new int[m_nbConstraints];
+	    for (int i = 0; i < m_nbConstraints; i++) {
+		result[i] = order[i];
+	    }
+	    m_constraintOrder = result;
+	}
+	return m_constraintOrder;
+    }
+
+    /**
+     * The relaxation is solved to optimality at the first call only.
+     * 
+     * @return The linear relaxation of the instance (upper bound, dual values, reduced costs).
+     * @warning The time needed grows as the square of the number of items
+     * (see {@link LPRelaxation#isCheap(Instance, long)}): prefer {@link #getRelaxation(Deadline)}.
+     */
+    public LPRelaxation getRelaxation() {
+	return getRelaxation(null);
+    }
+
+    /**
+     * The relaxation is solved until it is optimal or until the deadline. An optimal relaxation
+     * is solved once; otherwise the relaxation is solved again at the next call.
+     * 
+     * @param deadline : time limit of the resolution, <code>null</code> for none
+     * @return The linear relaxation of the instance, optimal or not (see {@link LPRelaxation#isOptimal()}):
+     * its bound and reduced costs are valid in both cases.
+     */
+    public synchronized LPRelaxation getRelaxation(Deadline deadline) {
+	if ((m_relaxation == null) || !m_relaxation.isOptimal())
+	    m_relaxation = new LPRelaxation(this, deadline);
+	return m_relaxation;
+    }
+
+    /**
+     * Does not wait for a resolution in progress.
+     * 
+     * @return The optimal linear relaxation if it is already solved, <code>null</code> otherwise.
+     */
+    public LPRelaxation getRelaxationIfSolved() {
+	LPRelaxation relaxation = m_relaxation;
+	return ((relaxation != null) && relaxation.isOptimal()) ? relaxation : null;
+    }
+
+    /**
+     * Fingerprint of the whole content of the instance (sizes, profits, weights and capacities):
+     * two instances with the same data have the same fingerprint, wherever they are read from.
+     * 
+     * @return A 64 bits hash of the instance.
+     */
+    public long getFingerprint() {
+	long h = getItemFingerprint();
+	for (int i = 0; i < m_nbConstraints; i++) {
+	    h = hash(h, m_capacity[i]);
+	}
+	return mix(h);
+    }
+
+    /**
+     * Fingerprint of the items only (profits and weights, not the capacities): two instances
+     * that only differ by their capacities have the same item fingerprint.
+     * 
+     * @return A 64 bits hash of the items.
+     */
+    public long getItemFingerprint() {
+	long h = hash(hash(0, m_nbItems), m_nbConstraints);
+	for (long block : getBlockFingerprints()) {
+	    h = hash(hash(h, (int) block), (int) (block >>> 32));
+	}
+	return mix(h);
+    }
+
+    /**
+     * Delta fingerprint: the items are cut into blocks of {@link #FINGERPRINT_BLOCK} items and each
+     * block has its own fingerprint (profits and weights of its items). The number of blocks whose
+     * fingerprints are equal measures how close two instances are.
+     * 
+     * @return The fingerprint of each block of items.
+     * @warning The array is shared with the instance, do not modify it. It is updated in place when
+     * the instance changes ({@link #setProfit(int, int)}, {@link #removeItem(int)}...): copy it to keep it.
+     */
+    public synchronized long[] getBlockFingerprints() {
+	if (m_blockFingerprints == null) {
+	    long[] blocks = new long[(m_nbItems + FINGERPRINT_BLOCK - 1) / FINGERPRINT_BLOCK];
+	    for (int b = 0; b < blocks.length; b++) {
+		blocks[b] = blockFingerprint(b);
+	    }
+	    m_blockFingerprints = blocks;
+	}
+	return m_blockFingerprints;
+    }
+
+    /**
+     * @param b : index of a block of items
+     * @return The fingerprint of the block (see {@link #getBlockFingerprints()}).
+     */
+    private long blockFingerprint(int b) {
+	long h = b;
+	int end = Math.min(m_nbItems, (b + 1) * FINGERPRINT_BLOCK);
+	for (int j = b * FINGERPRINT_BLOCK; j < end; j++) {
+	    h = hash(h, m_profit[j]);
+	    for (int i = 0; i < m_nbConstraints; i++) {
+		h = hash(h, weight(j, i));
+	    }
+	}
+	return mix(h);
+    }
+
     /**
      * @return The name of the file.
      */
@@ -128,6 +443,14 @@ public class Instance {
 	return m_fileName;
     }
 
+    /**
+     * @return Number of changes made to the instance since it was created: the data computed from
+     * the instance (solutions, bounds, fingerprints) must be updated when the version changes.
+     */
+    public synchronized long getVersion() {
+	return m_version;
+    }
+
     // -------------------------------------
     // ------------ CONSTRUCTOR ------------
     // -------------------------------------
@@ -146,10 +469,199 @@ public class Instance {
 	read();
     }
 
+    /**
+     * Constructor: reads an instance in the text format of the OR-Library from a stream,
+     * for example the content of a file received by the {@link Server}.
+     * 
+     * @param name : name of the instance (used as file name)
+     * @param in : content of the instance file, closed at the end of the reading
+     * @throws IOException Returns an error when a problem is met reading the data.
+     */
+    public Instance(String name, InputStream in) throws IOException {
+	m_fileName = name;
+	try (InstanceParser parser = new InstanceParser(name, Channels.newChannel(in))) {
+	    readText(parser);
+	}
+    }
+
+    /**
+     * Constructor: creates an instance from its data, for example a reduced problem
+     * built from another instance. The arrays are not copied.
+     * 
+     * @param name : name of the instance (used as file name)
+     * @param profit : profit of each item
+     * @param capacity : capacity of each constraint
+     * @param weightsByItem : weights stored item by item, the weight of item j in constraint i
+     *        is at index <code>j * capacity.length + i</code>
+     */
+    public Instance(String name, int[] profit, int[] capacity, int[] weightsByItem) {
+	if (weightsByItem.length != profit.length * capacity.length)
+	    throw new IllegalArgumentException("Error: " + weightsByItem.length + " weights given for "
+		    + profit.length + " items and " + capacity.length + " constraints.");
+	m_fileName = name;
+	m_nbItems = profit.length;
+	m_nbConstraints = capacity.length;
+	m_profit = profit;
+	m_capacity = capacity;
+	m_weightsByItem = weightsByItem;
+    }
+
     // -------------------------------------
     // -------------- METHODS --------------
     // -------------------------------------
 
+    // The changes below update the instance in place: the arrays returned by the getters are
+    // modified, or replaced when they must grow (get them again after a change). The data built
+    // on demand from the instance (weights by constraint, constraint order, fingerprints) is
+    // updated for the items changed only; the relaxation is forgotten. The changes must not be made
+    // while a search runs on the instance: see OnlineSolver, that also updates the solution.
+
+    /**
+     * Add an item at the end of the instance. The arrays grow by half of their size when they are
+     * full, so that adding n items costs O(n * getNbConstraints()).
+     * 
+     * @param profit : profit of the item
+     * @param weights : weight of the item in each constraint
+     * @return The index of the new item.
+     */
+    public synchronized int addItem(int profit, int[] weights) {
+	if (weights.length != m_nbConstraints)
+	    throw new IllegalArgumentException("Error: " + weights.length + " weights given for "
+		    + m_nbConstraints + " constraints.");
+	int j = m_nbItems;
+	getWeightsByItem();
+	m_mappedWeights = null;
+	if (j == m_profit.length) {
+	    int size = Math.max(16, j + (j >> 1));
+	    m_profit = Arrays.copyOf(m_profit, size);
+	    m_weightsByItem = Arrays.copyOf(m_weightsByItem, size * m_nbConstraints);
+	}
+	m_profit[j] = profit;
+	System.arraycopy(weights, 0, m_weightsByItem, j * m_nbConstraints, m_nbConstraints);
+	m_nbItems = j + 1;
+
+	if ((m_weightsByConstraint != null) && (j == m_constraintStride)) {
+	    // Built again with the same room as the other arrays
+	    buildWeightsByConstraint(m_profit.length);
+	} else if (m_weightsByConstraint != null) {
+	    for (int i = 0; i < m_nbConstraints; i++) {
+		m_weightsByConstraint[i * m_constraintStride + j] = weights[i];
+	    }
+	}
+	if (m_weightSums != null) {
+	    for (int i = 0; i < m_nbConstraints; i++) {
+		m_weightSums[i] += weights[i];
+	    }
+	}
+	if (m_blockFingerprints != null) {
+	    int b = j / FINGERPRINT_BLOCK;
+	    if (b == m_blockFingerprints.length)
+		m_blockFingerprints = Arrays.copyOf(m_blockFingerprints, b + 1);
+	    m_blockFingerprints[b] = blockFingerprint(b);
+	}
+	changed();
+	return j;
+    }
+
+    /**
+     * Remove an item: the last item of the instance takes its index (its data is copied, the
+     * other items are not moved).
+     * 
+     * @param j : index of the item removed
+     * @return The former index of the item now at index j (j itself if the last item was removed).
+     */
+    public synchronized int removeItem(int j) {
+	if ((j < 0) || (j >= m_nbItems))
+	    throw new IndexOutOfBoundsException("Error: " + j + " is not a valid item index.");
+	int last = m_nbItems - 1;
+	getWeightsByItem();
+	m_mappedWeights = null;
+	if (m_weightSums != null) {
+	    for (int i = 0; i < m_nbConstraints; i++) {
+		m_weightSums[i] -= m_weightsByItem[j * m_nbConstraints + i];
+	    }
+	}
+	if (j < last) {
+	    m_profit[j] = m_profit[last];
+	    System.arraycopy(m_weightsByItem, last * m_nbConstraints, m_weightsByItem, j * m_nbConstraints, m_nbConstraints);
+	    if (m_weightsByConstraint != null) {
+		for (int i = 0; i < m_nbConstraints; i++) {
+		    int row = i * m_constraintStride;
+		    m_weightsByConstraint[row + j] = m_weightsByConstraint[row + last];
+		}
+	    }
+	}
+	m_nbItems = last;
+
+	if (m_blockFingerprints != null) {
+	    int b = last / FINGERPRINT_BLOCK;
+	    if (last % FINGERPRINT_BLOCK == 0) {
+		// The block of the last item is now empty
+		m_blockFingerprints = Arrays.copyOf(m_blockFingerprints, b);
+	    } else {
+		m_blockFingerprints[b] = blockFingerprint(b);
+	    }
+	    if ((j < last) && (j / FINGERPRINT_BLOCK != b))
+		m_blockFingerprints[j / FINGERPRINT_BLOCK] = blockFingerprint(j / FINGERPRINT_BLOCK);
+	}
+	changed();
+	return last;
+    }
+
+    /**
+     * @param j : index of the item
+     * @param profit : new profit of the item
+     */
+    public synchronized void setProfit(int j, int profit) {
+	if ((j < 0) || (j >= m_nbItems))
+	    throw new IndexOutOfBoundsException("Error: " + j + " is not a valid item index.");
+	m_profit[j] = profit;
+	if (m_blockFingerprints != null)
+	    m_blockFingerprints[j / FINGERPRINT_BLOCK] = blockFingerprint(j / FINGERPRINT_BLOCK);
+	m_relaxation = null;
+	m_version++;
+    }
+
+    /**
+     * @param i : index of the constraint
+     * @param capacity : new capacity of the constraint
+     */
+    public synchronized void setCapacity(int i, int capacity) {
+	if ((i < 0) || (i >= m_nbConstraints))
+	    throw new IndexOutOfBoundsException("Error: " + i + " is not a valid constraint index.");
+	m_capacity[i] = capacity;
+	// Sorted again from the sums of the weights, which do not change
+	m_constraintOrder = null;
+	m_relaxation = null;
+	m_version++;
+    }
+
+    /**
+     * Forget the data that is not updated after a change of the items, and increment the version.
+     */
+    private void changed() {
+	m_weight_ji = null;
+	m_constraintOrder = null;
+	m_relaxation = null;
+	m_version++;
+    }
+
+    /**
+     * Build the weights stored constraint by constraint.
+     * 
+     * @param stride : length of a constraint in the array, at least the number of items
+     */
+    private void buildWeightsByConstraint(int stride) {
+	int[] weights = new int[stride * m_nbConstraints];
+	for (int j = 0; j < m_nbItems; j++) {
+	    for (int i = 0; i < m_nbConstraints; i++) {
+		weights[i * stride + j] = weight(j, i);
+	    }
+	}
+	m_weightsByConstraint = weights;
+	m_constraintStride = stride;
+    }
+
     /** 
      * Read the instance file
      */
@@ -159,53 +671,204 @@ public class Instance {
 	if (!mfile.exists()) {
 	    throw new IOException("The instance file : " + m_fileName + " does not exist.");
 	}
-	Scanner sc = new Scanner(mfile);
+	if (isBinary(mfile)) {
+	    readBinary();
+	} else {
+	    readText();
+	}
+    }
 
-	String line = sc.nextLine();
-	Scanner lineSc = new Scanner(line);
-	m_nbItems = lineSc.nextInt();
-	m_nbConstraints = lineSc.nextInt();
+    /**
+     * @return <code>true</code> if the file starts with {@link #BINARY_MAGIC}.
+     */
+    private static boolean isBinary(File mfile) throws IOException {
+	try (RandomAccessFile file = new RandomAccessFile(mfile, "r")) {
+	    if (file.length() < 4)
+		return false;
+	    return Integer.reverseBytes(file.readInt()) == BINARY_MAGIC;
+	}
+    }
 
-	lineSc.close();
+    /** 
+     * Read the instance file in the text format of the OR-Library
+     */
+    private void readText() throws IOException {
+
+	try (InstanceParser parser = new InstanceParser(m_fileName)) {
+	    readText(parser);
+	}
+    }
 
-	line = sc.nextLine();
-	lineSc = new Scanner(line);
+    /** 
+     * Read the instance in the text format of the OR-Library
+     */
+    private void readText(InstanceParser parser) throws IOException {
+	m_nbItems = parser.nextInt();
+	m_nbConstraints = parser.nextInt();
+	if ((m_nbItems < 0) || (m_nbConstraints < 0)) {
+	    throw new IOException("The instance file : " + m_fileName + " is not valid: "
+		    + m_nbItems + " items and " + m_nbConstraints + " constraints.");
+	}
+	// The end of the first line (optimal value in OR-Library files) is not used
+	parser.skipLine();
 
 	// Create profit for each object
-	m_profit = new Integer[m_nbItems];
-	for (int j = 0; j < m_nbItems; j++) {
-	    if (!lineSc.hasNextInt()) {
-		line = sc.nextLine();
-		lineSc = new Scanner(line);
+	m_profit = new int[m_nbItems];
+	parser.nextInts(m_profit, "profits");
+
+	// Create weights matrix (the file lists the weights constraint by constraint)
+	m_weightsByConstraint = new int[m_nbConstraints * m_nbItems];
+	m_constraintStride = m_nbItems;
+	parser.nextInts(m_weightsByConstraint, "weights");
+	m_weightsByItem = transpose(m_weightsByConstraint, m_nbConstraints, m_nbItems);
+
+	// Create capacity for constraints
+	m_capacity = new int[m_nbConstraints];
+	parser.nextInts(m_capacity, "capacities");
+    }
+
+    /**
+     * Read the instance file in the binary format: the file is mapped in memory,
+     * profits and capacities are copied and the weights are kept in the mapped file.
+     */
+    private void readBinary() throws IOException {
+
+	try (FileChannel channel = new RandomAccessFile(m_fileName, "r").getChannel()) {
+	    long size = channel.size();
+	    if (size < BINARY_HEADER_SIZE) {
+		throw new EOFException("The instance file : " + m_fileName + " is truncated: the header is incomplete.");
 	    }
-	    m_profit[j] = lineSc.nextInt();
+	    if (size > Integer.MAX_VALUE) {
+		throw new IOException("The instance file : " + m_fileName + " is too large to be mapped.");
+	    }
+	    MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+	    buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+	    buffer.getInt(); // magic
+	    int version = buffer.getInt();
+	    if (version != BINARY_VERSION) {
+		throw new IOException("The instance file : " + m_fileName + " has version " + version
+			+ ", only version " + BINARY_VERSION + " is supported.");
+	    }
+	    m_nbItems = buffer.getInt();
+	    m_nbConstraints = buffer.getInt();
+	    if ((m_nbItems < 0) || (m_nbConstraints < 0)) {
+		throw new IOException("The instance file : " + m_fileName + " is not valid: "
+			+ m_nbItems + " items and " + m_nbConstraints + " constraints.");
+	    }
+	    long expected = BINARY_HEADER_SIZE + 4L * ((long) m_nbItems + (long) m_nbItems * m_nbConstraints + m_nbConstraints);
+	    if (size < expected) {
+		throw new EOFException("The instance file : " + m_fileName + " is truncated: "
+			+ expected + " bytes expected, only " + size + " found.");
+	    }
+
+	    IntBuffer ints = buffer.asIntBuffer();
+	    m_profit = new int[m_nbItems];
+	    ints.get(m_profit);
+	    int nbWeights = m_nbItems * m_nbConstraints;
+	    IntBuffer weights = ints.slice();
+	    weights.limit(nbWeights);
+	    m_mappedWeights = weights.slice();
+	    ints.position(ints.position() + nbWeights);
+	    m_capacity = new int[m_nbConstraints];
+	    ints.get(m_capacity);
 	}
+    }
 
-	// Create weights matrix
-	m_weight_ji= new Integer[m_nbItems][m_nbConstraints];
-	// Read the matrix
-	for (int i = 0; i < m_nbConstraints; i++) {
+    /**
+     * Write the instance in the binary format read by the constructor.
+     * The file contains a header (magic number {@link #BINARY_MAGIC}, version {@link #BINARY_VERSION},
+     * number of items, number of constraints) followed by the profits, the weights stored item
+     * by item and the capacities. All values are little-endian ints.
+     * 
+     * @param fileName : the file to write
+     * @throws IOException Returns an error when a problem is met writing the file.
+     */
+    public void writeBinary(String fileName) throws IOException {
+	try (FileChannel channel = new RandomAccessFile(fileName, "rw").getChannel()) {
+	    channel.truncate(0);
+	    ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+	    buffer.putInt(BINARY_MAGIC);
+	    buffer.putInt(BINARY_VERSION);
+	    buffer.putInt(m_nbItems);
+	    buffer.putInt(m_nbConstraints);
+	    for (int j = 0; j < m_nbItems; j++) {
+		buffer = putInt(channel, buffer, m_profit[j]);
+	    }
 	    for (int j = 0; j < m_nbItems; j++) {
-		if (!lineSc.hasNextInt()) {
-		    line = sc.nextLine();
-		    lineSc = new Scanner(line);
+		for (int i = 0; i < m_nbConstraints; i++) {
+		    buffer = putInt(channel, buffer, weight(j, i));
 		}
-		m_weight_ji[j][i] = lineSc.nextInt();
+	    }
+	    for (int i = 0; i < m_nbConstraints; i++) {
+		buffer = putInt(channel, buffer, m_capacity[i]);
+	    }
+	    buffer.flip();
+	    while (buffer.hasRemaining()) {
+		channel.write(buffer);
 	    }
 	}
+    }
 
-	// Create capacity for constraints
-	m_capacity = new Integer[m_nbConstraints];
+    /**
+     * Write the instance in the text format of the OR-Library.
+     * 
+     * @param out : output stream
+     */
+    public void writeText(PrintStream out) {
+	out.println(" " + m_nbItems + " " + m_nbConstraints + " 0");
+	for (int j = 0; j < m_nbItems; j++) {
+	    out.print(" " + m_profit[j]);
+	    if ((j % 10 == 9) || (j == m_nbItems - 1))
+		out.println();
+	}
+	for (int i = 0; i < m_nbConstraints; i++) {
+	    for (int j = 0; j < m_nbItems; j++) {
+		out.print(" " + weight(j, i));
+		if ((j % 10 == 9) || (j == m_nbItems - 1))
+		    out.println();
+	    }
+	}
 	for (int i = 0; i < m_nbConstraints; i++) {
-	    if (!lineSc.hasNextInt()) {
-		line = sc.nextLine();
-		lineSc = new Scanner(line);
+	    out.print(" " + m_capacity[i]);
+	}
+	out.println();
+    }
+
+    /**
+     * Append an int to the buffer, writing the buffer to the channel when it is full.
+     * 
+     * @return The buffer.
+     */
+    private static ByteBuffer putInt(FileChannel channel, ByteBuffer buffer, int value) throws IOException {
+	if (buffer.remaining() < 4) {
+	    buffer.flip();
+	    while (buffer.hasRemaining()) {
+		channel.write(buffer);
 	    }
-	    m_capacity[i] = lineSc.nextInt();
+	    buffer.clear();
 	}
-	sc.close();
-	lineSc.close();
+	buffer.putInt(value);
+	return buffer;
+    }
 
+    /**
+     * Transpose a matrix stored row by row in a single array.
+     * 
+     * @param matrix : the matrix, element (r, c) is at index <code>r * nbColumns + c</code>
+     * @param nbRows : number of rows of the matrix
+     * @param nbColumns : number of columns of the matrix
+     * @return The transposed matrix, element (c, r) is at index <code>c * nbRows + r</code>
+     */
+    static int[] transpose(int[] matrix, int nbRows, int nbColumns) {
+	int[] result = new int[matrix.length];
+	for (int r = 0; r < nbRows; r++) {
+	    int row = r * nbColumns;
+	    for (int c = 0; c < nbColumns; c++) {
+		result[c * nbRows + r] = matrix[row + c];
+	    }
+	}
+	return result;
     }
 
     /**
@@ -218,11 +881,33 @@ public class Instance {
 	out.println("Weights matrix :");
 	for (int i = 0; i < m_nbConstraints; i++) {
 	    for (int j = 0; j < m_nbItems; j++) {
-		out.print(m_weight_ji[j][i] + ";");
+		out.print(weight(j, i) + ";");
 	    }
 	    out.println();
 	}
 	out.println();
     }
 
+    /**
+     * One step of the FNV-1a hash, on the 4 bytes of a value.
+     */
+    private static long hash(long h, int value) {
+	for (int k = 0; k < 4; k++) {
+	    h = (h ^ ((value >>> (8 * k)) & 0xFF)) * 0x100000001B3L;
+	}
+	return h;
+    }
+
+    /**
+     * Final mixing of a hash (MurmurHash3), so that close contents give unrelated fingerprints.
+     */
+    private static long mix(long h) {
+	h ^= h >>> 33;
+	h *= 0xFF51AFD7ED558CCDL;
+	h ^= h >>> 33;
+	h *= 0xC4CEB9FE1A85EC53L;
+	h ^= h >>> 33;
+	return h;
+    }
+
 }
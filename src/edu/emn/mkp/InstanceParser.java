@@ -0,0 +1,231 @@
+/*
+	mkp-framework
+	Copyright (C) 2013 Fabien Lehuede / Damien Prot / Axel Grimault
+
+	This program is free software; you can redistribute it and/or modify
+	it under the terms of the GNU General Public License as published by
+	the Free Software Foundation; either version 2 of the License, or
+	(at your option) any later version.
+
+	This program is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+	GNU General Public License for more details.
+
+	You should have received a copy of the GNU General Public License along
+	with this program; if not, write to the Free Software Foundation, Inc.,
+	51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package edu.emn.mkp;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * Reads the integers of a mkp file (OR-Library <code>.dat</code> format). <br>
+ *
+ * <br>
+ * The file is read by blocks through a {@link FileChannel} (or any channel, for example on
+ * the bytes received by the {@link Server}) and the integers are
+ * decoded directly from the bytes: no line, no String and no regular expression is
+ * created. Values are separated by any white space (blank, tabulation, end of line).
+ *
+ * @author Fabien Lehuede / Damien Prot / Axel Grimault 2016
+ *
+ */
+public class InstanceParser implements AutoCloseable {
+
+    // ---------------------------------------------
+    // --------------- ATTRIBUTES ------------------
+    // ---------------------------------------------
+
+    /** Size of the block read from the file */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /** Name of the file read */
+    private final String m_fileName;
+
+    /** Channel on the file */
+    private final ReadableByteChannel m_channel;
+
+    /** Block of bytes currently decoded */
+    private final ByteBuffer m_buffer;
+
+    /** Number of integers read so far */
+    private long m_nbValuesRead = 0;
+
+    /** Last byte consumed (the white space that ends the last integer read) */
+    private int m_lastByte = 0;
+
+    // -------------------------------------
+    // ------------ CONSTRUCTOR ------------
+    // -------------------------------------
+
+    /**
+     * Opens the file given as parameter.
+     *
+     * @param fileName : the file to read
+     * @throws IOException Returns an error if the file does not exist or cannot be opened.
+     */
+    public InstanceParser(String fileName) throws IOException {
+	File mfile = new File(fileName);
+	if (!mfile.exists()) {
+	    throw new IOException("The instance file : " + fileName + " does not exist.");
+	}
+	m_fileName = fileName;
+	m_channel = new FileInputStream(mfile).getChannel();
+	m_buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+	m_buffer.flip();
+    }
+
+    /**
+     * Reads the content of an instance file from a channel.
+     *
+     * @param fileName : name of the instance, used in the error messages
+     * @param channel : channel on the content of the file, closed by {@link #close()}
+     */
+    public InstanceParser(String fileName, ReadableByteChannel channel) {
+	m_fileName = fileName;
+	m_channel = channel;
+	m_buffer = ByteBuffer.allocate(BUFFER_SIZE);
+	m_buffer.flip();
+    }
+
+    // -------------------------------------
+    // -------------- METHODS --------------
+    // -------------------------------------
+
+    /**
+     * @return Number of integers read so far.
+     */
+    public long getNbValuesRead() {
+	return m_nbValuesRead;
+    }
+
+    /**
+     * Reads the next integer of the file.
+     *
+     * @return The integer read.
+     * @throws EOFException Returns an error if the end of the file is reached before the integer.
+     * @throws IOException Returns an error if the next token is not an integer.
+     */
+    public int nextInt() throws IOException {
+	int c = skipBlanks();
+	if (c < 0) {
+	    throw new EOFException("The instance file : " + m_fileName + " is truncated: value "
+		    + (m_nbValuesRead + 1) + " is missing.");
+	}
+
+	boolean negative = false;
+	if (c == '-') {
+	    negative = true;
+	    c = read();
+	}
+	if ((c < '0') || (c > '9')) {
+	    throw new IOException("The instance file : " + m_fileName + " is not valid: value "
+		    + (m_nbValuesRead + 1) + " is not an integer.");
+	}
+
+	// The value is accumulated as a negative number to accept Integer.MIN_VALUE
+	int value = 0;
+	do {
+	    int digit = c - '0';
+	    if (value < (Integer.MIN_VALUE + digit) / 10) {
+		throw new IOException("The instance file : " + m_fileName + " is not valid: value "
+			+ (m_nbValuesRead + 1) + " is too large.");
+	    }
+	    value = value * 10 - digit;
+	    c = read();
+	} while ((c >= '0') && (c <= '9'));
+
+	if (c > ' ') {
+	    throw new IOException("The instance file : " + m_fileName + " is not valid: value "
+		    + (m_nbValuesRead + 1) + " is not an integer.");
+	}
+	if (!negative) {
+	    if (value == Integer.MIN_VALUE) {
+		throw new IOException("The instance file : " + m_fileName + " is not valid: value "
+			+ (m_nbValuesRead + 1) + " is too large.");
+	    }
+	    value = -value;
+	}
+	m_nbValuesRead++;
+	m_lastByte = c;
+	return value;
+    }
+
+    /**
+     * Reads the next <code>values.length</code> integers of the file.
+     *
+     * @param values : array filled with the integers read
+     * @param what : description of the values, used in the error message if the file is truncated
+     * @throws IOException Returns an error if the file is truncated or not valid.
+     */
+    public void nextInts(int[] values, String what) throws IOException {
+	for (int k = 0; k < values.length; k++) {
+	    try {
+		values[k] = nextInt();
+	    } catch (EOFException e) {
+		throw new EOFException("The instance file : " + m_fileName + " is truncated: "
+			+ values.length + " " + what + " expected, only " + k + " found.");
+	    }
+	}
+    }
+
+    /**
+     * Skips the end of the current line.
+     *
+     * @throws IOException Returns an error if the file cannot be read.
+     */
+    public void skipLine() throws IOException {
+	int c = m_lastByte;
+	while ((c >= 0) && (c != '\n')) {
+	    c = read();
+	}
+	m_lastByte = c;
+    }
+
+    /**
+     * Closes the file.
+     */
+    @Override
+    public void close() throws IOException {
+	m_channel.close();
+    }
+
+    /**
+     * @return The first byte that is not a white space, or -1 at the end of the file.
+     */
+    private int skipBlanks() throws IOException {
+	int c = read();
+	while ((c >= 0) && (c <= ' ')) {
+	    c = read();
+	}
+	return c;
+    }
+
+    /**
+     * @return The next byte of the file, or -1 at the end of the file.
+     */
+    private int read() throws IOException {
+	if (!m_buffer.hasRemaining()) {
+	    m_buffer.clear();
+	    int n = m_channel.read(m_buffer);
+	    while (n == 0) {
+		n = m_channel.read(m_buffer);
+	    }
+	    m_buffer.flip();
+	    if (n < 0) {
+		return -1;
+	    }
+	}
+	return m_buffer.get() & 0xFF;
+    }
+
+}
@@ -0,0 +1,424 @@
+/*
+	mkp-framework
+	Copyright (C) 2013 Fabien Lehuede / Damien Prot / Axel Grimault
+
+	This program is free software; you can redistribute it and/or modify
+	it under the terms of the GNU General Public License as published by
+	the Free Software Foundation; either version 2 of the License, or
+	(at your option) any later version.
+
+	This program is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+	GNU General Public License for more details.
+
+	You should have received a copy of the GNU General Public License along
+	with this program; if not, write to the Free Software Foundation, Inc.,
+	51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package edu.emn.mkp;
+
+/**
+ * Linear relaxation of the MKP: max sum_j p_j x_j s.t. sum_j w_ji x_j <= c_i, 0 <= x_j <= 1.
+ * Its optimal value is an upper bound of the MKP.
+ * 
+ * The relaxation is solved by a bounded dual simplex working on the flat weight matrix.
+ * With slack variables s_i, the initial basis is made of the slacks and every item is at its
+ * upper bound 1: this basis is dual feasible since the profits are non-negative. Each iteration
+ * removes from the basis a variable out of its bounds (a negative slack, or an item above 1)
+ * and keeps the dual feasibility. The inverse of the basis is stored as a dense m x m matrix.
+ * 
+ * The results are the fractional optimum x, the dual values u of the constraints and the
+ * reduced costs d_j = p_j - sum_i u_i w_ji of the items.
+ * 
+ * About n/2 iterations of O(n m) operations are needed from this basis, so the time grows as
+ * the square of the number of items ({@link #isCheap(Instance, long)}). The resolution may be
+ * stopped by a deadline: the dual values of the last basis (set to 0 if negative) still give a
+ * valid bound <code>sum_i u_i c_i + sum_j max(0, d_j)</code> and valid reduced costs, but
+ * the relaxation is not optimal ({@link #isOptimal()}) and x is not a feasible point.
+ * 
+ * @author Fabien Lehuede / Damien Prot / Axel Grimault 2016
+ * 
+ */
+public class LPRelaxation {
+
+    // ---------------------------------------------
+    // --------------- ATTRIBUTES ------------------
+    // ---------------------------------------------
+
+    /** Tolerance of the primal and dual feasibility */
+    private static final double EPSILON = 1e-9;
+
+    /** Tolerance of the pivot elements */
+    private static final double PIVOT_EPSILON = 1e-11;
+
+    /** Tolerance of the bounds rounded to integers (rounding errors of the dual values) */
+    private static final double INTEGER_EPSILON = 1e-6;
+
+    /** Operations of the dual simplex per millisecond, a low estimate used by {@link #isCheap(Instance, long)} */
+    private static final long OPERATIONS_PER_MS = 100000;
+
+    /** Time below which the relaxation is solved without a deadline by {@link #isCheap(Instance)} (in ms) */
+    public static final long CHEAP_TIME = 100;
+
+    /** Data of the problem */
+    private final Instance m_instance;
+
+    /** Number of items */
+    private final int m_nbItems;
+
+    /** Number of constraints */
+    private final int m_nbConstraints;
+
+    /** Fractional optimum (one value per item) */
+    private double[] m_x;
+
+    /** Dual values of the constraints */
+    private double[] m_duals;
+
+    /** Reduced costs of the items */
+    private double[] m_reducedCosts;
+
+    /** Optimal value of the relaxation */
+    private double m_bound;
+
+    /** Number of iterations of the dual simplex */
+    private int m_nbIterations;
+
+    /** <code>true</code> if the dual simplex reached the optimum before the deadline */
+    private boolean m_optimal;
+
+    // -------------------------------------
+    // ------------ CONSTRUCTOR ------------
+    // -------------------------------------
+
+    /**
+     * Solves the linear relaxation of the instance.
+     * 
+     * @param inst : the problem data
+     */
+    public LPRelaxation(Instance inst) {
+	this(inst, null);
+    }
+
+    /**
+     * Solves the linear relaxation of the instance until the optimum or until the deadline.
+     * 
+     * @param inst : the problem data
+     * @param deadline : time limit of the resolution, checked at each iteration (<code>null</code> for none)
+     */
+    public LPRelaxation(Instance inst, Deadline deadline) {
+	m_instance = inst;
+	m_nbItems = inst.getNbItems();
+	m_nbConstraints = inst.getNbConstraints();
+	solve(deadline);
+    }
+
+    // --------------------------------------------
+    // ------------ GETTERS AND SETTERS -----------
+    // --------------------------------------------
+
+    /**
+     * @return The optimal value of the relaxation, an upper bound of the MKP.
+     */
+    public double getBound() {
+	return m_bound;
+    }
+
+    /**
+     * @return The optimal value of the relaxation rounded down: since the profits are integers,
+     * no solution of the MKP has a greater value.
+     */
+    public long getIntegerBound() {
+	return (long) Math.floor(m_bound + INTEGER_EPSILON);
+    }
+
+    /**
+     * @return The fractional optimum: x[j] is the fraction of item j in the knapsack.
+     */
+    public double[] getX() {
+	return m_x;
+    }
+
+    /**
+     * @return The dual values of the constraints (non-negative).
+     */
+    public double[] getDuals() {
+	return m_duals;
+    }
+
+    /**
+     * @return The reduced costs of the items: <code>d_j = p_j - sum_i u_i w_ji</code>.
+     * At the optimum, d_j >= 0 if x_j = 1 and d_j <= 0 if x_j = 0.
+     */
+    public double[] getReducedCosts() {
+	return m_reducedCosts;
+    }
+
+    /**
+     * @return Number of iterations of the dual simplex.
+     */
+    public int getNbIterations() {
+	return m_nbIterations;
+    }
+
+    /**
+     * @return <code>true</code> if the relaxation is solved to optimality, <code>false</code> if the
+     * resolution was stopped by the deadline or by the limit of iterations.
+     */
+    public boolean isOptimal() {
+	return m_optimal;
+    }
+
+    /**
+     * @param inst : the problem data
+     * @return A high estimate of the number of operations of the dual simplex on the instance.
+     */
+    public static long estimatedOperations(Instance inst) {
+	long n = inst.getNbItems();
+	long m = inst.getNbConstraints();
+	return (n / 2 + m + 1) * (n + m) * m;
+    }
+
+    /**
+     * @param inst : the problem data
+     * @param timeLimit : time available (in ms)
+     * @return <code>true</code> if the relaxation is expected to be solved within the time given.
+     */
+    public static boolean isCheap(Instance inst, long timeLimit) {
+	return estimatedOperations(inst) <= timeLimit * OPERATIONS_PER_MS;
+    }
+
+    /**
+     * @param inst : the problem data
+     * @return <code>true</code> if the relaxation is expected to be solved within {@link #CHEAP_TIME} ms.
+     */
+    public static boolean isCheap(Instance inst) {
+	return isCheap(inst, CHEAP_TIME);
+    }
+
+    // -------------------------------------
+    // -------------- METHODS --------------
+    // -------------------------------------
+
+    /**
+     * Reduced cost fixing: given the value of a feasible solution, the items whose value in the
+     * fractional optimum cannot change without making the bound lower than or equal to this value are fixed.
+     * 
+     * Changing the value of item j lowers the bound by |d_j|. As the profits are integers, a better
+     * solution has a value of at least <code>lowerBound + 1</code>: the item is fixed if
+     * <code>bound - |d_j| < lowerBound + 1</code>, with a tolerance of {@link #INTEGER_EPSILON}
+     * against the rounding errors (an item is not fixed when the difference is within the tolerance).
+     * 
+     * @param lowerBound : objective value of a feasible solution
+     * @return For each item: 1 if the item is in every solution better than <code>lowerBound</code>,
+     * 0 if it is in none of them, -1 if it is not fixed.
+     */
+    public byte[] reducedCostFixing(long lowerBound) {
+	byte[] fixed = new byte[m_nbItems];
+	double threshold = lowerBound + 1 - INTEGER_EPSILON;
+	for (int j = 0; j < m_nbItems; j++) {
+	    double d = m_reducedCosts[j];
+	    if ((d < 0) && (m_bound + d < threshold))
+		fixed[j] = 0;
+	    else if ((d > 0) && (m_bound - d < threshold))
+		fixed[j] = 1;
+	    else
+		fixed[j] = -1;
+	}
+	return fixed;
+    }
+
+    /**
+     * Solve the relaxation by the bounded dual simplex.
+     * Variables 0..n-1 are the items (bounds 0 and 1), variables n..n+m-1 are the slacks
+     * (bounds 0 and infinity). The problem is handled as the minimization of -p x.
+     * 
+     * @param deadline : time limit, <code>null</code> for none
+     */
+    private void solve(Deadline deadline) {
+	int n = m_nbItems;
+	int m = m_nbConstraints;
+	int[] weights = m_instance.getWeightsByItem();
+
+	// Basis: basic[r] is the variable of row r, row[v] is the row of variable v or -1
+	int[] basic = new int[m];
+	int[] row = new int[n + m];
+	double[][] inverse = new double[m][m];
+	// Value of each variable, reduced cost (minimization) of each non basic variable
+	double[] value = new double[n + m];
+	double[] cost = new double[n + m];
+
+	for (int j = 0; j < n; j++) {
+	    row[j] = -1;
+	    value[j] = 1;
+	    cost[j] = -m_instance.profit(j);
+	}
+	for (int i = 0; i < m; i++) {
+	    basic[i] = n + i;
+	    row[n + i] = i;
+	    inverse[i][i] = 1;
+	    long slack = m_instance.capacity(i);
+	    for (int j = 0; j < n; j++) {
+		slack -= weights[j * m + i];
+	    }
+	    value[n + i] = slack;
+	}
+
+	double[] alphaRow = new double[n + m];
+	double[] alphaColumn = new double[m];
+	int maxIterations = 50 * (n + m) + 100;
+	m_nbIterations = 0;
+	m_optimal = false;
+	while ((m_nbIterations < maxIterations) && ((deadline == null) || !deadline.isExpired())) {
+	    // Pricing: the basic variable with the largest infeasibility leaves the basis
+	    int r = -1;
+	    double delta = 0;
+	    for (int k = 0; k < m; k++) {
+		int v = basic[k];
+		double infeasibility = 0;
+		if (value[v] < -EPSILON)
+		    infeasibility = value[v];
+		else if ((v < n) && (value[v] > 1 + EPSILON))
+		    infeasibility = value[v] - 1;
+		if (Math.abs(infeasibility) > Math.abs(delta)) {
+		    delta = infeasibility;
+		    r = k;
+		}
+	    }
+	    if (r < 0) {
+		m_optimal = true;
+		break;
+	    }
+	    m_nbIterations++;
+
+	    // Row r of inverse(B) * A for the non basic variables
+	    double[] rho = inverse[r];
+	    for (int j = 0; j < n; j++) {
+		if (row[j] >= 0)
+		    continue;
+		double a = 0;
+		int offset = j * m;
+		for (int i = 0; i < m; i++) {
+		    a += rho[i] * weights[offset + i];
+		}
+		alphaRow[j] = a;
+	    }
+	    for (int i = 0; i < m; i++) {
+		alphaRow[n + i] = rho[i];
+	    }
+
+	    // Ratio test: the entering variable keeps the reduced costs of the right sign
+	    // (non negative at the lower bound, non positive at the upper bound)
+	    double sign = (delta < 0) ? 1 : -1;
+	    int q = -1;
+	    double ratio = Double.POSITIVE_INFINITY;
+	    for (int v = 0; v < n + m; v++) {
+		if (row[v] >= 0)
+		    continue;
+		double a = sign * alphaRow[v];
+		boolean atUpper = (v < n) && (value[v] > 0.5);
+		if ((atUpper && (a > PIVOT_EPSILON)) || (!atUpper && (a < -PIVOT_EPSILON))) {
+		    double t = Math.abs(cost[v]) / Math.abs(a);
+		    if ((t < ratio) || ((t == ratio) && (Math.abs(a) > Math.abs(sign * alphaRow[q])))) {
+			ratio = t;
+			q = v;
+		    }
+		}
+	    }
+	    if (q < 0) {
+		// Primal unfeasible: impossible since x = 0 is feasible when the capacities are non negative
+		throw new IllegalStateException("The linear relaxation of " + m_instance.getFileName() + " is unfeasible.");
+	    }
+
+	    // Column q of inverse(B) * A
+	    if (q < n) {
+		int offset = q * m;
+		for (int k = 0; k < m; k++) {
+		    double a = 0;
+		    double[] inv = inverse[k];
+		    for (int i = 0; i < m; i++) {
+			a += inv[i] * weights[offset + i];
+		    }
+		    alphaColumn[k] = a;
+		}
+	    } else {
+		for (int k = 0; k < m; k++) {
+		    alphaColumn[k] = inverse[k][q - n];
+		}
+	    }
+	    double pivot = alphaColumn[r];
+
+	    // Dual step: update the reduced costs
+	    double theta = cost[q] / alphaRow[q];
+	    for (int v = 0; v < n + m; v++) {
+		if (row[v] < 0)
+		    cost[v] -= theta * alphaRow[v];
+	    }
+	    int leaving = basic[r];
+	    cost[leaving] = -theta;
+	    cost[q] = 0;
+
+	    // Primal step: the leaving variable goes to the violated bound
+	    double target = (delta < 0) ? 0 : 1;
+	    double step = (value[leaving] - target) / pivot;
+	    for (int k = 0; k < m; k++) {
+		value[basic[k]] -= step * alphaColumn[k];
+	    }
+	    value[q] += step;
+	    value[leaving] = target;
+
+	    // Basis update
+	    basic[r] = q;
+	    row[q] = r;
+	    row[leaving] = -1;
+	    double[] pivotRow = inverse[r];
+	    for (int i = 0; i < m; i++) {
+		pivotRow[i] /= pivot;
+	    }
+	    for (int k = 0; k < m; k++) {
+		if ((k == r) || (alphaColumn[k] == 0))
+		    continue;
+		double f = alphaColumn[k];
+		double[] inv = inverse[k];
+		for (int i = 0; i < m; i++) {
+		    inv[i] -= f * pivotRow[i];
+		}
+	    }
+	}
+
+	// Results: duals u = p_B inverse(B) (profit of the basic items), reduced costs p - u A
+	m_duals = new double[m];
+	for (int k = 0; k < m; k++) {
+	    int v = basic[k];
+	    if (v < n) {
+		double p = m_instance.profit(v);
+		double[] inv = inverse[k];
+		for (int i = 0; i < m; i++) {
+		    m_duals[i] += p * inv[i];
+		}
+	    }
+	}
+	// The bound is the value of the dual solution, sum_i u_i c_i + sum_j max(0, d_j):
+	// it equals the primal value at the optimum and remains a valid bound otherwise
+	m_x = new double[n];
+	m_reducedCosts = new double[n];
+	m_bound = 0;
+	for (int i = 0; i < m; i++) {
+	    m_duals[i] = Math.max(0, m_duals[i]);
+	    m_bound += m_duals[i] * m_instance.capacity(i);
+	}
+	for (int j = 0; j < n; j++) {
+	    m_x[j] = Math.min(1, Math.max(0, value[j]));
+	    double d = m_instance.profit(j);
+	    int offset = j * m;
+	    for (int i = 0; i < m; i++) {
+		d -= m_duals[i] * weights[offset + i];
+	    }
+	    m_reducedCosts[j] = d;
+	    m_bound += Math.max(0, d);
+	}
+    }
+
+}
@@ -0,0 +1,168 @@
+/*
+	mkp-framework
+	Copyright (C) 2013 Fabien Lehuede / Damien Prot / Axel Grimault
+
+	This program is free software; you can redistribute it and/or modify
+	it under the terms of the GNU General Public License as published by
+	the Free Software Foundation; either version 2 of the License, or
+	(at your option) any later version.
+
+	This program is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+	GNU General Public License for more details.
+
+	You should have received a copy of the GNU General Public License along
+	with this program; if not, write to the Free Software Foundation, Inc.,
+	51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package edu.emn.mkp;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Scanner;
+
+/**
+ * Compares the time needed to load the instance files with {@link InstanceParser}
+ * (used by {@link Instance}) and with the former <code>Scanner</code> based reading.
+ *
+ * **command**: java edu.emn.mkp.LoadBenchmark [-n iterations] [directory]
+ *
+ * **Program output**: one line per <code>.dat</code> file of the directory (default <code>instances</code>):
+ * fileName;scannerTime;parserTime;speedup
+ * where times are the average loading times in microseconds.
+ *
+ * @author Fabien Lehuede / Damien Prot / Axel Grimault 2016
+ *
+ */
+public class LoadBenchmark {
+
+    /** Sum of values read, printed at the end so that the reading cannot be optimized away */
+    private static long s_checksum = 0;
+
+    /**
+     * Main method.
+     *
+     * @param arg program parameters.
+     */
+    public static void main(String[] arg) {
+	String directory = "instances";
+	int iterations = 200;
+
+	for (int i = 0; i < arg.length; i++) {
+	    if (arg[i].compareTo("-n") == 0) {
+		try {
+		    iterations = Integer.parseInt(arg[++i]);
+		} catch (Exception e) {
+		    System.err.println("Error: The value given for -n is not a valid integer value.");
+		    System.exit(1);
+		}
+	    } else {
+		directory = arg[i];
+	    }
+	}
+
+	File[] files = new File(directory).listFiles((dir, name) -> name.endsWith(".dat"));
+	if (files == null) {
+	    System.err.println("Error: " + directory + " is not a directory.");
+	    System.exit(1);
+	}
+	Arrays.sort(files);
+
+	try {
+	    // Warm up both readers
+	    for (File file : files) {
+		timeScanner(file.getPath(), iterations / 4 + 1);
+		timeParser(file.getPath(), iterations / 4 + 1);
+	    }
+
+	    System.out.println("fileName;scannerTime;parserTime;speedup");
+	    for (File file : files) {
+		double scanner = timeScanner(file.getPath(), iterations);
+		double parser = timeParser(file.getPath(), iterations);
+		System.out.printf("%s;%.1f;%.1f;%.1f%n", file.getPath(), scanner, parser, scanner / parser);
+	    }
+	} catch (IOException e) {
+	    System.err.println("Error: An error has been met when reading the input file: " + e.getMessage());
+	    System.exit(1);
+	}
+	System.err.println("Checksum: " + s_checksum);
+    }
+
+    /**
+     * @return Average time (in microseconds) to load the file with {@link Instance}.
+     */
+    private static double timeParser(String fileName, int iterations) throws IOException {
+	long t = System.nanoTime();
+	for (int k = 0; k < iterations; k++) {
+	    Instance inst = new Instance(fileName);
+	    s_checksum += inst.capacity(inst.getNbConstraints() - 1);
+	}
+	return (System.nanoTime() - t) / 1000.0 / iterations;
+    }
+
+    /**
+     * @return Average time (in microseconds) to load the file with {@link #readWithScanner(String)}.
+     */
+    private static double timeScanner(String fileName, int iterations) throws IOException {
+	long t = System.nanoTime();
+	for (int k = 0; k < iterations; k++) {
+	    int[] capacity = readWithScanner(fileName);
+	    s_checksum += capacity[capacity.length - 1];
+	}
+	return (System.nanoTime() - t) / 1000.0 / iterations;
+    }
+
+    /**
+     * Former reading of the instance file: one <code>Scanner</code> per line.
+     *
+     * @return The capacities of the constraints.
+     */
+    private static int[] readWithScanner(String fileName) throws IOException {
+	Scanner sc = new Scanner(new File(fileName));
+
+	String line = sc.nextLine();
+	Scanner lineSc = new Scanner(line);
+	int nbItems = lineSc.nextInt();
+	int nbConstraints = lineSc.nextInt();
+	lineSc.close();
+
+	line = sc.nextLine();
+	lineSc = new Scanner(line);
+
+	Integer[] profit = new Integer[nbItems];
+	for (int j = 0; j < nbItems; j++) {
+	    if (!lineSc.hasNextInt()) {
+		line = sc.nextLine();
+		lineSc = new Scanner(line);
+	    }
+	    profit[j] = lineSc.nextInt();
+	}
+
+	Integer[][] weight = new Integer[nbItems][nbConstraints];
+	for (int i = 0; i < nbConstraints; i++) {
+	    for (int j = 0; j < nbItems; j++) {
+		if (!lineSc.hasNextInt()) {
+		    line = sc.nextLine();
+		    lineSc = new Scanner(line);
+		}
+		weight[j][i] = lineSc.nextInt();
+	    }
+	}
+
+	int[] capacity = new int[nbConstraints];
+	for (int i = 0; i < nbConstraints; i++) {
+	    if (!lineSc.hasNextInt()) {
+		line = sc.nextLine();
+		lineSc = new Scanner(line);
+	    }
+	    capacity[i] = lineSc.nextInt();
+	}
+	sc.close();
+	lineSc.close();
+	return capacity;
+    }
+
+}
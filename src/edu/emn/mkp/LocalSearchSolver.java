@@ -0,0 +1,187 @@
+/*
+	mkp-framework
+	Copyright (C) 2013 Fabien Lehuede / Damien Prot / Axel Grimault
+
+	This program is free software; you can redistribute it and/or modify
+	it under the terms of the GNU General Public License as published by
+	the Free Software Foundation; either version 2 of the License, or
+	(at your option) any later version.
+
+	This program is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+	GNU General Public License for more details.
+
+	You should have received a copy of the GNU General Public License along
+	with this program; if not, write to the Free Software Foundation, Inc.,
+	51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package edu.emn.mkp;
+
+import java.util.Random;
+
+/**
+ * Iterated local search engine (<code>-solver localsearch</code>).
+ * 
+ * The search starts from the repaired initial solution ({@link SurrogateGreedySolver#repair(Solution, int[])})
+ * and repeats until the deadline of the solver:
+ *  - perturbation: remove some random items from the knapsack;
+ *  - refill the knapsack by decreasing efficiency, without the removed items first;
+ *  - improve the solution with swap moves, then refill;
+ *  - keep the new solution if it is not worse than the current one.
+ * Each improvement of the best solution is offered to the incumbent of the solver.
+ * After a number of iterations without improvement, the search restarts from the incumbent,
+ * which may have been improved by other engines running in parallel.
+ * 
+ * @author Fabien Lehuede / Damien Prot / Axel Grimault 2016
+ * 
+ */
+public class LocalSearchSolver implements SolverEngine {
+
+    // ---------------------------------------------
+    // --------------- ATTRIBUTES ------------------
+    // ---------------------------------------------
+
+    /** Number of items removed by a perturbation */
+    private final int m_strength;
+
+    /** Number of iterations without improvement before a restart from the incumbent */
+    private final int m_restart;
+
+    // -------------------------------------
+    // ------------ CONSTRUCTOR ------------
+    // -------------------------------------
+
+    /**
+     * Creates an engine removing 3 items per perturbation.
+     */
+    public LocalSearchSolver() {
+	this(3, 2000);
+    }
+
+    /**
+     * @param strength : number of items removed by a perturbation
+     * @param restart : number of iterations without improvement before a restart from the incumbent
+     */
+    public LocalSearchSolver(int strength, int restart) {
+	m_strength = strength;
+	m_restart = restart;
+    }
+
+    // -------------------------------------
+    // -------------- METHODS --------------
+    // -------------------------------------
+
+    @Override
+    public void solve(MKPSolver solver) throws Exception {
+	Deadline deadline = solver.getDeadline();
+	Instance instance = solver.getInstance();
+	Incumbent incumbent = solver.getIncumbent();
+	SearchMetrics metrics = solver.getMetrics();
+	Random random = new Random(solver.getSeed());
+	int[] order = SurrogateGreedySolver.efficiencyOrder(instance,
+		SurrogateGreedySolver.dualMultipliers(instance, deadline));
+	boolean[] tabu = new boolean[instance.getNbItems()];
+
+	Solution current = solver.getSolution();
+	SurrogateGreedySolver.repair(current, order);
+	incumbent.offer(current);
+	improve(current, order, deadline, incumbent);
+	Solution best = current.clone();
+
+	int idle = 0;
+	while (!deadline.isExpired()) {
+	    Solution candidate = current.clone();
+	    perturb(candidate, random, tabu);
+	    fill(candidate, order, tabu);
+	    improve(candidate, order, deadline, incumbent);
+
+	    metrics.add(SearchMetrics.EVALUATED, 1);
+	    if (candidate.getObjective() >= current.getObjective()) {
+		current = candidate;
+		metrics.add(SearchMetrics.ACCEPTED, 1);
+	    }
+	    if (current.getObjective() > best.getObjective()) {
+		best = current.clone();
+		incumbent.offer(best);
+		idle = 0;
+	    } else if (++idle >= m_restart) {
+		// Restart from the best solution known by all the engines
+		Solution shared = incumbent.get();
+		current = (shared != null) ? shared.clone() : best.clone();
+		idle = 0;
+		metrics.add(SearchMetrics.RESTARTS, 1);
+		metrics.event(SearchMetrics.RESTART, current.getObjective());
+	    }
+	}
+	solver.setSolution(best);
+    }
+
+    /**
+     * Remove <code>m_strength</code> random items from the knapsack and mark them in <code>removed</code>.
+     */
+    private void perturb(Solution solution, Random random, boolean[] removed) {
+	int nbItems = removed.length;
+	for (int k = 0; k < m_strength; k++) {
+	    int j = solution.nextSelected(random.nextInt(nbItems));
+	    if (j < 0)
+		j = solution.nextSelected(0);
+	    if (j < 0)
+		return;
+	    solution.remove(j);
+	    removed[j] = true;
+	}
+    }
+
+    /**
+     * Add the items that fit by decreasing efficiency, first without the items marked in
+     * <code>removed</code>, then with all the items. The marks are cleared.
+     */
+    private static void fill(Solution solution, int[] order, boolean[] removed) {
+	for (int j : order) {
+	    if (!removed[j] && !solution.selected(j) && solution.fits(j)) {
+		solution.add(j);
+	    }
+	}
+	SurrogateGreedySolver.fill(solution, order);
+	for (int j = 0; j < removed.length; j++) {
+	    removed[j] = false;
+	}
+    }
+
+    /**
+     * Apply improving swap moves (one item out, one item in) until there is none or until the deadline,
+     * then refill. The items leaving are tried by increasing efficiency, the items entering by decreasing
+     * efficiency. The solution is offered to the incumbent after each pass that improved it, as a pass
+     * over a large instance may take longer than the time left.
+     */
+    private static void improve(Solution solution, int[] order, Deadline deadline, Incumbent incumbent) {
+	Instance instance = solution.getInstance();
+	boolean improved = true;
+	while (improved) {
+	    improved = false;
+	    for (int k = order.length - 1; k >= 0; k--) {
+		if (deadline.isExpired())
+		    break;
+		int out = order[k];
+		if (!solution.selected(out))
+		    continue;
+		int profit = instance.profit(out);
+		for (int in : order) {
+		    if ((instance.profit(in) > profit) && (solution.deltaSwap(out, in) > 0)) {
+			solution.applySwap(out, in);
+			improved = true;
+			break;
+		    }
+		}
+	    }
+	    SurrogateGreedySolver.fill(solution, order);
+	    if (improved)
+		incumbent.offer(solution);
+	    if (deadline.isExpired())
+		return;
+	}
+    }
+
+}
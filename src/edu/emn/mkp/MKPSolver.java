@@ -1,4 +1,9 @@
 package edu.emn.mkp;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 /*
 mkp-framework
 Copyright (C) 2013 Fabien Lehuede / Damien Prot / Axel Grimault
@@ -20,15 +25,22 @@ with this program; if not, write to the Free Software Foundation, Inc.,
 
 /**
  * 
- * This class is the place where you should enter your code and from which you can create your own objects.
+ * This class runs a solver engine on the problem.
  * 
- * The method you must implement is solve(). This method is called by the programmer after loading the data.
+ * The method solve() is called by the programmer after loading the data. It calls the engine
+ * ({@link SolverEngine}) selected with {@link #setEngine(SolverEngine)}, {@link GreedySolver} by default.
+ * Write your own algorithm as a new engine.
  * 
  * The MKPSolver object is created by the Main class.
  * The other objects that are created in Main can be accessed through the following MKPSolver attributes: 
  * 	- m_instance :  the Instance object which contains the problem data
  * 	- m_solution : the Solution object to modify. This object will store the result of the program.
  * 	- m_time : the maximum time limit (in seconds) given to the program.
+ * 	- m_engine : the algorithm run by solve().
+ * 	- m_deadline : the time limit of the search, to be polled by the engine.
+ * 	- m_incumbent : the best solution found so far, shared by the engines running in parallel.
+ * 	- m_nbThreads, m_seed : number of threads and seed of the random generators used by the engines.
+ * 	- m_metrics : counters and events of the search, disabled by default.
  *  
  * @author Fabien Lehuede / Damien Prot / Axel Grimault 2016
  * 
@@ -39,6 +51,12 @@ public class MKPSolver {
     // --------------- ATTRIBUTES ------------------
     // ---------------------------------------------
 
+    /** Time kept free between the deadline of the engine and the time limit (in ms) */
+    public static final long TIME_MARGIN = 500;
+
+    /** Time given to the engine to stop once the time limit is reached (in ms) */
+    private static final long STOP_DELAY = 500;
+
     /**
      * The MKP Solution that will be returned by the program
      */
@@ -50,6 +68,27 @@ public class MKPSolver {
     /** Time given to solve the problem. */
     private long m_time;
 
+    /** The algorithm used to solve the problem. */
+    private SolverEngine m_engine = new GreedySolver();
+
+    /** Time limit of the search, created by {@link #solve(long)}. */
+    private Deadline m_deadline;
+
+    /** Best solution found so far. */
+    private Incumbent m_incumbent = new Incumbent();
+
+    /** Number of threads the engine may use. */
+    private int m_nbThreads = 1;
+
+    /** Seed of the random generators. */
+    private long m_seed = 0;
+
+    /** Metrics of the search. */
+    private SearchMetrics m_metrics = SearchMetrics.DISABLED;
+
+    /** Thread of the engine abandoned by the last call to {@link #solve(long)}, <code>null</code> if it stopped in time. */
+    private Thread m_abandoned;
+
     // --------------------------------------------
     // ------------ GETTERS AND SETTERS -----------
     // --------------------------------------------
@@ -69,6 +108,39 @@ public class MKPSolver {
 	return m_time;
     }
 
+    /** @return The algorithm used to solve the problem */
+    public SolverEngine getEngine() {
+	return m_engine;
+    }
+
+    /** @return Time limit of the search, to be polled by the engine */
+    public Deadline getDeadline() {
+	return m_deadline;
+    }
+
+    /** @return The best solution found so far */
+    public Incumbent getIncumbent() {
+	return m_incumbent;
+    }
+
+    /** @return Number of threads the engine may use */
+    public int getNbThreads() {
+	return m_nbThreads;
+    }
+
+    /** @return Seed of the random generators */
+    public long getSeed() {
+	return m_seed;
+    }
+
+    /**
+     * @return <code>true</code> if the engine did not stop at the time limit of the last call to
+     * {@link #solve(long)} and was abandoned: the time limit is exceeded.
+     */
+    public boolean isOverdue() {
+	return m_abandoned != null;
+    }
+
     /**
      * Initializes the problem solution with a new Solution object (the old one
      * will be deleted).
@@ -97,21 +169,89 @@ public class MKPSolver {
 	this.m_time = time;
     }
 
+    /**
+     * Sets the algorithm used to solve the problem.
+     * 
+     * @param engine : the algorithm (see {@link SolverRegistry} to create it by name)
+     */
+    public void setEngine(SolverEngine engine) {
+	this.m_engine = engine;
+    }
+
+    /**
+     * Sets the time limit of the search (to share it between several solvers).
+     * It is replaced by {@link #solve(long)}.
+     * 
+     * @param deadline : the time limit
+     */
+    public void setDeadline(Deadline deadline) {
+	this.m_deadline = deadline;
+    }
+
+    /**
+     * Sets the best solution found so far (to share it between several solvers).
+     * 
+     * @param incumbent : the best solution
+     */
+    public void setIncumbent(Incumbent incumbent) {
+	this.m_incumbent = incumbent;
+    }
+
+    /** @return the metrics of the search, to be shared with the solvers created by the engine */
+    public SearchMetrics getMetrics() {
+	return m_metrics;
+    }
+
+    /**
+     * Sets the metrics of the search.
+     * 
+     * @param metrics : the metrics, {@link SearchMetrics#DISABLED} to record nothing
+     */
+    public void setMetrics(SearchMetrics metrics) {
+	this.m_metrics = metrics;
+    }
+
+    /**
+     * Sets the number of threads the engine may use.
+     * 
+     * @param nbThreads : number of threads
+     */
+    public void setNbThreads(int nbThreads) {
+	this.m_nbThreads = nbThreads;
+    }
+
+    /**
+     * Sets the seed of the random generators.
+     * 
+     * @param seed : the seed
+     */
+    public void setSeed(long seed) {
+	this.m_seed = seed;
+    }
+
     // -------------------------------------
     // -------------- METHODS --------------
     // -------------------------------------
 
     /**
-     * **TODO** Modify this method to solve the problem.
+     * Solve the problem with the engine of this solver (see {@link #setEngine(SolverEngine)}).
+     * 
+     * To add your own algorithm, implement {@link SolverEngine} and register it in {@link SolverRegistry}.
      * 
      * Do not print text on the standard output (eg. using <code>System.out.print()</code> or <code>System.out.println()</code>).
      * This output is dedicated to the result analyzer that will be used to evaluate your code on multiple instances.
      * 
      * You can print using the error output (<code>System.err.print()</code> or <code>System.err.println()</code>).
      * 
-     * When your algorithm terminates, make sure the attribute m_solution in this class points to the solution you want to return.
+     * The engine runs on its own thread. It must poll the deadline m_deadline, which expires
+     * {@link #TIME_MARGIN} ms before the time limit, and offer its improvements to m_incumbent.
+     * If the engine is still running at the time limit, the deadline is cancelled and the engine
+     * is interrupted; if it does not stop within {@link #STOP_DELAY} ms, it is abandoned.
      * 
-     * You have to make sure that your algorithm does not take more time than the time limit m_time.
+     * When this method returns, the attribute m_solution in this class points to the solution to return:
+     * the solution of the engine, or the incumbent if it is better, if the solution of the engine is
+     * unfeasible (engine stopped in the middle of a move), or if the engine failed once stopped or was
+     * abandoned (the initial solution if no solution was offered, see {@link #isOverdue()}).
      * 
      * @param time Time allowed (in seconds) to solve the problem.
      * @throws Exception
@@ -120,32 +260,106 @@ public class MKPSolver {
      */
     public void solve(long time) throws Exception {
 	m_time = time;
+	run(time * 1000);
+    }
+
+    /**
+     * Same as {@link #solve(long)} with a time limit in milliseconds, for example the time left
+     * to answer a request. Below 2 * {@link #TIME_MARGIN} ms, the margin is half of the time limit.
+     * 
+     * @param timeLimit Time allowed (in ms) to solve the problem.
+     * @throws Exception
+     */
+    public void solveWithin(long timeLimit) throws Exception {
+	m_time = (timeLimit + 999) / 1000;
+	run(timeLimit);
+    }
+
+    /**
+     * Run the engine with the time limit given (in ms), see {@link #solve(long)}.
+     */
+    private void run(long timeLimit) throws Exception {
+	m_deadline = new Deadline(timeLimit - Math.min(TIME_MARGIN, timeLimit / 2));
+	m_abandoned = null;
+	Solution initial = m_solution.clone();
+	m_incumbent.setMetrics(m_metrics);
+	m_metrics.event(SearchMetrics.START, 0);
 	long t = System.currentTimeMillis();
-	long timeElapsed = 0;
 
-	// Example of initial solution :
-	// add objects by natural order if possible
-	for (int j=0;j<m_instance.getNbItems();j++) {
-	    if (m_solution.addingPossible(j)) {
-		m_solution.addItem(j);
+	FutureTask<Void> task = new FutureTask<>(() -> {
+	    m_engine.solve(this);
+	    return null;
+	});
+	Thread thread = new Thread(task, "mkp-engine");
+	thread.setDaemon(true);
+	thread.start();
+
+	boolean finished = false;
+	boolean failed = false;
+	try {
+	    task.get(timeLimit, TimeUnit.MILLISECONDS);
+	    finished = true;
+	} catch (TimeoutException e) {
+	    // Time limit reached: ask the engine to stop
+	    m_deadline.cancel();
+	    thread.interrupt();
+	    try {
+		task.get(STOP_DELAY, TimeUnit.MILLISECONDS);
+		finished = true;
+	    } catch (TimeoutException e2) {
+		// The engine is abandoned, its solution may be inconsistent
+		m_abandoned = thread;
+	    } catch (ExecutionException e2) {
+		// The engine failed once interrupted, its solution may be inconsistent
+		failed = true;
 	    }
+	} catch (ExecutionException e) {
+	    if (e.getCause() instanceof Error)
+		throw (Error) e.getCause();
+	    throw (Exception) e.getCause();
 	}
 
-	timeElapsed = System.currentTimeMillis() - t;
+	if (finished) {
+	    m_incumbent.offer(m_solution);
+	}
+	Solution best = m_incumbent.get();
+	if (failed) {
+	    System.err.println("Warning: the engine failed once stopped at the time limit, the best solution found so far is returned.");
+	    m_solution = (best != null) ? best.clone() : initial;
+	} else if (!finished) {
+	    System.err.println("Warning: the engine did not stop at the time limit, the best solution found so far is returned.");
+	    m_solution = (best != null) ? best.clone() : initial;
+	} else if (!m_solution.isFeasible()) {
+	    // Engine stopped in the middle of a move
+	    m_solution = (best != null) ? best.clone() : initial;
+	} else if ((best != null) && (best.getObjective() > m_solution.getObjective())) {
+	    m_solution = best.clone();
+	}
 
-	// Loop for improvements of the solution.
-	// Keep 500ms free
+	m_metrics.event(SearchMetrics.END, m_solution.getObjective());
+	long timeElapsed = System.currentTimeMillis() - t;
+	System.err.println("Solving time: " + timeElapsed + " ms");
+    }
 
-	//	long maxTime=  m_time * 1000 - 500;
-	//	while (timeElapsed < maxTime) {
-	//	    // Your code here			
-	//	    timeElapsed = System.currentTimeMillis() - t;
-	//	}
+    /**
+     * Wait until the engine abandoned by the last call to {@link #solve(long)} stops, so that the
+     * threads of the abandoned engines do not pile up (returns at once if the engine stopped in time).
+     * 
+     * @throws InterruptedException If the current thread is interrupted while waiting.
+     */
+    public void awaitEngine() throws InterruptedException {
+	Thread thread = m_abandoned;
+	if (thread != null)
+	    thread.join();
+    }
 
-	System.err.println("Solving time: " + timeElapsed + " ms");
-	// Visualization functions
-	m_solution.print(System.err);
-	m_solution.printConstraints(System.err);
+    /**
+     * Stop the search in progress: its deadline is cancelled.
+     */
+    public void cancel() {
+	Deadline deadline = m_deadline;
+	if (deadline != null)
+	    deadline.cancel();
     }
 
 }
@@ -25,18 +25,15 @@ import java.io.IOException;
  * This class contains the Main function, that is the function that is launched
  * when the program is run.
  * 
- * DO NOT WRITE OR MODIFY THIS CLASS.
- * 
  * Read the description of the Main method below, it describes how to set some
  * parameters for the program (such as the filename of the problem to solve).
  * 
  * When the program is run, the input data file is loaded in an Instance object.
- * A MKPSolver object is then created, given the Instance object, and its solve
- * method MKPSolver::solve is called. This is where you have to code your
- * algorithms.
+ * A MKPSolver object is then created, given the Instance object and the engine
+ * selected by the option -solver, and its solve method MKPSolver::solve is called.
  * 
- * The class to be modified is MKPSolver, from where you may also create your
- * own classes.
+ * To add your own algorithm, implement the interface SolverEngine and register it
+ * in SolverRegistry: this class does not need to be modified.
  * 
  * @author Fabien Lehuede / Damien Prot / Axel Grimault 2016
  * 
@@ -44,17 +41,25 @@ import java.io.IOException;
 public class Main {
 
     /**
-     * Main method. DO NOT MODIFY THIS METHOD.
+     * Main method.
      * 
      * The parameters of the java program are described below: 
      * **command**: java Main [options] datafile
      * **Options**:
      *  - -help :prints this parameter description
      *  - -t (int) :maximum number of seconds given to the algorithm
-     *  - -v :trace level (print the solution at the end if true) and the value of the constraints
+     *  - -v :trace level (print the solution at the end if true), the value of the constraints
+     *  and the gap to the upper bound given by the linear relaxation (if it is solved quickly)
+     *  - -solver (name) :algorithm used to solve the problem (see SolverRegistry)
+     *  - -threads (int) :number of threads the algorithm may use
+     *  - -seed (int) :seed of the random generators
+     *  - -core (int) :number of items of the core problem the algorithm is run on (see CoreProblem)
+     *  - -presolve :remove the items and constraints that cannot change the optimal value before the search (see Presolve)
+     *  - -cache (directory) :cache of the best solutions, used to warm-start the algorithm (see SolutionCache)
+     *  - -metrics (file) :file of the metrics of the search, in JSON if it ends with .json, in CSV otherwise (see SearchMetrics)
      * 
      * **Program output**: 
-     * fileName;routeLength;time;e
+     * fileName;objective;time;e
      * e is an error code:
      *  - e = 0 -> the solution is feasible and returned within the time limit
      *  - e = 1 -> unfeasible solution
@@ -68,6 +73,13 @@ public class Main {
 	long max_time = 30;
 	boolean verbose = false;
 	boolean graphical = false;
+	String solverName = SolverRegistry.DEFAULT;
+	int nbThreads = Runtime.getRuntime().availableProcessors();
+	long seed = 0;
+	int coreSize = 0;
+	boolean presolve = false;
+	String cacheDirectory = null;
+	String metricsFile = null;
 
 	// Parse command line
 	for (int i = 0; i < arg.length; i++) {
@@ -78,7 +90,15 @@ public class Main {
 		System.err.println("Options:");
 		System.err.println("\t-help\t: prints this parameter description");
 		System.err.println("\t-t\t\t: maximum number of seconds given to the algorithm (int)");
-		System.err.println("\t-v\t\t: trace level,print the solution and the constraints");
+		System.err.println("\t-v\t\t: trace level,print the solution, the constraints and the gap to the upper bound");
+		System.err.println("\t-solver\t: algorithm used to solve the problem " + SolverRegistry.getNames()
+			+ ", default " + SolverRegistry.DEFAULT);
+		System.err.println("\t-threads\t: number of threads the algorithm may use (int), default " + nbThreads);
+		System.err.println("\t-seed\t: seed of the random generators (int), default " + seed);
+		System.err.println("\t-core\t: solve only the core problem with this number of items (int), default all items");
+		System.err.println("\t-presolve\t: remove the items and constraints that cannot change the optimal value");
+		System.err.println("\t-cache\t: directory of the cache of solutions used to warm-start the algorithm");
+		System.err.println("\t-metrics\t: file of the metrics of the search (.json for JSON, CSV otherwise)");
 		return;
 
 	    } else if (arg[i].compareTo("-v") == 0) {
@@ -92,6 +112,51 @@ public class Main {
 		    .println("Error: The time given for -t is not a valid integer value.");
 		    System.exit(1);
 		}
+	    } else if (arg[i].compareTo("-threads") == 0) {
+		try {
+		    nbThreads = Integer.parseInt(arg[++i]);
+		} catch (Exception e) {
+		    System.err.println("Error: The value given for -threads is not a valid integer value.");
+		    System.exit(1);
+		}
+	    } else if (arg[i].compareTo("-seed") == 0) {
+		try {
+		    seed = Long.parseLong(arg[++i]);
+		} catch (Exception e) {
+		    System.err.println("Error: The value given for -seed is not a valid integer value.");
+		    System.exit(1);
+		}
+	    } else if (arg[i].compareTo("-core") == 0) {
+		try {
+		    coreSize = Integer.parseInt(arg[++i]);
+		} catch (Exception e) {
+		    System.err.println("Error: The value given for -core is not a valid integer value.");
+		    System.exit(1);
+		}
+	    } else if (arg[i].compareTo("-presolve") == 0) {
+		presolve = true;
+	    } else if (arg[i].compareTo("-cache") == 0) {
+		if (i + 1 >= arg.length) {
+		    System.err.println("Error: No directory given for -cache.");
+		    System.exit(1);
+		}
+		cacheDirectory = arg[++i];
+	    } else if (arg[i].compareTo("-metrics") == 0) {
+		if (i + 1 >= arg.length) {
+		    System.err.println("Error: No file given for -metrics.");
+		    System.exit(1);
+		}
+		metricsFile = arg[++i];
+	    } else if (arg[i].compareTo("-solver") == 0) {
+		if (i + 1 >= arg.length) {
+		    System.err.println("Error: No solver given for -solver.");
+		    System.exit(1);
+		}
+		solverName = arg[++i];
+		if (!SolverRegistry.getNames().contains(solverName)) {
+		    System.err.println("Error: " + solverName + " is not a solver. Available solvers: " + SolverRegistry.getNames());
+		    System.exit(1);
+		}
 	    } else {
 		if (filename != null) {
 		    System.err.println("Error: There is a problem in the program parameters.");
@@ -112,11 +177,31 @@ public class Main {
 
 	    // Create a new problem
 	    MKPSolver mkp = new MKPSolver();
+	    mkp.setEngine(SolverRegistry.create(solverName));
+	    if (coreSize > 0)
+		mkp.setEngine(new CoreSolver(mkp.getEngine(), coreSize));
+	    if (presolve)
+		mkp.setEngine(new PresolveSolver(mkp.getEngine()));
+	    mkp.setNbThreads(nbThreads);
+	    mkp.setSeed(seed);
+	    if (metricsFile != null)
+		mkp.setMetrics(new SearchMetrics(SearchMetrics.DEFAULT_CAPACITY));
 	    // Read data
 	    Instance prob = new Instance(filename);
 	    mkp.setInstance(prob);
 	    mkp.setSolution(new Solution(prob));
 
+	    // Warm start from the solution of the nearest cached instance
+	    SolutionCache cache = null;
+	    if (cacheDirectory != null) {
+		cache = new SolutionCache(cacheDirectory, SolutionCache.DEFAULT_SIZE);
+		Solution warm = cache.lookup(prob);
+		if (warm != null) {
+		    mkp.setSolution(warm);
+		    System.err.println("Warm start from the cache: " + warm.getObjective());
+		}
+	    }
+
 	    // Solve the problem
 	    long t = System.currentTimeMillis();
 	    mkp.solve(max_time);
@@ -130,18 +215,34 @@ public class Main {
 	    if (!feasible) {
 		e = 1;
 	    } else {
-		if (t > (max_time + 1) * 1000) {
+		if (mkp.isOverdue() || (t > (max_time + 1) * 1000)) {
 		    e = 2;
 		    System.err.println("Error: Time limit exeeced !!!");
 		}
 	    }
 	    System.out.println(filename + ";"+ mkp.getSolution().getObjective() + ";" + t + ";" + e);
+	    if ((cache != null) && feasible)
+		cache.store(mkp.getSolution());
+	    if (metricsFile != null)
+		mkp.getMetrics().write(metricsFile);
 
 	    // If verbose, print the solution
 	    if (verbose) {
 		mkp.getSolution().print(System.err);
 		if (e == 1)
 		    System.err.println("Error: There is an error in the solution: "+ mkp.getSolution().getError());
+		// The relaxation solved by the engine if any, solved now only if it is quick: the run
+		// must not last much longer than the time limit
+		LPRelaxation relaxation = prob.getRelaxationIfSolved();
+		if ((relaxation == null) && LPRelaxation.isCheap(prob))
+		    relaxation = prob.getRelaxation();
+		if (relaxation != null) {
+		    long bound = relaxation.getIntegerBound();
+		    System.err.printf("Upper bound (linear relaxation): %d / Gap: %.3f%%%n", bound,
+			    (bound > 0) ? 100.0 * (bound - mkp.getSolution().getObjective()) / bound : 0.0);
+		} else {
+		    System.err.println("Upper bound (linear relaxation): not computed, the instance is too large.");
+		}
 	    }
 
 	    // If graphical visualization, print the value of the constraints
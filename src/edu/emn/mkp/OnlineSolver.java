@@ -0,0 +1,292 @@
+/*
+	mkp-framework
+	Copyright (C) 2013 Fabien Lehuede / Damien Prot / Axel Grimault
+
+	This program is free software; you can redistribute it and/or modify
+	it under the terms of the GNU General Public License as published by
+	the Free Software Foundation; either version 2 of the License, or
+	(at your option) any later version.
+
+	This program is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+	GNU General Public License for more details.
+
+	You should have received a copy of the GNU General Public License along
+	with this program; if not, write to the Free Software Foundation, Inc.,
+	51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package edu.emn.mkp;
+
+import java.util.BitSet;
+
+/**
+ * Online mode: the instance changes while it is solved (items added or removed, profits and
+ * capacities changed) and the solution follows the changes instead of being computed again.
+ * 
+ * Each change is applied to the instance and to the solution at the same time: only the weights
+ * and the value of the knapsack are updated, for the item changed. {@link #update(long)} then
+ * repairs the solution (DROP / ADD, see {@link SurrogateGreedySolver#repair(Solution, int[])}) and
+ * re-optimises it for a bounded time: swaps involving the items changed since the last update,
+ * then the engine given by {@link #setEngine(SolverEngine)}, if any, starting from the solution.
+ * 
+ * The items are sorted by efficiency with the dual values of the linear relaxation of the
+ * instance given to the constructor. They are not updated after the changes: the relaxation of
+ * a large instance takes much longer than a re-optimisation, and the multipliers remain good
+ * weights for the constraints after a few changes. {@link #refresh()} computes them again.
+ * 
+ * The instance must only be changed through this class, and not while a search runs on it.
+ * 
+ * @author Fabien Lehuede / Damien Prot / Axel Grimault 2016
+ * 
+ */
+public class OnlineSolver {
+
+    // ---------------------------------------------
+    // --------------- ATTRIBUTES ------------------
+    // ---------------------------------------------
+
+    /** Default time of the re-optimisation (in ms) */
+    public static final long DEFAULT_TIME = 100;
+
+    /** The problem data, changed by this object */
+    private final Instance m_instance;
+
+    /** Version of the instance the solution corresponds to */
+    private long m_version;
+
+    /** The current solution, feasible after each update */
+    private Solution m_solution;
+
+    /** Multipliers of the constraints used to sort the items by efficiency */
+    private double[] m_multipliers;
+
+    /** Items added or whose profit changed since the last update */
+    private final BitSet m_touched = new BitSet();
+
+    /** Engine run at the end of the updates, <code>null</code> for none */
+    private SolverEngine m_engine = null;
+
+    /** Number of threads the engine may use */
+    private int m_nbThreads = 1;
+
+    /** Seed of the random generators of the engine */
+    private long m_seed = 0;
+
+    /** Metrics of the searches of the engine */
+    private SearchMetrics m_metrics = SearchMetrics.DISABLED;
+
+    // --------------------------------------------
+    // ------------ GETTERS AND SETTERS -----------
+    // --------------------------------------------
+
+    /** @return problem data */
+    public Instance getInstance() {
+	return m_instance;
+    }
+
+    /**
+     * @return The current solution: feasible after {@link #update(long)}, it may be unfeasible
+     * after a change (for example a capacity decreased).
+     * @warning The solution is changed by the next changes, clone it to keep it.
+     */
+    public Solution getSolution() {
+	return m_solution;
+    }
+
+    /**
+     * Sets the engine run at the end of the updates, starting from the repaired solution, with
+     * the time limit of {@link MKPSolver#solveWithin(long)}. The linear relaxation is forgotten
+     * after each change: the engines only solve it again if it fits in their time.
+     * 
+     * @param engine : the engine, <code>null</code> for none (default)
+     */
+    public void setEngine(SolverEngine engine) {
+	m_engine = engine;
+    }
+
+    /** @param nbThreads : number of threads the engine may use */
+    public void setNbThreads(int nbThreads) {
+	m_nbThreads = Math.max(1, nbThreads);
+    }
+
+    /** @param seed : seed of the random generators of the engine */
+    public void setSeed(long seed) {
+	m_seed = seed;
+    }
+
+    /** @param metrics : metrics of the searches of the engine */
+    public void setMetrics(SearchMetrics metrics) {
+	m_metrics = metrics;
+    }
+
+    // -------------------------------------
+    // ------------ CONSTRUCTOR ------------
+    // -------------------------------------
+
+    /**
+     * @param instance : the problem data, changed by this object from now on
+     * @param solution : the current solution of the instance (for example the result of a
+     * {@link MKPSolver}), copied
+     */
+    public OnlineSolver(Instance instance, Solution solution) {
+	if (solution.getInstance() != instance)
+	    throw new IllegalArgumentException("Error: the solution is not a solution of " + instance.getFileName() + ".");
+	m_instance = instance;
+	m_version = instance.getVersion();
+	m_solution = solution.clone();
+	m_multipliers = SurrogateGreedySolver.dualMultipliers(instance);
+    }
+
+    // -------------------------------------
+    // -------------- METHODS --------------
+    // -------------------------------------
+
+    /**
+     * Add an item at the end of the instance; it is not in the knapsack.
+     * 
+     * @param profit : profit of the item
+     * @param weights : weight of the item in each constraint
+     * @return The index of the new item.
+     */
+    public int addItem(int profit, int[] weights) {
+	checkVersion();
+	int j = m_instance.addItem(profit, weights);
+	m_solution.itemAdded();
+	m_touched.set(j);
+	m_version = m_instance.getVersion();
+	return j;
+    }
+
+    /**
+     * Remove an item: the last item of the instance takes its index.
+     * 
+     * @param j : index of the item removed
+     * @return The former index of the item now at index j (j itself if the last item was removed).
+     */
+    public int removeItem(int j) {
+	checkVersion();
+	if ((j < 0) || (j >= m_instance.getNbItems()))
+	    throw new IndexOutOfBoundsException("Error: " + j + " is not a valid item index.");
+	m_solution.itemRemoved(j);
+	int last = m_instance.removeItem(j);
+	m_touched.set(j, m_touched.get(last));
+	m_touched.clear(last);
+	m_version = m_instance.getVersion();
+	return last;
+    }
+
+    /**
+     * @param j : index of the item
+     * @param profit : new profit of the item
+     */
+    public void setProfit(int j, int profit) {
+	checkVersion();
+	if ((j < 0) || (j >= m_instance.getNbItems()))
+	    throw new IndexOutOfBoundsException("Error: " + j + " is not a valid item index.");
+	m_solution.profitChanged(j, profit);
+	m_instance.setProfit(j, profit);
+	m_touched.set(j);
+	m_version = m_instance.getVersion();
+    }
+
+    /**
+     * @param i : index of the constraint
+     * @param capacity : new capacity of the constraint
+     */
+    public void setCapacity(int i, int capacity) {
+	checkVersion();
+	m_instance.setCapacity(i, capacity);
+	m_version = m_instance.getVersion();
+    }
+
+    /**
+     * Compute the multipliers used to sort the items again, from the linear relaxation of the
+     * current instance.
+     */
+    public void refresh() {
+	checkVersion();
+	m_multipliers = SurrogateGreedySolver.dualMultipliers(m_instance);
+    }
+
+    /**
+     * Repair the solution and re-optimise it for a bounded time.
+     * 
+     * @param timeLimit : time of the re-optimisation (in ms), see {@link #DEFAULT_TIME}
+     * @return The current solution, feasible.
+     * @throws Exception Returns the errors of the engine.
+     * @warning If the engine does not stop at the time limit ({@link MKPSolver#isOverdue()}), the
+     * solution of the incumbent is returned once the engine has stopped.
+     */
+    public Solution update(long timeLimit) throws Exception {
+	checkVersion();
+	Deadline deadline = new Deadline(timeLimit);
+	int[] order = SurrogateGreedySolver.efficiencyOrder(m_instance, m_multipliers);
+	SurrogateGreedySolver.repair(m_solution, order);
+	improve(order, deadline);
+	m_touched.clear();
+
+	long timeLeft = deadline.getRemainingTime();
+	if ((m_engine != null) && (timeLeft > 0)) {
+	    MKPSolver solver = new MKPSolver();
+	    Incumbent incumbent = new Incumbent();
+	    incumbent.setMetrics(m_metrics);
+	    incumbent.offer(m_solution);
+	    solver.setInstance(m_instance);
+	    solver.setSolution(m_solution.clone());
+	    solver.setEngine(m_engine);
+	    solver.setIncumbent(incumbent);
+	    solver.setNbThreads(m_nbThreads);
+	    solver.setSeed(m_seed + m_version);
+	    solver.setMetrics(m_metrics);
+	    solver.solveWithin(timeLeft);
+	    // The instance must not change while an abandoned engine still reads it
+	    solver.awaitEngine();
+	    incumbent.offer(solver.getSolution());
+	    if (incumbent.getObjective() > m_solution.getObjective())
+		m_solution = incumbent.get().clone();
+	}
+	return m_solution;
+    }
+
+    /**
+     * Apply the improving swaps involving the items changed since the last update: a changed item
+     * out of the knapsack replaces the least efficient item it can, a changed item in the knapsack
+     * is replaced by the most efficient item that can. The solution is then refilled.
+     * 
+     * @param order : all the items, sorted by decreasing efficiency
+     * @param deadline : time limit of the swaps
+     */
+    private void improve(int[] order, Deadline deadline) {
+	for (int j = m_touched.nextSetBit(0); (j >= 0) && !deadline.isExpired(); j = m_touched.nextSetBit(j + 1)) {
+	    if (m_solution.selected(j)) {
+		for (int in : order) {
+		    if (!m_solution.selected(in) && (m_solution.deltaSwap(j, in) > 0)) {
+			m_solution.applySwap(j, in);
+			break;
+		    }
+		}
+	    } else {
+		for (int k = order.length - 1; k >= 0; k--) {
+		    int out = order[k];
+		    if (m_solution.selected(out) && (m_solution.deltaSwap(out, j) > 0)) {
+			m_solution.applySwap(out, j);
+			break;
+		    }
+		}
+	    }
+	}
+	SurrogateGreedySolver.fill(m_solution, order);
+    }
+
+    /**
+     * Check that the instance has only been changed by this object.
+     */
+    private void checkVersion() {
+	if (m_instance.getVersion() != m_version)
+	    throw new IllegalStateException("Error: " + m_instance.getFileName()
+		    + " has been changed without its OnlineSolver, the solution is lost.");
+    }
+
+}
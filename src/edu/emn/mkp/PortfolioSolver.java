@@ -0,0 +1,84 @@
+/*
+	mkp-framework
+	Copyright (C) 2013 Fabien Lehuede / Damien Prot / Axel Grimault
+
+	This program is free software; you can redistribute it and/or modify
+	it under the terms of the GNU General Public License as published by
+	the Free Software Foundation; either version 2 of the License, or
+	(at your option) any later version.
+
+	This program is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+	GNU General Public License for more details.
+
+	You should have received a copy of the GNU General Public License along
+	with this program; if not, write to the Free Software Foundation, Inc.,
+	51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package edu.emn.mkp;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Parallel engine (<code>-solver portfolio</code>): runs {@link MKPSolver#getNbThreads()} engines
+ * at the same time, each one on its own thread with its own seed.
+ * 
+ * Each engine polls its own child of the deadline of the solver ({@link Deadline#Deadline(Deadline)}).
+ * The engines share the incumbent of the solver ({@link Incumbent}): each one publishes its
+ * improvements and restarts from the best solution of all engines when it is stuck.
+ * The workers use different strategies, given by {@link #createWorker(int)}.
+ * At the end, the solution of the solver is the incumbent.
+ * 
+ * @author Fabien Lehuede / Damien Prot / Axel Grimault 2016
+ * 
+ */
+public class PortfolioSolver implements SolverEngine {
+
+    @Override
+    public void solve(MKPSolver solver) throws Exception {
+	int nbWorkers = Math.max(1, solver.getNbThreads());
+	ExecutorService executor = Executors.newFixedThreadPool(nbWorkers);
+	try {
+	    List<Future<?>> futures = new ArrayList<>();
+	    for (int k = 0; k < nbWorkers; k++) {
+		final MKPSolver worker = new MKPSolver();
+		worker.setInstance(solver.getInstance());
+		worker.setSolution(solver.getSolution().clone());
+		worker.setTime(solver.getTime());
+		worker.setDeadline(new Deadline(solver.getDeadline()));
+		worker.setIncumbent(solver.getIncumbent());
+		worker.setSeed(solver.getSeed() + k);
+		worker.setMetrics(solver.getMetrics());
+		worker.setEngine(createWorker(k));
+		futures.add(executor.submit(() -> {
+		    worker.getEngine().solve(worker);
+		    return null;
+		}));
+	    }
+	    for (Future<?> future : futures) {
+		future.get();
+	    }
+	} finally {
+	    executor.shutdownNow();
+	}
+
+	Solution best = solver.getIncumbent().get();
+	if (best != null)
+	    solver.setSolution(best.clone());
+    }
+
+    /**
+     * @param k : index of the worker
+     * @return The engine run by worker k: local searches with increasing perturbation strengths.
+     */
+    protected SolverEngine createWorker(int k) {
+	return new LocalSearchSolver(2 + (k % 4), 1000 * (1 + k % 3));
+    }
+
+}
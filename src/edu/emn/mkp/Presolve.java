@@ -0,0 +1,425 @@
+/*
+	mkp-framework
+	Copyright (C) 2013 Fabien Lehuede / Damien Prot / Axel Grimault
+
+	This program is free software; you can redistribute it and/or modify
+	it under the terms of the GNU General Public License as published by
+	the Free Software Foundation; either version 2 of the License, or
+	(at your option) any later version.
+
+	This program is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+	GNU General Public License for more details.
+
+	You should have received a copy of the GNU General Public License along
+	with this program; if not, write to the Free Software Foundation, Inc.,
+	51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package edu.emn.mkp;
+
+import java.util.Arrays;
+
+/**
+ * Presolve of an instance: the items and the constraints that cannot change the optimal value
+ * are removed, and the remaining constraints are tightened. The steps are:
+ *  - the items that do not fit alone (a weight exceeds its capacity) and the items without profit
+ *    are fixed out of the knapsack, the items without weight are fixed in;
+ *  - the constraints that the free items cannot exceed, even all together, are removed
+ *    (if none remains, all the free items are fixed in);
+ *  - each constraint is divided by the gcd of its weights (the capacity is rounded down), and its
+ *    capacity is lowered to the largest sum of weights that does not exceed it (subset sum, only if
+ *    the computation fits in {@link #SUBSET_SUM_BUDGET});
+ *  - an item dominated by another one (not more profit, not less weight in any constraint) that
+ *    cannot be in the knapsack together with it is fixed out: in any solution, it can be replaced by
+ *    the dominating item (the pairs are compared until {@link #DOMINANCE_BUDGET} is reached).
+ * 
+ * Identical or dominated items that fit together are kept: merging them into one item would
+ * forbid the solutions that select only one of them.
+ * 
+ * As for {@link CoreProblem}, the reduced problem is an {@link Instance} on its own, and its
+ * solutions are mapped back to the whole problem by {@link #toSolution(Solution)}.
+ * 
+ * @author Fabien Lehuede / Damien Prot / Axel Grimault 2016
+ * 
+ */
+public class Presolve {
+
+    // ---------------------------------------------
+    // --------------- ATTRIBUTES ------------------
+    // ---------------------------------------------
+
+    /** Maximum number of words of the bitsets updated to tighten the capacities */
+    public static final long SUBSET_SUM_BUDGET = 1L << 28;
+
+    /** Maximum number of weights compared to find the dominated items */
+    public static final long DOMINANCE_BUDGET = 1L << 28;
+
+    /** Whole problem */
+    private final Instance m_instance;
+
+    /** Reduced problem on the free items and the constraints kept */
+    private final Instance m_reduced;
+
+    /** Index in the whole problem of each item of the reduced problem */
+    private final int[] m_items;
+
+    /** Index in the whole problem of each constraint of the reduced problem */
+    private final int[] m_constraints;
+
+    /** For each item of the whole problem: 1 if fixed in the knapsack, 0 if fixed out, -1 if free */
+    private final byte[] m_fixed;
+
+    /** Profit of the items fixed in the knapsack */
+    private final long m_fixedProfit;
+
+    /** Number of items fixed out because they do not fit alone, have no profit, or are dominated */
+    private int m_nbOversized = 0;
+    private int m_nbUseless = 0;
+    private int m_nbDominated = 0;
+
+    /** Number of capacities lowered */
+    private int m_nbTightened = 0;
+
+    // --------------------------------------------
+    // ------------ GETTERS AND SETTERS -----------
+    // --------------------------------------------
+
+    /**
+     * @return The whole problem.
+     */
+    public Instance getInstance() {
+	return m_instance;
+    }
+
+    /**
+     * @return The reduced problem.
+     */
+    public Instance getReduced() {
+	return m_reduced;
+    }
+
+    /**
+     * @return The index in the whole problem of each item of the reduced problem.
+     * @warning The array is shared, do not modify it.
+     */
+    public int[] getItems() {
+	return m_items;
+    }
+
+    /**
+     * @return The index in the whole problem of each constraint of the reduced problem.
+     * @warning The array is shared, do not modify it.
+     */
+    public int[] getConstraints() {
+	return m_constraints;
+    }
+
+    /**
+     * @param j : index of an item of the whole problem
+     * @return 1 if the item is fixed in the knapsack, 0 if it is fixed out of it, -1 if it is free.
+     */
+    public int getFixed(int j) {
+	return m_fixed[j];
+    }
+
+    /**
+     * @return The profit of the items fixed in the knapsack.
+     */
+    public long getFixedProfit() {
+	return m_fixedProfit;
+    }
+
+    // -------------------------------------
+    // ------------ CONSTRUCTOR ------------
+    // -------------------------------------
+
+    /**
+     * Presolves an instance.
+     * 
+     * @param instance : the whole problem (profits and weights non negative)
+     */
+    public Presolve(Instance instance) {
+	m_instance = instance;
+	int nbItems = instance.getNbItems();
+	int nbConstraints = instance.getNbConstraints();
+	int[] weights = instance.getWeightsByItem();
+	int[] capacities = instance.getCapacities();
+	m_fixed = new byte[nbItems];
+
+	// Items fixed alone
+	for (int j = 0; j < nbItems; j++) {
+	    int offset = j * nbConstraints;
+	    boolean fits = true;
+	    boolean weightless = true;
+	    for (int i = 0; i < nbConstraints; i++) {
+		fits &= weights[offset + i] <= capacities[i];
+		weightless &= weights[offset + i] == 0;
+	    }
+	    if (!fits) {
+		m_fixed[j] = 0;
+		m_nbOversized++;
+	    } else if (instance.profit(j) <= 0) {
+		m_fixed[j] = 0;
+		m_nbUseless++;
+	    } else {
+		m_fixed[j] = (byte) (weightless ? 1 : -1);
+	    }
+	}
+
+	// Redundant constraints (the items fixed in have no weight)
+	boolean[] kept = new boolean[nbConstraints];
+	int nbKept = 0;
+	for (int i = 0; i < nbConstraints; i++) {
+	    long sum = 0;
+	    for (int j = 0; j < nbItems; j++) {
+		if (m_fixed[j] < 0)
+		    sum += weights[j * nbConstraints + i];
+	    }
+	    kept[i] = sum > capacities[i];
+	    if (kept[i])
+		nbKept++;
+	}
+	m_constraints = new int[nbKept];
+	for (int i = 0, k = 0; i < nbConstraints; i++) {
+	    if (kept[i])
+		m_constraints[k++] = i;
+	}
+	if (nbKept == 0) {
+	    for (int j = 0; j < nbItems; j++) {
+		if (m_fixed[j] < 0)
+		    m_fixed[j] = 1;
+	    }
+	}
+
+	// Free items
+	int nbFree = 0;
+	for (int j = 0; j < nbItems; j++) {
+	    if (m_fixed[j] < 0)
+		nbFree++;
+	}
+	int[] free = new int[nbFree];
+	for (int j = 0, k = 0; j < nbItems; j++) {
+	    if (m_fixed[j] < 0)
+		free[k++] = j;
+	}
+
+	// Weights of the free items in the constraints kept, divided by the gcd of each constraint
+	int[] reducedWeights = new int[nbFree * nbKept];
+	int[] reducedCapacity = new int[nbKept];
+	for (int k = 0; k < nbKept; k++) {
+	    int i = m_constraints[k];
+	    int gcd = 0;
+	    for (int j : free) {
+		gcd = gcd(gcd, weights[j * nbConstraints + i]);
+	    }
+	    gcd = Math.max(1, gcd);
+	    for (int f = 0; f < nbFree; f++) {
+		reducedWeights[f * nbKept + k] = weights[free[f] * nbConstraints + i] / gcd;
+	    }
+	    reducedCapacity[k] = capacities[i] / gcd;
+	}
+
+	// Capacities lowered to the largest sum of weights they allow
+	for (int k = 0; k < nbKept; k++) {
+	    int capacity = reducedCapacity[k];
+	    if ((long) nbFree * (capacity / 64 + 1) > SUBSET_SUM_BUDGET)
+		continue;
+	    int largest = largestSubsetSum(reducedWeights, k, nbKept, nbFree, capacity);
+	    if (largest < capacity) {
+		reducedCapacity[k] = largest;
+		m_nbTightened++;
+	    }
+	}
+
+	// Dominated items that cannot be in the knapsack with their dominating item
+	if (nbKept > 0) {
+	    boolean[] dominated = dominatedItems(instance, free, reducedWeights, reducedCapacity);
+	    for (int f = 0; f < nbFree; f++) {
+		if (dominated[f]) {
+		    m_fixed[free[f]] = 0;
+		    m_nbDominated++;
+		}
+	    }
+	}
+
+	// Reduced instance
+	long fixedProfit = 0;
+	int nbReduced = 0;
+	for (int j = 0; j < nbItems; j++) {
+	    if (m_fixed[j] == 1)
+		fixedProfit += instance.profit(j);
+	    else if (m_fixed[j] < 0)
+		nbReduced++;
+	}
+	m_fixedProfit = fixedProfit;
+	m_items = new int[nbReduced];
+	int[] profit = new int[nbReduced];
+	int[] itemWeights = new int[nbReduced * nbKept];
+	for (int f = 0, k = 0; f < nbFree; f++) {
+	    int j = free[f];
+	    if (m_fixed[j] >= 0)
+		continue;
+	    m_items[k] = j;
+	    profit[k] = instance.profit(j);
+	    System.arraycopy(reducedWeights, f * nbKept, itemWeights, k * nbKept, nbKept);
+	    k++;
+	}
+	m_reduced = new Instance(instance.getFileName() + " (presolved)", profit, reducedCapacity, itemWeights);
+    }
+
+    // -------------------------------------
+    // -------------- METHODS --------------
+    // -------------------------------------
+
+    /**
+     * @param reduced : a solution of the reduced problem
+     * @return The solution of the whole problem: the items fixed in the knapsack and the items of <code>reduced</code>.
+     */
+    public Solution toSolution(Solution reduced) {
+	Solution sol = new Solution(m_instance);
+	for (int j = 0; j < m_fixed.length; j++) {
+	    if (m_fixed[j] == 1)
+		sol.add(j);
+	}
+	for (int k = reduced.nextSelected(0); k >= 0; k = reduced.nextSelected(k + 1)) {
+	    sol.add(m_items[k]);
+	}
+	return sol;
+    }
+
+    /**
+     * @param sol : a solution of the whole problem
+     * @return The solution of the reduced problem made of the free items of <code>sol</code>
+     *         (feasible if <code>sol</code> is feasible).
+     */
+    public Solution toReduced(Solution sol) {
+	Solution reduced = new Solution(m_reduced);
+	for (int k = 0; k < m_items.length; k++) {
+	    if (sol.selected(m_items[k]))
+		reduced.add(k);
+	}
+	return reduced;
+    }
+
+    /**
+     * @return A summary of the reductions.
+     */
+    @Override
+    public String toString() {
+	return "Presolve: " + m_reduced.getNbItems() + " items of " + m_instance.getNbItems() + " ("
+		+ m_nbOversized + " too large, " + m_nbUseless + " without profit, " + m_nbDominated
+		+ " dominated), " + m_reduced.getNbConstraints() + " constraints of "
+		+ m_instance.getNbConstraints() + ", " + m_nbTightened + " capacities lowered.";
+    }
+
+    /**
+     * @param weights : weights stored item by item
+     * @param i : index of the constraint
+     * @param nbConstraints : number of constraints
+     * @param nbItems : number of items
+     * @param capacity : capacity of the constraint
+     * @return The largest sum of weights of constraint i that does not exceed the capacity.
+     */
+    private static int largestSubsetSum(int[] weights, int i, int nbConstraints, int nbItems, int capacity) {
+	// Bit s of the bitset is 1 if a subset of the items has the weight s
+	long[] sums = new long[(capacity >>> 6) + 1];
+	sums[0] = 1;
+	int reached = 0;
+	int last = capacity >>> 6;
+	long capacityBit = 1L << capacity;
+	for (int j = 0; (j < nbItems) && ((sums[last] & capacityBit) == 0); j++) {
+	    int w = weights[j * nbConstraints + i];
+	    if (w == 0)
+		continue;
+	    // sums |= sums << w, from the high words to the low ones
+	    int shift = w >>> 6;
+	    int bits = w & 63;
+	    int top = Math.min(sums.length - 1, (Math.min(capacity, reached + w)) >>> 6);
+	    for (int k = top; k >= shift; k--) {
+		long word = sums[k - shift] << bits;
+		if ((bits != 0) && (k - shift - 1 >= 0))
+		    word |= sums[k - shift - 1] >>> (64 - bits);
+		sums[k] |= word;
+	    }
+	    reached = Math.min(capacity, reached + w);
+	}
+	// Bits beyond the capacity are ignored
+	for (int s = capacity; s >= 0; s--) {
+	    if ((sums[s >>> 6] & (1L << s)) != 0)
+		return s;
+	}
+	return 0;
+    }
+
+    /**
+     * Item f is dominated by item g if the profit of g is at least that of f and its weights are at
+     * most those of f (ties broken by index), and f is fixed out if in addition f and g exceed a
+     * capacity together.
+     * 
+     * @param instance : the whole problem (profits)
+     * @param free : index in the whole problem of each free item
+     * @param weights : weights of the free items, stored item by item
+     * @param capacities : capacities of the constraints
+     * @return For each free item, <code>true</code> if it is dominated.
+     */
+    private static boolean[] dominatedItems(Instance instance, int[] free, int[] weights, int[] capacities) {
+	int nbFree = free.length;
+	int nbConstraints = capacities.length;
+	boolean[] dominated = new boolean[nbFree];
+	// Sorted by decreasing profit: the items dominating an item are before it or have the same profit
+	Integer[] sorted = new Integer[nbFree];
+	for (int f = 0; f < nbFree; f++) {
+	    sorted[f] = f;
+	}
+	Arrays.sort(sorted, (a, b) -> Integer.compare(instance.profit(free[b]), instance.profit(free[a])));
+
+	long budget = DOMINANCE_BUDGET;
+	for (int p = 0; (p < nbFree) && (budget > 0); p++) {
+	    int f = sorted[p];
+	    int profit = instance.profit(free[f]);
+	    int offsetF = f * nbConstraints;
+	    for (int q = 0; (q < nbFree) && (budget > 0); q++) {
+		int g = sorted[q];
+		if (instance.profit(free[g]) < profit)
+		    break;
+		if (g == f)
+		    continue;
+		budget -= nbConstraints;
+		int offsetG = g * nbConstraints;
+		boolean dominates = true;
+		boolean equal = instance.profit(free[g]) == profit;
+		boolean together = true;
+		for (int i = 0; (i < nbConstraints) && dominates; i++) {
+		    int wf = weights[offsetF + i];
+		    int wg = weights[offsetG + i];
+		    dominates = wg <= wf;
+		    equal &= wg == wf;
+		    together &= (long) wf + wg <= capacities[i];
+		}
+		// Identical items: only the one with the largest index is dominated
+		if (dominates && equal && (g > f))
+		    dominates = false;
+		if (dominates && !together) {
+		    dominated[f] = true;
+		    break;
+		}
+	    }
+	}
+	return dominated;
+    }
+
+    /**
+     * @return The greatest common divisor of a and b (non negative).
+     */
+    private static int gcd(int a, int b) {
+	while (b != 0) {
+	    int t = a % b;
+	    a = b;
+	    b = t;
+	}
+	return a;
+    }
+
+}
@@ -0,0 +1,101 @@
+/*
+	mkp-framework
+	Copyright (C) 2013 Fabien Lehuede / Damien Prot / Axel Grimault
+
+	This program is free software; you can redistribute it and/or modify
+	it under the terms of the GNU General Public License as published by
+	the Free Software Foundation; either version 2 of the License, or
+	(at your option) any later version.
+
+	This program is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+	GNU General Public License for more details.
+
+	You should have received a copy of the GNU General Public License along
+	with this program; if not, write to the Free Software Foundation, Inc.,
+	51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package edu.emn.mkp;
+
+/**
+ * Engine that runs another engine on the presolved instance ({@link Presolve}), selected by the
+ * option <code>-presolve</code>: the items and the constraints that cannot change the optimal
+ * value are removed before the search.
+ * 
+ * As for {@link CoreSolver}, each improvement found on the reduced problem is mapped back to the
+ * whole problem and offered to the incumbent of the solver.
+ * 
+ * @author Fabien Lehuede / Damien Prot / Axel Grimault 2016
+ * 
+ */
+public class PresolveSolver implements SolverEngine {
+
+    // ---------------------------------------------
+    // --------------- ATTRIBUTES ------------------
+    // ---------------------------------------------
+
+    /** Engine run on the reduced problem */
+    private final SolverEngine m_engine;
+
+    // -------------------------------------
+    // ------------ CONSTRUCTOR ------------
+    // -------------------------------------
+
+    /**
+     * @param engine : engine run on the reduced problem
+     */
+    public PresolveSolver(SolverEngine engine) {
+	m_engine = engine;
+    }
+
+    // -------------------------------------
+    // -------------- METHODS --------------
+    // -------------------------------------
+
+    @Override
+    public void solve(MKPSolver solver) throws Exception {
+	final Presolve presolve = new Presolve(solver.getInstance());
+	final Incumbent incumbent = solver.getIncumbent();
+	Instance reducedInstance = presolve.getReduced();
+	System.err.println(presolve);
+
+	Solution sol;
+	if (reducedInstance.getNbItems() == 0) {
+	    // All the items are fixed
+	    sol = presolve.toSolution(new Solution(reducedInstance));
+	} else {
+	    MKPSolver reduced = new MKPSolver();
+	    reduced.setInstance(reducedInstance);
+	    // The initial solution (for example from the cache) stays feasible on the reduced problem
+	    reduced.setSolution(presolve.toReduced(solver.getSolution()));
+	    reduced.setTime(solver.getTime());
+	    reduced.setDeadline(solver.getDeadline());
+	    reduced.setNbThreads(solver.getNbThreads());
+	    reduced.setSeed(solver.getSeed());
+	    reduced.setMetrics(solver.getMetrics());
+	    reduced.setEngine(m_engine);
+	    // Improvements on the reduced problem are published on the whole problem
+	    reduced.setIncumbent(new Incumbent() {
+		@Override
+		public boolean offer(Solution s) {
+		    if (!super.offer(s))
+			return false;
+		    incumbent.offer(presolve.toSolution(s));
+		    return true;
+		}
+	    });
+
+	    m_engine.solve(reduced);
+	    sol = presolve.toSolution(reduced.getSolution());
+	}
+
+	incumbent.offer(sol);
+	Solution best = incumbent.get();
+	if ((best != null) && (!sol.isFeasible() || (best.getObjective() > sol.getObjective())))
+	    sol = best.clone();
+	solver.setSolution(sol);
+    }
+
+}
@@ -0,0 +1,251 @@
+/*
+	mkp-framework
+	Copyright (C) 2013 Fabien Lehuede / Damien Prot / Axel Grimault
+
+	This program is free software; you can redistribute it and/or modify
+	it under the terms of the GNU General Public License as published by
+	the Free Software Foundation; either version 2 of the License, or
+	(at your option) any later version.
+
+	This program is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+	GNU General Public License for more details.
+
+	You should have received a copy of the GNU General Public License along
+	with this program; if not, write to the Free Software Foundation, Inc.,
+	51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package edu.emn.mkp;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Metrics of a search (option <code>-metrics (file)</code>), shared by the engines of a solver
+ * ({@link MKPSolver#getMetrics()}):
+ *  - counters: moves evaluated, moves accepted, improvements of the incumbent, restarts;
+ *  - events with their time: start and end of the search, improvements (objective value), restarts.
+ * 
+ * The events are written in a ring buffer allocated once: recording never allocates and, if there
+ * are more events than the capacity, the oldest ones are overwritten. The counters and the events
+ * can be recorded by several threads. The engines should add their counters by batches (for example
+ * once per iteration) rather than once per move.
+ * 
+ * {@link #write(String)} dumps the counters, the events and the time-to-target curve (time at which
+ * the incumbent reaches a ratio of the final objective value) in CSV, or in JSON if the name of the
+ * file ends with <code>.json</code>. When the metrics are disabled ({@link #DISABLED}), recording does nothing.
+ * 
+ * @author Fabien Lehuede / Damien Prot / Axel Grimault 2016
+ * 
+ */
+public class SearchMetrics {
+
+    // ---------------------------------------------
+    // --------------- ATTRIBUTES ------------------
+    // ---------------------------------------------
+
+    /** Counters */
+    public static final int EVALUATED = 0, ACCEPTED = 1, IMPROVEMENTS = 2, RESTARTS = 3;
+
+    /** Names of the counters */
+    private static final String[] COUNTERS = { "movesEvaluated", "movesAccepted", "improvements", "restarts" };
+
+    /** Kinds of events */
+    public static final int START = 0, END = 1, IMPROVEMENT = 2, RESTART = 3;
+
+    /** Names of the events */
+    private static final String[] EVENTS = { "start", "end", "improvement", "restart" };
+
+    /** Ratios of the final objective value of the time-to-target curve */
+    private static final double[] TARGETS = { 0.9, 0.95, 0.99, 0.995, 0.999, 1.0 };
+
+    /** Default number of events kept */
+    public static final int DEFAULT_CAPACITY = 1 << 16;
+
+    /** Metrics that record nothing */
+    public static final SearchMetrics DISABLED = new SearchMetrics(0);
+
+    /** <code>false</code> if the metrics record nothing */
+    private final boolean m_enabled;
+
+    /** Values of the counters */
+    private final AtomicLongArray m_counters = new AtomicLongArray(COUNTERS.length);
+
+    /** Ring buffer of the events: time (ns since the creation of the metrics), value and kind */
+    private final long[] m_times;
+    private final long[] m_values;
+    private final byte[] m_kinds;
+
+    /** Capacity of the ring buffer minus 1 (the capacity is a power of 2) */
+    private final int m_mask;
+
+    /** Number of events recorded since the creation of the metrics */
+    private final AtomicLong m_nbEvents = new AtomicLong();
+
+    /** Creation time (ns) */
+    private final long m_start = System.nanoTime();
+
+    // -------------------------------------
+    // ------------ CONSTRUCTOR ------------
+    // -------------------------------------
+
+    /**
+     * @param capacity : number of events kept (rounded up to a power of 2), 0 to disable the metrics
+     */
+    public SearchMetrics(int capacity) {
+	m_enabled = capacity > 0;
+	int size = m_enabled ? Integer.highestOneBit(Math.max(1, capacity - 1)) << 1 : 1;
+	m_times = new long[size];
+	m_values = new long[size];
+	m_kinds = new byte[size];
+	m_mask = size - 1;
+    }
+
+    // -------------------------------------
+    // -------------- METHODS --------------
+    // -------------------------------------
+
+    /**
+     * @return <code>true</code> if the metrics record the counters and the events.
+     */
+    public boolean isEnabled() {
+	return m_enabled;
+    }
+
+    /**
+     * @param counter : {@link #EVALUATED}, {@link #ACCEPTED}, {@link #IMPROVEMENTS} or {@link #RESTARTS}
+     * @return The value of the counter.
+     */
+    public long get(int counter) {
+	return m_counters.get(counter);
+    }
+
+    /**
+     * Adds a value to a counter.
+     * 
+     * @param counter : {@link #EVALUATED}, {@link #ACCEPTED}, {@link #IMPROVEMENTS} or {@link #RESTARTS}
+     * @param n : value added
+     */
+    public void add(int counter, long n) {
+	if (m_enabled)
+	    m_counters.addAndGet(counter, n);
+    }
+
+    /**
+     * Records an event at the current time.
+     * 
+     * @param kind : {@link #START}, {@link #END}, {@link #IMPROVEMENT} or {@link #RESTART}
+     * @param value : value of the event (objective value)
+     */
+    public void event(int kind, long value) {
+	if (!m_enabled)
+	    return;
+	int slot = (int) (m_nbEvents.getAndIncrement() & m_mask);
+	m_times[slot] = System.nanoTime() - m_start;
+	m_values[slot] = value;
+	m_kinds[slot] = (byte) kind;
+    }
+
+    /**
+     * Writes the metrics in a file, in JSON if its name ends with <code>.json</code>, in CSV otherwise.
+     * 
+     * @param fileName : name of the file
+     * @throws IOException Returns an error if the file cannot be written.
+     */
+    public void write(String fileName) throws IOException {
+	try (PrintStream out = new PrintStream(new FileOutputStream(fileName))) {
+	    if (fileName.endsWith(".json"))
+		writeJson(out);
+	    else
+		writeCsv(out);
+	}
+    }
+
+    /**
+     * CSV: the counters, then the events, then the time-to-target curve, separated by blank lines.
+     */
+    private void writeCsv(PrintStream out) {
+	out.println("counter;value");
+	for (int c = 0; c < COUNTERS.length; c++) {
+	    out.println(COUNTERS[c] + ";" + m_counters.get(c));
+	}
+	out.println();
+	out.println("event;time;value");
+	long last = m_nbEvents.get();
+	for (long e = Math.max(0, last - m_mask - 1); e < last; e++) {
+	    int slot = (int) (e & m_mask);
+	    out.printf(Locale.ROOT, "%s;%.3f;%d%n", EVENTS[m_kinds[slot]], m_times[slot] / 1e6, m_values[slot]);
+	}
+	out.println();
+	out.println("target;value;time");
+	for (long[] point : timeToTarget()) {
+	    out.printf(Locale.ROOT, "%s;%d;%s%n", TARGETS[(int) point[0]], point[1],
+		    (point[2] < 0) ? "" : String.format(Locale.ROOT, "%.3f", point[2] / 1e6));
+	}
+    }
+
+    /**
+     * JSON: an object with the counters, the events and the time-to-target curve.
+     */
+    private void writeJson(PrintStream out) {
+	out.println("{");
+	out.println("  \"counters\": {");
+	for (int c = 0; c < COUNTERS.length; c++) {
+	    out.printf("    \"%s\": %d%s%n", COUNTERS[c], m_counters.get(c), (c + 1 < COUNTERS.length) ? "," : "");
+	}
+	out.println("  },");
+	out.println("  \"events\": [");
+	long last = m_nbEvents.get();
+	for (long e = Math.max(0, last - m_mask - 1); e < last; e++) {
+	    int slot = (int) (e & m_mask);
+	    out.printf(Locale.ROOT, "    {\"event\": \"%s\", \"time\": %.3f, \"value\": %d}%s%n", EVENTS[m_kinds[slot]],
+		    m_times[slot] / 1e6, m_values[slot], (e + 1 < last) ? "," : "");
+	}
+	out.println("  ],");
+	out.println("  \"timeToTarget\": [");
+	long[][] points = timeToTarget();
+	for (int p = 0; p < points.length; p++) {
+	    out.printf(Locale.ROOT, "    {\"target\": %s, \"value\": %d, \"time\": %s}%s%n", TARGETS[(int) points[p][0]],
+		    points[p][1], (points[p][2] < 0) ? "null" : String.format(Locale.ROOT, "%.3f", points[p][2] / 1e6),
+		    (p + 1 < points.length) ? "," : "");
+	}
+	out.println("  ]");
+	out.println("}");
+    }
+
+    /**
+     * @return For each target: its index in {@link #TARGETS}, the objective value to reach and the time (ns)
+     *         of the first improvement reaching it (-1 if it is not in the events kept).
+     */
+    private long[][] timeToTarget() {
+	long last = m_nbEvents.get();
+	long first = Math.max(0, last - m_mask - 1);
+	long best = Long.MIN_VALUE;
+	for (long e = first; e < last; e++) {
+	    int slot = (int) (e & m_mask);
+	    if (m_kinds[slot] == IMPROVEMENT)
+		best = Math.max(best, m_values[slot]);
+	}
+	if (best == Long.MIN_VALUE)
+	    return new long[0][];
+	long[][] points = new long[TARGETS.length][];
+	for (int t = 0; t < TARGETS.length; t++) {
+	    long target = (long) Math.ceil(TARGETS[t] * best);
+	    long time = -1;
+	    for (long e = first; (e < last) && (time < 0); e++) {
+		int slot = (int) (e & m_mask);
+		if ((m_kinds[slot] == IMPROVEMENT) && (m_values[slot] >= target))
+		    time = m_times[slot];
+	    }
+	    points[t] = new long[] { t, target, time };
+	}
+	return points;
+    }
+
+}
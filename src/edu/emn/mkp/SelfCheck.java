@@ -0,0 +1,476 @@
+/*
+	mkp-framework
+	Copyright (C) 2013 Fabien Lehuede / Damien Prot / Axel Grimault
+
+	This program is free software; you can redistribute it and/or modify
+	it under the terms of the GNU General Public License as published by
+	the Free Software Foundation; either version 2 of the License, or
+	(at your option) any later version.
+
+	This program is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+	GNU General Public License for more details.
+
+	You should have received a copy of the GNU General Public License along
+	with this program; if not, write to the Free Software Foundation, Inc.,
+	51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package edu.emn.mkp;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Checks properties of the framework that the solvers do not test by themselves.
+ * 
+ * **command**: java edu.emn.mkp.SelfCheck [directory]
+ * 
+ * **Program output**: one line per check and per <code>.dat</code> file of the directory
+ * (default <code>instances</code>), or per instance built by the check: name;check;OK or
+ * name;check;FAILED followed by the reason. The exit code is 1 if a check failed.
+ * 
+ * The checks are the following:
+ *  - mapped: the instance is written in the binary format and solved from the mapped file by the
+ *    greedy solver, the weights must not be copied in memory;
+ *  - fixing: on a small instance where the reduced cost of an item equals the gap between the bound
+ *    and a lower bound, {@link LPRelaxation#reducedCostFixing(long)} must fix exactly the items that
+ *    take the same value in all the better solutions, enumerated for each lower bound;
+ *  - dp: the dynamic program must prove the optimum of {@link #DP_INSTANCE} itself (not through
+ *    its fallback engine), and the optimum of {@link #NB_RANDOM} random instances of at most
+ *    {@link #MAX_RANDOM_ITEMS} items, enumerated by brute force;
+ *  - presolve: on the same random instances, the optimal solution of the presolved instance,
+ *    enumerated by brute force and mapped back by {@link Presolve#toSolution(Solution)}, must be
+ *    feasible and optimal for the whole instance;
+ *  - online: {@link #NB_CHANGES} random changes (items added and removed, profits and capacities
+ *    changed) are made by an {@link OnlineSolver} on the text and on the mapped binary instance.
+ *    After each change, the value, weights and feasibility of the solution followed must be those
+ *    computed again by {@link Solution#validate()} and {@link Solution#evaluate()}, and the data
+ *    updated in place by the instance must be that of the same instance built again.
+ * 
+ * @author Fabien Lehuede / Damien Prot / Axel Grimault 2016
+ * 
+ */
+public class SelfCheck {
+
+    /** Instance of the directory solved to optimality by the dynamic program */
+    public static final String DP_INSTANCE = "OR5x100-0.25_1.dat";
+
+    /** Optimal value of {@link #DP_INSTANCE} */
+    public static final long DP_OPTIMUM = 24381;
+
+    /** Number of random instances of the brute force checks */
+    public static final int NB_RANDOM = 200;
+
+    /** Largest number of items of the random instances */
+    public static final int MAX_RANDOM_ITEMS = 16;
+
+    /** Number of changes of the online check */
+    public static final int NB_CHANGES = 300;
+
+    /** Number of changes between two updates of the online solution */
+    public static final int UPDATE_INTERVAL = 25;
+
+    /** Number of failed checks */
+    private static int s_failures = 0;
+
+    /**
+     * Main method.
+     * 
+     * @param arg program parameters.
+     */
+    public static void main(String[] arg) {
+	String directory = (arg.length > 0) ? arg[0] : "instances";
+
+	File[] files = new File(directory).listFiles((dir, name) -> name.endsWith(".dat"));
+	if (files == null) {
+	    System.err.println("Error: " + directory + " is not a directory.");
+	    System.exit(1);
+	}
+	Arrays.sort(files);
+
+	for (File file : files) {
+	    try {
+		checkMapped(file);
+		checkOnline(file);
+		if (file.getName().equals(DP_INSTANCE))
+		    checkDynamicProgramming(file);
+	    } catch (Exception e) {
+		report(file.getName(), "exception", e.toString());
+	    }
+	}
+	checkFixing();
+	try {
+	    checkRandomDynamicProgramming();
+	    checkRandomPresolve();
+	} catch (Exception e) {
+	    report("random", "exception", e.toString());
+	}
+	System.exit((s_failures == 0) ? 0 : 1);
+    }
+
+    /**
+     * Solve the binary version of the instance with the greedy solver and check that the weights
+     * are read from the mapped file.
+     * 
+     * @param file : instance file in the text format
+     */
+    private static void checkMapped(File file) throws Exception {
+	Instance text = new Instance(file.getPath());
+	File binary = File.createTempFile("selfcheck", ".mkpb");
+	binary.deleteOnExit();
+	text.writeBinary(binary.getPath());
+
+	Instance prob = new Instance(binary.getPath());
+	MKPSolver mkp = new MKPSolver();
+	mkp.setEngine(new GreedySolver());
+	mkp.setNbThreads(1);
+	mkp.setInstance(prob);
+	mkp.setSolution(new Solution(prob));
+	mkp.solve(1);
+
+	Solution solution = mkp.getSolution();
+	if (!solution.validate())
+	    report(file.getName(), "mapped", "infeasible solution " + solution.getError().trim());
+	else if (prob.hasHeapWeights())
+	    report(file.getName(), "mapped", "weights copied in memory");
+	else
+	    report(file.getName(), "mapped", null);
+    }
+
+    /**
+     * Make random changes to the text and to the binary version of the instance through an
+     * {@link OnlineSolver}, and check the solution and the instance after each change.
+     * 
+     * @param file : instance file in the text format
+     */
+    private static void checkOnline(File file) throws Exception {
+	Instance text = new Instance(file.getPath());
+	File binary = File.createTempFile("selfcheck", ".mkpb");
+	binary.deleteOnExit();
+	text.writeBinary(binary.getPath());
+
+	String failure = checkChanges(text, new Random(0));
+	if (failure == null)
+	    failure = checkChanges(new Instance(binary.getPath()), new Random(0));
+	report(file.getName(), "online", failure);
+    }
+
+    /**
+     * @param prob : instance changed
+     * @param random : random generator of the changes
+     * @return The reason of the failure, <code>null</code> if the check passed.
+     */
+    private static String checkChanges(Instance prob, Random random) throws Exception {
+	int nbConstraints = prob.getNbConstraints();
+	// Built before the changes, so that they are updated in place
+	prob.getWeightsByConstraint();
+	prob.getBlockFingerprints();
+	prob.getConstraintOrder();
+
+	Solution initial = new Solution(prob);
+	SurrogateGreedySolver.repair(initial, SurrogateGreedySolver.efficiencyOrder(prob,
+		SurrogateGreedySolver.capacityMultipliers(prob)));
+	OnlineSolver online = new OnlineSolver(prob, initial);
+	for (int k = 1; k <= NB_CHANGES; k++) {
+	    int nbItems = prob.getNbItems();
+	    int change = random.nextInt(4);
+	    String name;
+	    if ((change == 0) || (nbItems <= 1)) {
+		int[] weights = new int[nbConstraints];
+		for (int i = 0; i < nbConstraints; i++) {
+		    weights[i] = random.nextInt(prob.capacity(i) / 10 + 1);
+		}
+		online.addItem(1 + random.nextInt(1000), weights);
+		name = "addItem";
+	    } else if (change == 1) {
+		online.removeItem(random.nextInt(nbItems));
+		name = "removeItem";
+	    } else if (change == 2) {
+		online.setProfit(random.nextInt(nbItems), 1 + random.nextInt(1000));
+		name = "setProfit";
+	    } else {
+		int i = random.nextInt(nbConstraints);
+		online.setCapacity(i, Math.max(0, prob.capacity(i) + prob.capacity(i) / 10 - random.nextInt(prob.capacity(i) / 5 + 1)));
+		name = "setCapacity";
+	    }
+	    if (k % UPDATE_INTERVAL == 0) {
+		online.update(5);
+		name += " and update";
+	    }
+
+	    String failure = checkSolution(online.getSolution(), k % UPDATE_INTERVAL == 0);
+	    if (failure == null)
+		failure = checkInstance(prob);
+	    if (failure != null)
+		return prob.getFileName() + ": change " + k + " (" + name + "): " + failure;
+	}
+	return null;
+    }
+
+    /**
+     * @param sol : solution followed by the online solver
+     * @param updated : <code>true</code> if the solution must be feasible
+     * @return The reason of the failure, <code>null</code> if the solution is consistent.
+     */
+    private static String checkSolution(Solution sol, boolean updated) throws Exception {
+	Solution computed = sol.clone();
+	boolean feasible = computed.validate();
+	computed.evaluate();
+	if (computed.getObjective() != sol.getObjective())
+	    return "objective " + sol.getObjective() + " instead of " + computed.getObjective();
+	for (int i = 0; i < sol.getInstance().getNbConstraints(); i++) {
+	    if (computed.getWeight(i) != sol.getWeight(i))
+		return "weight " + sol.getWeight(i) + " instead of " + computed.getWeight(i) + " in constraint " + i;
+	}
+	if (sol.isFeasible() != feasible)
+	    return "feasibility " + sol.isFeasible() + " instead of " + feasible;
+	if (updated && !feasible)
+	    return "unfeasible solution after the update";
+	return null;
+    }
+
+    /**
+     * @param prob : instance changed in place
+     * @return The reason of the failure, <code>null</code> if the data of the instance is that of the
+     *         same instance built again.
+     */
+    private static String checkInstance(Instance prob) {
+	int nbItems = prob.getNbItems();
+	int nbConstraints = prob.getNbConstraints();
+	Instance built = new Instance(prob.getFileName(), Arrays.copyOf(prob.getProfits(), nbItems),
+		prob.getCapacities().clone(), Arrays.copyOf(prob.getWeightsByItem(), nbItems * nbConstraints));
+	int[] weights = prob.getWeightsByConstraint();
+	int stride = prob.getConstraintStride();
+	for (int i = 0; i < nbConstraints; i++) {
+	    for (int j = 0; j < nbItems; j++) {
+		if (weights[i * stride + j] != built.weight(j, i))
+		    return "weight of item " + j + " in constraint " + i + " not updated";
+	    }
+	}
+	if (!Arrays.equals(prob.getBlockFingerprints(), built.getBlockFingerprints()))
+	    return "block fingerprints not updated";
+	if (prob.getFingerprint() != built.getFingerprint())
+	    return "fingerprint not updated";
+	if (!Arrays.equals(prob.getConstraintOrder(), built.getConstraintOrder()))
+	    return "constraint order not updated";
+	return null;
+    }
+
+    /**
+     * Check the reduced cost fixing when it is tight: max 7 x0 + 5 x1 + 3 x2 s.t. 6 x0 + 6 x1 + 5 x2 <= 11.
+     * The relaxation takes item 0 and 5/6 of item 1: its bound is 67/6, the dual value 5/6, the reduced
+     * cost of item 2 is -7/6, so the bound with item 2 is exactly 10. For the lower bound 10, item 2 is in
+     * no better solution and must be fixed to 0; for the lower bound 9, it is in the better solution
+     * x0 + x2 = 10 and must not be fixed.
+     */
+    private static void checkFixing() {
+	Instance prob = new Instance("tight", new int[] { 7, 5, 3 }, new int[] { 11 }, new int[] { 6, 6, 5 });
+	LPRelaxation relaxation = new LPRelaxation(prob);
+	int nbItems = prob.getNbItems();
+	int nbConstraints = prob.getNbConstraints();
+
+	// Enumeration of the solutions
+	long[] objective = new long[1 << nbItems];
+	boolean[] feasible = new boolean[1 << nbItems];
+	long optimum = 0;
+	for (int set = 0; set < (1 << nbItems); set++) {
+	    feasible[set] = true;
+	    for (int i = 0; i < nbConstraints; i++) {
+		long weight = 0;
+		for (int j = 0; j < nbItems; j++) {
+		    if ((set & (1 << j)) != 0)
+			weight += prob.weight(j, i);
+		}
+		feasible[set] &= (weight <= prob.capacity(i));
+	    }
+	    for (int j = 0; j < nbItems; j++) {
+		if ((set & (1 << j)) != 0)
+		    objective[set] += prob.profit(j);
+	    }
+	    if (feasible[set])
+		optimum = Math.max(optimum, objective[set]);
+	}
+
+	String failure = null;
+	for (long lowerBound = 0; (lowerBound < optimum) && (failure == null); lowerBound++) {
+	    byte[] fixed = relaxation.reducedCostFixing(lowerBound);
+	    for (int j = 0; j < nbItems; j++) {
+		// Value of item j in all the solutions better than the lower bound, -1 if it changes
+		int value = -2;
+		for (int set = 0; set < (1 << nbItems); set++) {
+		    if (!feasible[set] || (objective[set] <= lowerBound))
+			continue;
+		    int x = ((set & (1 << j)) != 0) ? 1 : 0;
+		    value = ((value == -2) || (value == x)) ? x : -1;
+		}
+		if ((fixed[j] >= 0) && (fixed[j] != value))
+		    failure = "item " + j + " fixed to " + fixed[j] + " for the lower bound " + lowerBound;
+	    }
+	}
+	if ((failure == null) && (relaxation.reducedCostFixing(10)[2] != 0))
+	    failure = "item 2 not fixed to 0 for the lower bound 10";
+	if ((failure == null) && (relaxation.reducedCostFixing(9)[2] != -1))
+	    failure = "item 2 fixed for the lower bound 9";
+	report(prob.getFileName(), "fixing", failure);
+    }
+
+    /**
+     * Solve {@link #DP_INSTANCE} with the dynamic program, which must prove the optimum
+     * {@link #DP_OPTIMUM} before the time limit and within its memory budget.
+     * 
+     * @param file : instance file
+     */
+    private static void checkDynamicProgramming(File file) throws Exception {
+	Instance prob = new Instance(file.getPath());
+	DynamicProgrammingSolver dp = new DynamicProgrammingSolver();
+	Solution solution = solveWith(prob, dp, 30);
+
+	if (!dp.isOptimal())
+	    report(file.getName(), "dp", "optimality not proven by the dynamic program");
+	else if (!solution.validate())
+	    report(file.getName(), "dp", "infeasible solution " + solution.getError().trim());
+	else if (solution.getObjective() != DP_OPTIMUM)
+	    report(file.getName(), "dp", "objective " + solution.getObjective() + " instead of " + DP_OPTIMUM);
+	else
+	    report(file.getName(), "dp", null);
+    }
+
+    /**
+     * Solve random instances with the dynamic program and compare its value with the optimum
+     * enumerated by brute force.
+     */
+    private static void checkRandomDynamicProgramming() throws Exception {
+	Random random = new Random(0);
+	String failure = null;
+	for (int k = 0; (k < NB_RANDOM) && (failure == null); k++) {
+	    Instance prob = randomInstance("random" + k, random);
+	    DynamicProgrammingSolver dp = new DynamicProgrammingSolver();
+	    Solution solution = solveWith(prob, dp, 1);
+	    long optimum = bruteForce(prob).getObjective();
+	    if (!dp.isOptimal())
+		failure = prob.getFileName() + ": optimality not proven";
+	    else if (!solution.validate())
+		failure = prob.getFileName() + ": infeasible solution";
+	    else if (solution.getObjective() != optimum)
+		failure = prob.getFileName() + ": objective " + solution.getObjective() + " instead of " + optimum;
+	}
+	report("random", "dp", failure);
+    }
+
+    /**
+     * Presolve random instances and compare the optimum of the reduced instance, mapped back to the
+     * whole instance, with the optimum of the whole instance, both enumerated by brute force.
+     */
+    private static void checkRandomPresolve() throws Exception {
+	Random random = new Random(0);
+	String failure = null;
+	for (int k = 0; (k < NB_RANDOM) && (failure == null); k++) {
+	    Instance prob = randomInstance("random" + k, random);
+	    Presolve presolve = new Presolve(prob);
+	    Solution solution = presolve.toSolution(bruteForce(presolve.getReduced()));
+	    long optimum = bruteForce(prob).getObjective();
+	    if (!solution.validate())
+		failure = prob.getFileName() + ": infeasible solution " + solution.getError().trim();
+	    else if (solution.getObjective() != optimum)
+		failure = prob.getFileName() + ": objective " + solution.getObjective() + " instead of " + optimum;
+	}
+	report("random", "presolve", failure);
+    }
+
+    /**
+     * @return a random instance with at most {@link #MAX_RANDOM_ITEMS} items and 1 to 3 constraints,
+     *         whose weights are small and whose items are often copies of a previous one, so that
+     *         the reductions of the solvers (gcd, dominance) often apply.
+     */
+    private static Instance randomInstance(String name, Random random) {
+	int nbItems = 1 + random.nextInt(MAX_RANDOM_ITEMS);
+	int nbConstraints = 1 + random.nextInt(3);
+	int[] profit = new int[nbItems];
+	int[] weights = new int[nbItems * nbConstraints];
+	int[] capacity = new int[nbConstraints];
+	int scale = 1 + random.nextInt(3);
+	for (int j = 0; j < nbItems; j++) {
+	    int copy = ((j > 0) && (random.nextInt(4) == 0)) ? random.nextInt(j) : -1;
+	    profit[j] = (copy >= 0) ? Math.max(0, profit[copy] - random.nextInt(2)) : random.nextInt(20);
+	    for (int i = 0; i < nbConstraints; i++) {
+		weights[j * nbConstraints + i] = (copy >= 0) ? weights[copy * nbConstraints + i] : scale * random.nextInt(15);
+		capacity[i] += weights[j * nbConstraints + i];
+	    }
+	}
+	for (int i = 0; i < nbConstraints; i++) {
+	    capacity[i] = random.nextInt(capacity[i] / 2 + 2);
+	}
+	return new Instance(name, profit, capacity, weights);
+    }
+
+    /**
+     * @return an optimal solution of the instance, by enumeration of the subsets of its items.
+     */
+    private static Solution bruteForce(Instance prob) {
+	int nbItems = prob.getNbItems();
+	int nbConstraints = prob.getNbConstraints();
+	long optimum = -1;
+	int best = 0;
+	for (int set = 0; set < (1 << nbItems); set++) {
+	    boolean feasible = true;
+	    for (int i = 0; (i < nbConstraints) && feasible; i++) {
+		long weight = 0;
+		for (int j = 0; j < nbItems; j++) {
+		    if ((set & (1 << j)) != 0)
+			weight += prob.weight(j, i);
+		}
+		feasible = (weight <= prob.capacity(i));
+	    }
+	    if (!feasible)
+		continue;
+	    long objective = 0;
+	    for (int j = 0; j < nbItems; j++) {
+		if ((set & (1 << j)) != 0)
+		    objective += prob.profit(j);
+	    }
+	    if (objective > optimum) {
+		optimum = objective;
+		best = set;
+	    }
+	}
+	Solution solution = new Solution(prob);
+	for (int j = 0; j < nbItems; j++) {
+	    if ((best & (1 << j)) != 0)
+		solution.add(j);
+	}
+	return solution;
+    }
+
+    /**
+     * @return the solution of the engine on the instance, within the time limit (in seconds).
+     */
+    private static Solution solveWith(Instance prob, SolverEngine engine, long time) throws Exception {
+	MKPSolver mkp = new MKPSolver();
+	mkp.setEngine(engine);
+	mkp.setNbThreads(1);
+	mkp.setInstance(prob);
+	mkp.setSolution(new Solution(prob));
+	mkp.solve(time);
+	return mkp.getSolution();
+    }
+
+    /**
+     * Print the result of a check.
+     * 
+     * @param name : name of the instance
+     * @param check : name of the check
+     * @param failure : reason of the failure, <code>null</code> if the check passed
+     */
+    private static void report(String name, String check, String failure) {
+	if (failure == null) {
+	    System.out.println(name + ";" + check + ";OK");
+	} else {
+	    System.out.println(name + ";" + check + ";FAILED " + failure);
+	    s_failures++;
+	}
+    }
+
+}
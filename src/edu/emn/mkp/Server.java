@@ -0,0 +1,451 @@
+/*
+	mkp-framework
+	Copyright (C) 2013 Fabien Lehuede / Damien Prot / Axel Grimault
+
+	This program is free software; you can redistribute it and/or modify
+	it under the terms of the GNU General Public License as published by
+	the Free Software Foundation; either version 2 of the License, or
+	(at your option) any later version.
+
+	This program is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+	GNU General Public License for more details.
+
+	You should have received a copy of the GNU General Public License along
+	with this program; if not, write to the Free Software Foundation, Inc.,
+	51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package edu.emn.mkp;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ProtocolException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Resident solver: a single JVM answers the requests received on a local socket, so that
+ * short time limits are not spent in the start-up of the JVM and in the compilation of the
+ * engines.
+ * 
+ * **command**: java edu.emn.mkp.Server [options]
+ * **Options**:
+ *  - -port (int) :port of the server, bound to the loopback address only (default 4270)
+ *  - -workers (int) :number of problems solved at the same time (default: number of processors)
+ *  - -threads (int) :number of threads each problem may use (default 1)
+ *  - -instances (int) :number of instances kept in memory (default 64)
+ * 
+ * **Protocol**: a client sends one request per line, with the options of {@link Main}:
+ * [-t seconds] [-solver name] [-seed int] [-core int] [-data length] fileName
+ * The file is read by the server, unless <code>-data</code> is given: the <code>length</code>
+ * bytes following the line are then the content of the file (text format of the OR-Library)
+ * and <code>fileName</code> is only its name. The server answers each request with the line
+ * printed by {@link Main}:
+ * fileName;objective;time;e
+ * where the time includes the time the request waited for a worker, or with a line starting
+ * with <code>Error:</code> if the request is not valid. The time limit counts from the reception
+ * of the request: the engine is given the time left once the instance is read, and the request is
+ * rejected if none is left. See {@link Client}.
+ * 
+ * Each connection is handled by its own thread, that waits for the result of its requests; the
+ * problems are solved by a fixed pool of workers. A worker whose engine did not stop at the time
+ * limit answers at once, but waits for the engine to stop before it solves another problem, so
+ * that the abandoned engines do not run outside of the pool. The instance files read are kept in a cache
+ * (least recently used first out), with their relaxation and constraint order.
+ * 
+ * @author Fabien Lehuede / Damien Prot / Axel Grimault 2016
+ * 
+ */
+public class Server {
+
+    // ---------------------------------------------
+    // --------------- ATTRIBUTES ------------------
+    // ---------------------------------------------
+
+    /** Default port of the server */
+    public static final int DEFAULT_PORT = 4270;
+
+    /** Default number of instances kept in memory */
+    public static final int DEFAULT_INSTANCES = 64;
+
+    /** Maximum length of a request line (in bytes) */
+    private static final int MAX_LINE = 1 << 16;
+
+    /** Maximum length of the content of a file sent with a request (in bytes) */
+    private static final int MAX_DATA = 1 << 30;
+
+    /** Pool of the threads solving the problems */
+    private final ExecutorService m_workers;
+
+    /** Number of threads each problem may use */
+    private final int m_nbThreads;
+
+    /** Instances read, by path; the entries are accessed under the lock of the map */
+    private final Map<String, CachedInstance> m_instances;
+
+    /** Instance read from a file, with the date and the size of the file when it was read */
+    private static class CachedInstance {
+	final Instance instance;
+	final long lastModified;
+	final long length;
+
+	CachedInstance(Instance instance, long lastModified, long length) {
+	    this.instance = instance;
+	    this.lastModified = lastModified;
+	    this.length = length;
+	}
+    }
+
+    /** Request of a client */
+    private static class Request {
+	long maxTime = 30;
+	String solverName = SolverRegistry.DEFAULT;
+	long seed = 0;
+	int coreSize = 0;
+	String fileName = null;
+	byte[] data = null;
+    }
+
+    // -------------------------------------
+    // ------------ CONSTRUCTOR ------------
+    // -------------------------------------
+
+    /**
+     * @param nbWorkers : number of problems solved at the same time
+     * @param nbThreads : number of threads each problem may use
+     * @param nbInstances : number of instances kept in memory
+     */
+    public Server(int nbWorkers, int nbThreads, final int nbInstances) {
+	m_workers = Executors.newFixedThreadPool(Math.max(1, nbWorkers), r -> {
+	    Thread thread = new Thread(r, "mkp-worker");
+	    thread.setDaemon(true);
+	    return thread;
+	});
+	m_nbThreads = Math.max(1, nbThreads);
+	m_instances = new LinkedHashMap<String, CachedInstance>(16, 0.75f, true) {
+	    private static final long serialVersionUID = 1L;
+
+	    @Override
+	    protected boolean removeEldestEntry(Map.Entry<String, CachedInstance> eldest) {
+		return size() > nbInstances;
+	    }
+	};
+    }
+
+    // -------------------------------------
+    // -------------- METHODS --------------
+    // -------------------------------------
+
+    /**
+     * Main method.
+     * 
+     * @param arg program parameters.
+     */
+    public static void main(String[] arg) {
+	int port = DEFAULT_PORT;
+	int nbWorkers = Runtime.getRuntime().availableProcessors();
+	int nbThreads = 1;
+	int nbInstances = DEFAULT_INSTANCES;
+
+	try {
+	    for (int i = 0; i < arg.length; i++) {
+		if (arg[i].compareTo("-help") == 0) {
+		    System.err.println("Resident solver answering the requests of edu.emn.mkp.Client");
+		    System.err.println("command: java edu.emn.mkp.Server [options]");
+		    System.err.println("Options:");
+		    System.err.println("\t-port\t: port of the server (int), default " + port);
+		    System.err.println("\t-workers\t: number of problems solved at the same time (int), default " + nbWorkers);
+		    System.err.println("\t-threads\t: number of threads each problem may use (int), default " + nbThreads);
+		    System.err.println("\t-instances\t: number of instances kept in memory (int), default " + nbInstances);
+		    return;
+		} else if (arg[i].compareTo("-port") == 0) {
+		    port = Integer.parseInt(arg[++i]);
+		} else if (arg[i].compareTo("-workers") == 0) {
+		    nbWorkers = Integer.parseInt(arg[++i]);
+		} else if (arg[i].compareTo("-threads") == 0) {
+		    nbThreads = Integer.parseInt(arg[++i]);
+		} else if (arg[i].compareTo("-instances") == 0) {
+		    nbInstances = Integer.parseInt(arg[++i]);
+		} else {
+		    throw new IllegalArgumentException("Value " + arg[i] + " is not a valid parameter.");
+		}
+	    }
+	} catch (Exception e) {
+	    System.err.println("Error: There is a problem in the program parameters: " + e.getMessage());
+	    System.exit(1);
+	}
+
+	try {
+	    new Server(nbWorkers, nbThreads, nbInstances).run(port);
+	} catch (IOException e) {
+	    System.err.println("Error: The server cannot be started on port " + port + ": " + e.getMessage());
+	    System.exit(1);
+	}
+    }
+
+    /**
+     * Accept the connections on the port given, until the process is stopped.
+     * 
+     * @param port : port of the server, bound to the loopback address
+     * @throws IOException Returns an error if the port cannot be opened.
+     */
+    public void run(int port) throws IOException {
+	ExecutorService connections = Executors.newCachedThreadPool(r -> {
+	    Thread thread = new Thread(r, "mkp-connection");
+	    thread.setDaemon(true);
+	    return thread;
+	});
+	try (ServerSocket server = new ServerSocket(port, 50, InetAddress.getLoopbackAddress())) {
+	    System.err.println("Server listening on " + server.getLocalSocketAddress());
+	    while (true) {
+		final Socket socket = server.accept();
+		connections.execute(() -> handle(socket));
+	    }
+	} finally {
+	    connections.shutdownNow();
+	    m_workers.shutdownNow();
+	}
+    }
+
+    /**
+     * Answer the requests of a connection, one after the other, until the client closes it.
+     */
+    private void handle(Socket socket) {
+	try (Socket s = socket;
+		InputStream in = new BufferedInputStream(s.getInputStream());
+		OutputStream out = s.getOutputStream()) {
+	    while (true) {
+		String line;
+		try {
+		    line = readLine(in);
+		} catch (ProtocolException e) {
+		    // Line too long: the next request cannot be found in the stream
+		    out.write(("Error: " + e.getMessage() + "\n").getBytes(StandardCharsets.UTF_8));
+		    out.flush();
+		    break;
+		}
+		if (line == null)
+		    break;
+		if (line.trim().isEmpty())
+		    continue;
+		String response;
+		boolean lost = false;
+		try {
+		    response = answer(parse(line, in));
+		} catch (ProtocolException e) {
+		    // The next request cannot be found in the stream
+		    response = "Error: " + e.getMessage();
+		    lost = true;
+		} catch (IllegalArgumentException | IOException e) {
+		    response = "Error: " + e.getMessage();
+		}
+		out.write((response + "\n").getBytes(StandardCharsets.UTF_8));
+		out.flush();
+		if (lost)
+		    break;
+	    }
+	} catch (IOException e) {
+	    System.err.println("Warning: connection lost: " + e.getMessage());
+	}
+    }
+
+    /**
+     * Solve the problem of a request on a worker and wait for the result.
+     * 
+     * @return The line of the result, as printed by {@link Main}.
+     */
+    private String answer(final Request request) throws IOException {
+	final long t = System.currentTimeMillis();
+	final CompletableFuture<String> result = new CompletableFuture<>();
+	Future<?> future = m_workers.submit(() -> {
+	    try {
+		solve(request, t, result);
+	    } catch (Throwable e) {
+		result.completeExceptionally(e);
+	    }
+	});
+	try {
+	    return result.get();
+	} catch (InterruptedException e) {
+	    future.cancel(true);
+	    Thread.currentThread().interrupt();
+	    throw new IOException("the server is stopping.");
+	} catch (ExecutionException e) {
+	    Throwable cause = e.getCause();
+	    if (cause instanceof IOException)
+		throw (IOException) cause;
+	    throw new IOException(cause.toString(), cause);
+	}
+    }
+
+    /**
+     * Solve the problem of a request, as {@link Main} does.
+     * 
+     * The result is given before waiting for an abandoned engine (see {@link MKPSolver#awaitEngine()}).
+     * 
+     * @param request : the request
+     * @param start : time the request was received (System.currentTimeMillis)
+     * @param result : completed with the line of the result, as printed by {@link Main}
+     */
+    private void solve(Request request, long start, CompletableFuture<String> result) throws Exception {
+	Instance prob = (request.data != null) ? prepare(new Instance(request.fileName,
+		new ByteArrayInputStream(request.data))) : getInstance(request.fileName);
+	long timeLeft = request.maxTime * 1000 - (System.currentTimeMillis() - start);
+	if (timeLeft <= 0) {
+	    result.complete("Error: the time limit of " + request.fileName + " was spent waiting for a worker.");
+	    return;
+	}
+
+	MKPSolver mkp = new MKPSolver();
+	mkp.setEngine(SolverRegistry.create(request.solverName));
+	if (request.coreSize > 0)
+	    mkp.setEngine(new CoreSolver(mkp.getEngine(), request.coreSize));
+	mkp.setNbThreads(m_nbThreads);
+	mkp.setSeed(request.seed);
+	mkp.setInstance(prob);
+	mkp.setSolution(new Solution(prob));
+	mkp.solveWithin(timeLeft);
+	long t = System.currentTimeMillis() - start;
+
+	boolean feasible = mkp.getSolution().validate();
+	mkp.getSolution().evaluate();
+	int e = 0;
+	if (!feasible)
+	    e = 1;
+	else if (mkp.isOverdue() || (t > (request.maxTime + 1) * 1000))
+	    e = 2;
+	result.complete(request.fileName + ";" + mkp.getSolution().getObjective() + ";" + t + ";" + e);
+	mkp.awaitEngine();
+    }
+
+    /**
+     * @return The instance of the file, read again if the file has changed since it was cached.
+     */
+    private Instance getInstance(String fileName) throws IOException {
+	File file = new File(fileName);
+	String key = file.getCanonicalPath();
+	long lastModified = file.lastModified();
+	long length = file.length();
+	synchronized (m_instances) {
+	    CachedInstance cached = m_instances.get(key);
+	    if ((cached != null) && (cached.lastModified == lastModified) && (cached.length == length))
+		return cached.instance;
+	}
+	// Read outside of the lock: two requests may read the same file at the same time
+	Instance instance = prepare(new Instance(fileName));
+	synchronized (m_instances) {
+	    m_instances.put(key, new CachedInstance(instance, lastModified, length));
+	}
+	return instance;
+    }
+
+    /**
+     * Build the data computed at the first call of the getters of the instance, so that the
+     * instance can be shared by the workers.
+     * 
+     * @return The instance given.
+     */
+    private static Instance prepare(Instance instance) {
+	instance.getWeightsByItem();
+	instance.getWeightsByConstraint();
+	instance.getConstraintOrder();
+	if (LPRelaxation.isCheap(instance))
+	    instance.getRelaxation();
+	return instance;
+    }
+
+    /**
+     * Parse a request line; the content of the file is read from the stream if <code>-data</code> is given.
+     */
+    private static Request parse(String line, InputStream in) throws IOException {
+	Request request = new Request();
+	String[] arg = line.trim().split("\\s+");
+
+	// The content of the file is read first, even if the request is not valid, to find the next request
+	for (int i = 0; i < arg.length - 1; i++) {
+	    if (arg[i].compareTo("-data") == 0) {
+		int length;
+		try {
+		    length = Integer.parseInt(arg[i + 1]);
+		} catch (NumberFormatException e) {
+		    length = -1;
+		}
+		if ((length < 0) || (length > MAX_DATA))
+		    throw new ProtocolException("the length given for -data is not valid: " + arg[i + 1]);
+		request.data = new byte[length];
+		new DataInputStream(in).readFully(request.data);
+		break;
+	    }
+	}
+
+	for (int i = 0; i < arg.length; i++) {
+	    try {
+		if (arg[i].compareTo("-t") == 0) {
+		    request.maxTime = Integer.parseInt(arg[++i]);
+		} else if (arg[i].compareTo("-solver") == 0) {
+		    request.solverName = arg[++i];
+		    if (!SolverRegistry.getNames().contains(request.solverName))
+			throw new IllegalArgumentException(request.solverName + " is not a solver. Available solvers: "
+				+ SolverRegistry.getNames());
+		} else if (arg[i].compareTo("-seed") == 0) {
+		    request.seed = Long.parseLong(arg[++i]);
+		} else if (arg[i].compareTo("-core") == 0) {
+		    request.coreSize = Integer.parseInt(arg[++i]);
+		} else if (arg[i].compareTo("-data") == 0) {
+		    if (request.data == null)
+			throw new ProtocolException("no length given for -data.");
+		    i++;
+		} else if (request.fileName == null) {
+		    request.fileName = arg[i];
+		} else {
+		    throw new IllegalArgumentException("value " + arg[i] + " is not a valid parameter.");
+		}
+	    } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+		throw new IllegalArgumentException("the value given for " + arg[i - 1] + " is not valid.");
+	    }
+	}
+	if (request.fileName == null)
+	    throw new IllegalArgumentException("no file name given.");
+	return request;
+    }
+
+    /**
+     * @return The next line of the stream (without the end of line), or <code>null</code> at the end of the stream.
+     * The stream is read byte by byte, so that the content of a file following the line is not consumed.
+     */
+    private static String readLine(InputStream in) throws IOException {
+	ByteArrayOutputStream line = new ByteArrayOutputStream();
+	int c = in.read();
+	if (c < 0)
+	    return null;
+	while ((c >= 0) && (c != '\n')) {
+	    if (line.size() >= MAX_LINE)
+		throw new ProtocolException("request line longer than " + MAX_LINE + " bytes.");
+	    if (c != '\r')
+		line.write(c);
+	    c = in.read();
+	}
+	if (c < 0)
+	    throw new EOFException("request line not terminated.");
+	return new String(line.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+}
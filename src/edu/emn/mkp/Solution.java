@@ -20,6 +20,7 @@
 package edu.emn.mkp;
 
 import java.io.PrintStream;
+import java.nio.IntBuffer;
 import java.util.Arrays;
 
 /**
@@ -35,14 +36,18 @@ public class Solution {
     // --------------- ATTRIBUTES ------------------
     // ---------------------------------------------
 
+    /** Value returned by the delta evaluations ({@link #deltaFlip(int)}, ...) when the move is not feasible. */
+    public static final long INFEASIBLE = Long.MIN_VALUE;
+
     /**
-     * Solution stored in an array. Element j in the array is:
-     *  - <code>true</code> item j is in the solution;
-     *  - <code>false</code> item j is not in the solution.
+     * Solution stored in a bitset: bit <code>j % 64</code> of word <code>j / 64</code> is:
+     *  - <code>1</code> item j is in the solution;
+     *  - <code>0</code> item j is not in the solution.
+     * The bits after the last item are always <code>0</code>.
      *  
      * @warning Do not modify the behaviour of this attribute
      */
-    protected boolean[] m_solution;
+    protected long[] m_solution;
 
     /**
      * Value of the knapsack.
@@ -78,8 +83,21 @@ public class Solution {
     
     /**
      * @return Array of boolean representing the solution.
+     * @warning The array is a copy: modifying it does not modify the solution.
      */
     public boolean[] getSolution() {
+	boolean[] solution = new boolean[m_nbItems];
+	for (int j = nextSelected(0); j >= 0; j = nextSelected(j + 1)) {
+	    solution[j] = true;
+	}
+	return solution;
+    }
+
+    /**
+     * @return The bitset representing the solution (bit <code>j % 64</code> of word <code>j / 64</code> is item j).
+     * @warning The array is shared with the solution, do not modify it.
+     */
+    public long[] getBits() {
 	return m_solution;
     }
 
@@ -129,9 +147,9 @@ public class Solution {
      * @throws Exception Throw an exception if index of item is wrong.
      */
     public boolean isSelected(int j) throws Exception {
-	if ((j < 0) || (j > m_nbItems))
+	if ((j < 0) || (j >= m_nbItems))
 	    throw new Exception("Error: " + j + " n\'is not an index of item between 0 and " + (m_nbItems - 1));
-	return m_solution[j];
+	return selected(j);
     }
 
     /**
@@ -153,10 +171,21 @@ public class Solution {
 	m_instance = inst;
 	m_nbItems = inst.getNbItems();
 	m_nbConstraints = inst.getNbConstraints();
-	m_solution = new boolean[m_nbItems];
-	Arrays.fill(m_solution, false);
+	m_solution = new long[(m_nbItems + 63) >>> 6];
 	m_weights = new long[m_instance.getNbConstraints()];
-	Arrays.fill(m_weights, 0);
+    }
+
+    /**
+     * Creates a copy of the solution given as parameter.
+     */
+    private Solution(Solution other) {
+	m_instance = other.m_instance;
+	m_nbItems = other.m_nbItems;
+	m_nbConstraints = other.m_nbConstraints;
+	m_objective = other.m_objective;
+	m_solution = other.m_solution.clone();
+	m_weights = other.m_weights.clone();
+	m_error = other.m_error;
     }
 
     // -------------------------------------
@@ -169,14 +198,101 @@ public class Solution {
      * @return A copy of the solution.
      */
     public Solution clone() {
-	Solution solution = new Solution(m_instance);
-	solution.m_nbItems = m_instance.getNbItems();
-	solution.m_nbConstraints = m_instance.getNbConstraints();
-	solution.m_objective = m_objective;
-	solution.m_solution = Arrays.copyOf(m_solution, m_nbItems);
-	solution.m_weights = Arrays.copyOf(m_weights,m_instance.getNbConstraints());
-	solution.m_error = new String(m_error); 
-	return solution;	  
+	return new Solution(this);
+    }
+
+    /**
+     * @return Number of items in the knapsack.
+     */
+    public int getNbSelected() {
+	int count = 0;
+	for (long word : m_solution) {
+	    count += Long.bitCount(word);
+	}
+	return count;
+    }
+
+    /**
+     * Iterate over the items in the knapsack:
+     * <code>for (int j = sol.nextSelected(0); j >= 0; j = sol.nextSelected(j + 1))</code>
+     * 
+     * @param from Index of the first item to consider.
+     * @return The index of the first item in the knapsack from item <code>from</code>, or -1 if there is none.
+     */
+    public int nextSelected(int from) {
+	if (from >= m_nbItems)
+	    return -1;
+	int w = from >>> 6;
+	long word = m_solution[w] & (-1L << from);
+	while (word == 0) {
+	    if (++w == m_solution.length)
+		return -1;
+	    word = m_solution[w];
+	}
+	return (w << 6) + Long.numberOfTrailingZeros(word);
+    }
+
+    /**
+     * @param other A solution of the same instance.
+     * @return Number of items that are in one of the two knapsacks only.
+     */
+    public int hammingDistance(Solution other) {
+	long[] bits = other.m_solution;
+	int count = 0;
+	for (int w = 0; w < m_solution.length; w++) {
+	    count += Long.bitCount(m_solution[w] ^ bits[w]);
+	}
+	return count;
+    }
+
+    /**
+     * @param other A solution of the same instance.
+     * @return The bitset of the items that are in one of the two knapsacks only.
+     */
+    public long[] xor(Solution other) {
+	long[] bits = other.m_solution;
+	long[] result = new long[m_solution.length];
+	for (int w = 0; w < m_solution.length; w++) {
+	    result[w] = m_solution[w] ^ bits[w];
+	}
+	return result;
+    }
+
+    /**
+     * Copy the solution given as parameter into this solution, without allocation and without
+     * recomputing the objective value and the weights.
+     * 
+     * @param other A solution of the same instance.
+     */
+    public void copyFrom(Solution other) {
+	System.arraycopy(other.m_solution, 0, m_solution, 0, m_solution.length);
+	System.arraycopy(other.m_weights, 0, m_weights, 0, m_weights.length);
+	m_objective = other.m_objective;
+	m_error = other.m_error;
+    }
+
+    /**
+     * Flip the items of a bitset: the items of <code>mask</code> in the knapsack are removed, the other
+     * ones are added. The objective value and the weights are updated for these items only.
+     * 
+     * @param mask Bitset of items, in the format of {@link #getBits()}.
+     */
+    public void applyFlips(long[] mask) {
+	for (int w = 0; w < m_solution.length; w++) {
+	    flipWord(w, mask[w]);
+	}
+    }
+
+    /**
+     * Set the items in the knapsack: only the items whose state changes are added or removed,
+     * so the cost is proportional to the number of changes.
+     * 
+     * @param bits Bitset of the items in the knapsack, in the format of {@link #getBits()}.
+     */
+    public void setBits(long[] bits) {
+	for (int w = 0; w < m_solution.length; w++) {
+	    flipWord(w, m_solution[w] ^ bits[w]);
+	}
     }
 
     /**
@@ -192,7 +308,10 @@ public class Solution {
     public void setItemWeight(int j, boolean value) throws Exception {
 	if ((j < 0) || (j >= m_nbItems))
 	    throw new Exception("Error: " + j + " n\'is not an index of item between 0 and " + (m_nbItems - 1));
-	m_solution[j] = value;
+	if (value)
+	    m_solution[j >>> 6] |= 1L << j;
+	else
+	    m_solution[j >>> 6] &= ~(1L << j);
     }
 
     /**
@@ -206,15 +325,8 @@ public class Solution {
 	if ((j < 0) || (j >= m_nbItems))
 	    throw new Exception("Error: " + j + " n\'is not an index of item between 0 and " + (m_nbItems - 1));
 
-	if (m_solution[j] == false ) {
-	    m_solution[j] = true;		
-
-	    m_objective += m_instance.getProfit(j);
-
-	    for (int i = 0; i < m_instance.getNbConstraints(); i++) {
-		m_weights[i] += m_instance.getWeight(j, i);
-	    }
-	}
+	if (!selected(j))
+	    add(j);
     }
 
     /**
@@ -225,18 +337,11 @@ public class Solution {
      * @throws Exception Throw an exception if index j is not a valid item. 
      */
     public void removeItem(int j) throws Exception {
-	if ((j < 0) || (j > +m_nbItems))
+	if ((j < 0) || (j >= m_nbItems))
 	    throw new Exception("Error: " + j + " n\'is not an index of item between 0 and " + (m_nbItems - 1));
 
-	if (m_solution[j] == true ) {
-	    m_solution[j] = false;		
-
-	    m_objective -= m_instance.getProfit(j);
-
-	    for (int i = 0; i < m_instance.getNbConstraints(); i++) {
-		m_weights[i] -= m_instance.getWeight(j, i);
-	    }
-	}
+	if (selected(j))
+	    remove(j);
     }
 
     /**
@@ -247,15 +352,290 @@ public class Solution {
      * @throws Exception Throw an exception if index j is not an item. 
      */
     public boolean addingPossible(int j) throws Exception {
-	if ((j < 0) || (j > m_nbItems))
+	if ((j < 0) || (j >= m_nbItems))
 	    throw new Exception("Error: " + j + " n\'is not an index of item between 0 and " + (m_nbItems - 1));
 
-	for (int i = 0; i < m_nbConstraints; i++) {
-	    if ( m_weights[i] + m_instance.getWeight(j, i) > m_instance.getCapacity(i))
-		return false;
+	return fits(j);
+    }
+
+    // -------------------------------------
+    // ------------ UNCHECKED ACCESS -------
+    // -------------------------------------
+
+    // Same as isSelected, addItem, removeItem and addingPossible without the index check and
+    // without exception, for the loops of the engines. The preconditions are only checked by
+    // assertions (java -ea).
+
+    /**
+     * Same as {@link #isSelected(int)} without the index check.
+     * 
+     * @param j Index of the item.
+     * @return <code>true</code> if item j is in the knapsack.
+     */
+    public boolean selected(int j) {
+	assert (j >= 0) && (j < m_nbItems) : j;
+	return (m_solution[j >>> 6] & (1L << j)) != 0;
+    }
+
+    /**
+     * Add item j, which must not be in the knapsack, and update the objective value and the weights.
+     * 
+     * @param j Index of an item not in the knapsack.
+     */
+    public void add(int j) {
+	assert !selected(j) : j;
+	m_solution[j >>> 6] |= 1L << j;
+	m_objective += m_instance.profit(j);
+	IntBuffer mapped = m_instance.getMappedWeights();
+	if (mapped != null)
+	    ConstraintKernel.add(m_weights, mapped, j * m_nbConstraints);
+	else
+	    ConstraintKernel.add(m_weights, m_instance.getWeightsByItem(), j * m_nbConstraints);
+    }
+
+    /**
+     * Remove item j, which must be in the knapsack, and update the objective value and the weights.
+     * 
+     * @param j Index of an item in the knapsack.
+     */
+    public void remove(int j) {
+	assert selected(j) : j;
+	m_solution[j >>> 6] &= ~(1L << j);
+	m_objective -= m_instance.profit(j);
+	IntBuffer mapped = m_instance.getMappedWeights();
+	if (mapped != null)
+	    ConstraintKernel.subtract(m_weights, mapped, j * m_nbConstraints);
+	else
+	    ConstraintKernel.subtract(m_weights, m_instance.getWeightsByItem(), j * m_nbConstraints);
+    }
+
+    /**
+     * Same as {@link #addingPossible(int)} without the index check.
+     * 
+     * @param j Index of the item.
+     * @return <code>true</code> if item j can be added without violating a constraint.
+     */
+    public boolean fits(int j) {
+	assert (j >= 0) && (j < m_nbItems) : j;
+	IntBuffer mapped = m_instance.getMappedWeights();
+	if (mapped != null)
+	    return ConstraintKernel.fits(m_weights, mapped, j * m_nbConstraints, m_instance.getCapacities());
+	return ConstraintKernel.fits(m_weights, m_instance.getWeightsByItem(), j * m_nbConstraints,
+		m_instance.getCapacities());
+    }
+
+    /**
+     * Check all the items at once against the current weights of the knapsack (see
+     * {@link ConstraintKernel#fitAll(long[], int[], int, int, int[], int[])}).
+     * As the weights only increase when items are added, an item that does not fit now will not
+     * fit after other items are added.
+     * 
+     * @param result For each item, negative if it cannot be added to the knapsack, non negative if it can
+     * (for the items not in the knapsack).
+     */
+    public void fitAll(int[] result) {
+	IntBuffer mapped = m_instance.getMappedWeights();
+	if (mapped != null) {
+	    ConstraintKernel.fitAll(m_weights, mapped, m_nbItems, m_instance.getCapacities(), result);
+	    return;
+	}
+	ConstraintKernel.fitAll(m_weights, m_instance.getWeightsByConstraint(), m_instance.getConstraintStride(),
+		m_nbItems, m_instance.getCapacities(), result);
+    }
+
+    // -------------------------------------
+    // ----------- ONLINE CHANGES ----------
+    // -------------------------------------
+
+    // Called by OnlineSolver to follow the changes of the instance: only the weights of the
+    // knapsack and its value are updated, for the items changed. A capacity change does not
+    // modify the solution, but it may make it infeasible.
+
+    /**
+     * Follow the addition of an item at the end of the instance (called after
+     * {@link Instance#addItem(int, int[])}): the new item is not in the knapsack.
+     */
+    void itemAdded() {
+	m_nbItems++;
+	if (((m_nbItems + 63) >>> 6) > m_solution.length)
+	    m_solution = Arrays.copyOf(m_solution, m_solution.length + 1);
+    }
+
+    /**
+     * Follow the removal of item j (called before {@link Instance#removeItem(int)}): the item is
+     * removed from the knapsack and the last item takes its index.
+     * 
+     * @param j Index of the item removed.
+     */
+    void itemRemoved(int j) {
+	if (selected(j))
+	    remove(j);
+	int last = m_nbItems - 1;
+	if ((j < last) && selected(last)) {
+	    m_solution[j >>> 6] |= 1L << j;
+	    m_solution[last >>> 6] &= ~(1L << last);
+	}
+	m_nbItems = last;
+	if (((m_nbItems + 63) >>> 6) < m_solution.length)
+	    m_solution = Arrays.copyOf(m_solution, (m_nbItems + 63) >>> 6);
+    }
+
+    /**
+     * Follow the change of the profit of item j (called before {@link Instance#setProfit(int, int)}).
+     * 
+     * @param j Index of the item.
+     * @param profit New profit of the item.
+     */
+    void profitChanged(int j, int profit) {
+	if (selected(j))
+	    m_objective += profit - m_instance.profit(j);
+    }
+
+    // -------------------------------------
+    // ----------- MOVE EVALUATION ---------
+    // -------------------------------------
+
+    // The delta methods return the variation of the objective value if the move is performed,
+    // or INFEASIBLE if the resulting solution violates a constraint. They do not modify the
+    // solution: the move is performed afterwards by the corresponding apply method.
+    // The flip and swap moves are checked by ConstraintKernel, block by block of constraints; the
+    // exchange move checks the constraints from the tightest to the loosest (see
+    // Instance.getConstraintOrder()) and stops at the first violated one. The indices are not checked.
+
+    /**
+     * Evaluate the move that adds item j if it is not in the knapsack, and removes it otherwise.
+     * 
+     * @param j Index of the item.
+     * @return The variation of the objective value, or {@link #INFEASIBLE}.
+     */
+    public long deltaFlip(int j) {
+	int[] capacities = m_instance.getCapacities();
+	int offset = j * m_nbConstraints;
+	IntBuffer mapped = m_instance.getMappedWeights();
+	if (mapped != null) {
+	    if (selected(j))
+		return ConstraintKernel.fitsWithout(m_weights, mapped, offset, capacities) ? -m_instance.profit(j)
+			: INFEASIBLE;
+	    return ConstraintKernel.fits(m_weights, mapped, offset, capacities) ? m_instance.profit(j) : INFEASIBLE;
+	}
+	int[] weights = m_instance.getWeightsByItem();
+	if (selected(j)) {
+	    if (!ConstraintKernel.fitsWithout(m_weights, weights, offset, capacities))
+		return INFEASIBLE;
+	    return -m_instance.profit(j);
 	}
+	if (!ConstraintKernel.fits(m_weights, weights, offset, capacities))
+	    return INFEASIBLE;
+	return m_instance.profit(j);
+    }
 
-	return true;
+    /**
+     * Evaluate the move that removes item <code>out</code> and adds item <code>in</code>.
+     * 
+     * @param out Index of an item in the knapsack.
+     * @param in Index of an item not in the knapsack.
+     * @return The variation of the objective value, or {@link #INFEASIBLE} (also returned if
+     * <code>out</code> is not in the knapsack or <code>in</code> is already in the knapsack).
+     */
+    public long deltaSwap(int out, int in) {
+	if (!selected(out) || selected(in))
+	    return INFEASIBLE;
+	int[] capacities = m_instance.getCapacities();
+	IntBuffer mapped = m_instance.getMappedWeights();
+	boolean fits = (mapped != null)
+		? ConstraintKernel.fitsSwap(m_weights, mapped, out * m_nbConstraints, in * m_nbConstraints, capacities)
+		: ConstraintKernel.fitsSwap(m_weights, m_instance.getWeightsByItem(), out * m_nbConstraints,
+			in * m_nbConstraints, capacities);
+	if (!fits)
+	    return INFEASIBLE;
+	return m_instance.profit(in) - m_instance.profit(out);
+    }
+
+    /**
+     * Evaluate the move that removes the items of <code>out</code> and adds the items of <code>in</code>.
+     * 
+     * @param out Indices of distinct items in the knapsack.
+     * @param in Indices of distinct items not in the knapsack.
+     * @return The variation of the objective value, or {@link #INFEASIBLE} (also returned if an item of
+     * <code>out</code> is not in the knapsack or an item of <code>in</code> is already in the knapsack).
+     */
+    public long deltaExchange(int[] out, int[] in) {
+	long delta = 0;
+	for (int j : out) {
+	    if (!selected(j))
+		return INFEASIBLE;
+	    delta -= m_instance.profit(j);
+	}
+	for (int j : in) {
+	    if (selected(j))
+		return INFEASIBLE;
+	    delta += m_instance.profit(j);
+	}
+	int[] capacities = m_instance.getCapacities();
+	for (int i : m_instance.getConstraintOrder()) {
+	    long weight = m_weights[i];
+	    for (int j : out) {
+		weight -= m_instance.weight(j, i);
+	    }
+	    for (int j : in) {
+		weight += m_instance.weight(j, i);
+	    }
+	    if (weight > capacities[i])
+		return INFEASIBLE;
+	}
+	return delta;
+    }
+
+    /**
+     * Add item j if it is not in the knapsack, remove it otherwise.
+     * 
+     * @param j Index of the item.
+     */
+    public void applyFlip(int j) {
+	if (selected(j))
+	    remove(j);
+	else
+	    add(j);
+    }
+
+    /**
+     * Remove item <code>out</code> and add item <code>in</code>.
+     * 
+     * @param out Index of an item in the knapsack.
+     * @param in Index of an item not in the knapsack.
+     */
+    public void applySwap(int out, int in) {
+	remove(out);
+	add(in);
+    }
+
+    /**
+     * Remove the items of <code>out</code> and add the items of <code>in</code>.
+     * 
+     * @param out Indices of distinct items in the knapsack.
+     * @param in Indices of distinct items not in the knapsack.
+     */
+    public void applyExchange(int[] out, int[] in) {
+	for (int j : out) {
+	    remove(j);
+	}
+	for (int j : in) {
+	    add(j);
+	}
+    }
+
+    /**
+     * Flip the items of the bits of <code>word</code>, which is word <code>w</code> of a bitset.
+     */
+    private void flipWord(int w, long word) {
+	while (word != 0) {
+	    int j = (w << 6) + Long.numberOfTrailingZeros(word);
+	    if (selected(j))
+		remove(j);
+	    else
+		add(j);
+	    word &= word - 1;
+	}
     }
 
     /**
@@ -265,16 +645,7 @@ public class Solution {
      * @return <code>true</code> if feasible or <code>false</code>.
      */
     public boolean isFeasible() {
-
-	try {
-	    for (int i = 0; i < m_nbConstraints; i++) {
-		if ( m_weights[i]  > m_instance.getCapacity(i))
-		    return false;
-	    }
-	} catch (Exception e) {
-	    // Do nothing, error impossible
-	}
-	return true;
+	return ConstraintKernel.feasible(m_weights, m_instance.getCapacities());
     }
 
     /**
@@ -285,10 +656,8 @@ public class Solution {
      */ 
     public double evaluate() throws Exception {
 	m_objective = 0;
-	for (int j = 0; j < m_nbItems; j++) {
-	    if (m_solution[j]) {
-		m_objective += m_instance.getProfit(j);
-	    }
+	for (int j = nextSelected(0); j >= 0; j = nextSelected(j + 1)) {
+	    m_objective += m_instance.profit(j);
 	}
 	return m_objective;
     }
@@ -307,9 +676,8 @@ public class Solution {
 	    throw new Exception("Error: " + i + " n\'is not an index of constraint between 0 and " + (m_nbConstraints - 1));
 
 	int valueConstraint = 0;
-	for (int j = 0; j < m_nbItems; j++) {
-	    if (m_solution[j])
-		valueConstraint += m_instance.getWeight(j, i);
+	for (int j = nextSelected(0); j >= 0; j = nextSelected(j + 1)) {
+	    valueConstraint += m_instance.weight(j, i);
 	}
 
 	m_weights[i] = valueConstraint;
@@ -352,9 +720,8 @@ public class Solution {
      */
     public void print(PrintStream out) {
 	out.println("MKP objective value: " + m_objective + "\nItems chosen: ");
-	for (int j = 0; j < m_nbItems; j++) {
-	    if (m_solution[j])
-		out.print(j + " / ");
+	for (int j = nextSelected(0); j >= 0; j = nextSelected(j + 1)) {
+	    out.print(j + " / ");
 	}
 	out.println("");
     }
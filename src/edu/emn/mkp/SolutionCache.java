@@ -0,0 +1,311 @@
+/*
+	mkp-framework
+	Copyright (C) 2013 Fabien Lehuede / Damien Prot / Axel Grimault
+
+	This program is free software; you can redistribute it and/or modify
+	it under the terms of the GNU General Public License as published by
+	the Free Software Foundation; either version 2 of the License, or
+	(at your option) any later version.
+
+	This program is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+	GNU General Public License for more details.
+
+	You should have received a copy of the GNU General Public License along
+	with this program; if not, write to the Free Software Foundation, Inc.,
+	51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package edu.emn.mkp;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * On-disk cache of the best solutions found, one file per instance fingerprint
+ * ({@link Instance#getFingerprint()}), used to warm-start the solvers on recurring instances
+ * (option <code>-cache (directory)</code>).
+ * 
+ * {@link #lookup(Instance)} returns the cached solution of the nearest instance: the same instance
+ * if it is in the cache, otherwise the instance with the same number of items and constraints and
+ * the largest number of equal blocks of items ({@link Instance#getBlockFingerprints()}), for example
+ * the same items with other capacities. The solution is repaired to be feasible for the instance,
+ * with the dual values of the relaxation if it is already solved and the capacity multipliers otherwise.
+ * The headers of the files are read once, at the first lookup, and kept in memory by number of items
+ * and of constraints: a lookup only compares the instance with the cached instances of the same size.
+ * 
+ * The size of the cache is bounded: when it is exceeded, the least recently used files
+ * (last modification date, updated at each hit) are deleted.
+ * 
+ * File format (big-endian): magic, fingerprint, number of items, number of constraints, objective value,
+ * number of blocks, block fingerprints, then the bitset of the solution ({@link Solution#getBits()}).
+ * 
+ * @author Fabien Lehuede / Damien Prot / Axel Grimault 2016
+ * 
+ */
+public class SolutionCache {
+
+    // ---------------------------------------------
+    // --------------- ATTRIBUTES ------------------
+    // ---------------------------------------------
+
+    /** First int of a cache file ("MKPS") */
+    private static final int MAGIC = 0x4D4B5053;
+
+    /** Extension of the cache files */
+    private static final String EXTENSION = ".sol";
+
+    /** Default size of the cache: 64 MB */
+    public static final long DEFAULT_SIZE = 64L << 20;
+
+    /** Directory of the cache */
+    private final File m_directory;
+
+    /** Maximum size in bytes of the files of the cache */
+    private final long m_maxSize;
+
+    /** Headers of the cache files by size of instance ({@link #key(int, int)}), read at the first lookup */
+    private Map<Long, List<Entry>> m_index;
+
+    /** Cache entry: the header of a file and, once read, its solution */
+    private static class Entry {
+	File file;
+	long fingerprint;
+	int nbItems;
+	int nbConstraints;
+	long objective;
+	long[] blocks;
+	long[] bits;
+    }
+
+    // -------------------------------------
+    // ------------ CONSTRUCTOR ------------
+    // -------------------------------------
+
+    /**
+     * @param directory : directory of the cache, created if it does not exist
+     * @param maxSize : maximum size in bytes of the files of the cache
+     * @throws IOException Returns an error if the directory cannot be created.
+     */
+    public SolutionCache(String directory, long maxSize) throws IOException {
+	m_directory = new File(directory);
+	m_maxSize = maxSize;
+	if (!m_directory.isDirectory() && !m_directory.mkdirs())
+	    throw new IOException("The cache directory : " + directory + " cannot be created.");
+    }
+
+    // -------------------------------------
+    // -------------- METHODS --------------
+    // -------------------------------------
+
+    /**
+     * @param instance : the instance to solve
+     * @return A feasible solution of the instance built from the cached solution of the nearest
+     *         instance, or <code>null</code> if no cached instance is close enough.
+     * @throws Exception Returns an error if a cache file cannot be read.
+     */
+    public synchronized Solution lookup(Instance instance) throws Exception {
+	long fingerprint = instance.getFingerprint();
+	long[] blocks = instance.getBlockFingerprints();
+	List<Entry> entries = index().get(key(instance.getNbItems(), instance.getNbConstraints()));
+	if (entries == null)
+	    return null;
+	Entry nearest = null;
+	int nearestScore = 0;
+	for (Entry entry : entries) {
+	    // Number of equal blocks, the same instance is always the nearest
+	    int score = (entry.fingerprint == fingerprint) ? Integer.MAX_VALUE : 0;
+	    for (int b = 0; (b < blocks.length) && (score < Integer.MAX_VALUE); b++) {
+		if (entry.blocks[b] == blocks[b])
+		    score++;
+	    }
+	    if (score > nearestScore) {
+		nearest = entry;
+		nearestScore = score;
+	    }
+	}
+	if (nearest == null)
+	    return null;
+
+	// Recently used
+	File file = nearest.file;
+	Entry entry = read(file, true);
+	if (entry == null) {
+	    // Deleted or replaced by another process
+	    entries.remove(nearest);
+	    return null;
+	}
+	file.setLastModified(System.currentTimeMillis());
+
+	// The relaxation is not solved for the repair only
+	Solution sol = new Solution(instance);
+	sol.setBits(entry.bits);
+	double[] multipliers = (instance.getRelaxationIfSolved() != null) ? SurrogateGreedySolver.dualMultipliers(instance)
+		: SurrogateGreedySolver.capacityMultipliers(instance);
+	SurrogateGreedySolver.repair(sol, SurrogateGreedySolver.efficiencyOrder(instance, multipliers));
+	return sol;
+    }
+
+    /**
+     * Stores the solution of an instance, unless a better one is already cached, then deletes the least
+     * recently used files while the cache is too large.
+     * 
+     * @param sol : a feasible solution
+     * @throws IOException Returns an error if the cache file cannot be written.
+     */
+    public synchronized void store(Solution sol) throws IOException {
+	Instance instance = sol.getInstance();
+	if (!sol.isFeasible())
+	    return;
+	File file = new File(m_directory, String.format("%016x", instance.getFingerprint()) + EXTENSION);
+	Entry cached = file.exists() ? read(file, false) : null;
+	if ((cached != null) && (cached.objective >= sol.getObjective())) {
+	    file.setLastModified(System.currentTimeMillis());
+	    return;
+	}
+
+	// Written in a temporary file first, so that a cache file is never read half written
+	File tmp = new File(m_directory, file.getName() + ".tmp");
+	// Copied: the fingerprints of the instance are updated in place when it changes (online mode),
+	// the index must keep those of the file
+	long[] blocks = instance.getBlockFingerprints().clone();
+	long[] bits = sol.getBits();
+	try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+	    out.writeInt(MAGIC);
+	    out.writeLong(instance.getFingerprint());
+	    out.writeInt(instance.getNbItems());
+	    out.writeInt(instance.getNbConstraints());
+	    out.writeLong(sol.getObjective());
+	    out.writeInt(blocks.length);
+	    for (long block : blocks) {
+		out.writeLong(block);
+	    }
+	    for (long word : bits) {
+		out.writeLong(word);
+	    }
+	}
+	if (!tmp.renameTo(file)) {
+	    file.delete();
+	    if (!tmp.renameTo(file))
+		throw new IOException("The cache file : " + file.getPath() + " cannot be written.");
+	}
+	if (m_index != null) {
+	    Entry entry = new Entry();
+	    entry.file = file;
+	    entry.fingerprint = instance.getFingerprint();
+	    entry.nbItems = instance.getNbItems();
+	    entry.nbConstraints = instance.getNbConstraints();
+	    entry.objective = sol.getObjective();
+	    entry.blocks = blocks;
+	    index(entry);
+	}
+	evict();
+    }
+
+    /**
+     * @return The headers of the cache files by size of instance, read from the directory at the first call.
+     */
+    private Map<Long, List<Entry>> index() {
+	if (m_index == null) {
+	    m_index = new HashMap<>();
+	    for (File file : listFiles()) {
+		Entry entry = read(file, false);
+		if (entry != null)
+		    index(entry);
+	    }
+	}
+	return m_index;
+    }
+
+    /**
+     * Adds the header of a file to the index, in place of the previous header of the same file.
+     */
+    private void index(Entry entry) {
+	List<Entry> entries = m_index.computeIfAbsent(key(entry.nbItems, entry.nbConstraints), k -> new ArrayList<>());
+	entries.removeIf(e -> e.file.equals(entry.file));
+	entries.add(entry);
+    }
+
+    /**
+     * @return The key of the index for the instances of this size.
+     */
+    private static long key(int nbItems, int nbConstraints) {
+	return ((long) nbItems << 32) | nbConstraints;
+    }
+
+    /**
+     * Deletes the least recently used files while the size of the cache exceeds the maximum size.
+     */
+    private void evict() {
+	File[] files = listFiles();
+	long size = 0;
+	for (File file : files) {
+	    size += file.length();
+	}
+	Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+	for (int k = 0; (k < files.length) && (size > m_maxSize); k++) {
+	    size -= files[k].length();
+	    files[k].delete();
+	    if (m_index != null) {
+		File deleted = files[k];
+		for (List<Entry> entries : m_index.values()) {
+		    entries.removeIf(e -> e.file.equals(deleted));
+		}
+	    }
+	}
+    }
+
+    /**
+     * @return The files of the cache.
+     */
+    private File[] listFiles() {
+	File[] files = m_directory.listFiles((dir, name) -> name.endsWith(EXTENSION));
+	return (files == null) ? new File[0] : files;
+    }
+
+    /**
+     * @param file : a cache file
+     * @param withBits : <code>true</code> to read the solution, <code>false</code> for the header only
+     * @return The entry, or <code>null</code> if the file is not a valid cache file.
+     */
+    private static Entry read(File file, boolean withBits) {
+	try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+	    if (in.readInt() != MAGIC)
+		return null;
+	    Entry entry = new Entry();
+	    entry.file = file;
+	    entry.fingerprint = in.readLong();
+	    entry.nbItems = in.readInt();
+	    entry.nbConstraints = in.readInt();
+	    entry.objective = in.readLong();
+	    entry.blocks = new long[in.readInt()];
+	    for (int b = 0; b < entry.blocks.length; b++) {
+		entry.blocks[b] = in.readLong();
+	    }
+	    if (withBits) {
+		entry.bits = new long[(entry.nbItems + 63) >>> 6];
+		for (int w = 0; w < entry.bits.length; w++) {
+		    entry.bits[w] = in.readLong();
+		}
+	    }
+	    return entry;
+	} catch (IOException e) {
+	    // Truncated or unreadable file: ignored
+	    return null;
+	}
+    }
+
+}
@@ -0,0 +1,51 @@
+/*
+	mkp-framework
+	Copyright (C) 2013 Fabien Lehuede / Damien Prot / Axel Grimault
+
+	This program is free software; you can redistribute it and/or modify
+	it under the terms of the GNU General Public License as published by
+	the Free Software Foundation; either version 2 of the License, or
+	(at your option) any later version.
+
+	This program is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+	GNU General Public License for more details.
+
+	You should have received a copy of the GNU General Public License along
+	with this program; if not, write to the Free Software Foundation, Inc.,
+	51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package edu.emn.mkp;
+
+/**
+ * An algorithm that solves the MKP.
+ * 
+ * The engine is called by {@link MKPSolver#solve(long)}. It reads the problem data from the
+ * MKPSolver object and, when it terminates, the solution returned by
+ * {@link MKPSolver#getSolution()} must be the solution to return.
+ * 
+ * The engine must stop when the deadline of the solver ({@link MKPSolver#getDeadline()}) expires,
+ * and should offer each improvement to the incumbent of the solver ({@link MKPSolver#getIncumbent()}):
+ * if it does not stop in time, the incumbent is returned instead of its solution.
+ * 
+ * Engines are created by name through {@link SolverRegistry} (option <code>-solver</code> of {@link Main}).
+ * 
+ * @author Fabien Lehuede / Damien Prot / Axel Grimault 2016
+ * 
+ */
+public interface SolverEngine {
+
+    /**
+     * Solve the problem of <code>solver</code>.
+     * 
+     * Do not print text on the standard output, it is dedicated to the result analyzer.
+     * 
+     * @param solver : gives the problem data ({@link MKPSolver#getInstance()}), the initial solution
+     * ({@link MKPSolver#getSolution()}) and the time limit ({@link MKPSolver#getDeadline()}).
+     * @throws Exception May return some error, in particular if some index are wrong.
+     */
+    void solve(MKPSolver solver) throws Exception;
+
+}
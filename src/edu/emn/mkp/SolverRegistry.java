@@ -0,0 +1,84 @@
+/*
+	mkp-framework
+	Copyright (C) 2013 Fabien Lehuede / Damien Prot / Axel Grimault
+
+	This program is free software; you can redistribute it and/or modify
+	it under the terms of the GNU General Public License as published by
+	the Free Software Foundation; either version 2 of the License, or
+	(at your option) any later version.
+
+	This program is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+	GNU General Public License for more details.
+
+	You should have received a copy of the GNU General Public License along
+	with this program; if not, write to the Free Software Foundation, Inc.,
+	51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package edu.emn.mkp;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * The list of the solver engines that can be selected by name
+ * (option <code>-solver</code> of {@link Main}).
+ * 
+ * To make a new engine available, add a line to the static block below.
+ * 
+ * @author Fabien Lehuede / Damien Prot / Axel Grimault 2016
+ * 
+ */
+public class SolverRegistry {
+
+    /** Name of the engine used when no engine is selected */
+    public static final String DEFAULT = "greedy";
+
+    /** Factory of each engine, by name */
+    private static final Map<String, Supplier<SolverEngine>> s_engines = new LinkedHashMap<>();
+
+    static {
+	register("greedy", GreedySolver::new);
+	register("surrogate", SurrogateGreedySolver::new);
+	register("localsearch", LocalSearchSolver::new);
+	register("portfolio", PortfolioSolver::new);
+	register("bnb", BranchAndBoundSolver::new);
+	register("tabu", TabuSearchSolver::new);
+	register("ga", GeneticSolver::new);
+	register("dp", DynamicProgrammingSolver::new);
+    }
+
+    /**
+     * Make an engine available.
+     * 
+     * @param name : name of the engine
+     * @param factory : creates a new engine each time it is called
+     */
+    public static synchronized void register(String name, Supplier<SolverEngine> factory) {
+	s_engines.put(name, factory);
+    }
+
+    /**
+     * @param name : name of the engine
+     * @return A new engine.
+     * @throws IllegalArgumentException Throw an exception if no engine has this name.
+     */
+    public static synchronized SolverEngine create(String name) {
+	Supplier<SolverEngine> factory = s_engines.get(name);
+	if (factory == null)
+	    throw new IllegalArgumentException(name + " is not a solver. Available solvers: " + getNames());
+	return factory.get();
+    }
+
+    /**
+     * @return The names of the available engines.
+     */
+    public static synchronized Set<String> getNames() {
+	return s_engines.keySet();
+    }
+
+}
@@ -0,0 +1,250 @@
+/*
+	mkp-framework
+	Copyright (C) 2013 Fabien Lehuede / Damien Prot / Axel Grimault
+
+	This program is free software; you can redistribute it and/or modify
+	it under the terms of the GNU General Public License as published by
+	the Free Software Foundation; either version 2 of the License, or
+	(at your option) any later version.
+
+	This program is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+	GNU General Public License for more details.
+
+	You should have received a copy of the GNU General Public License along
+	with this program; if not, write to the Free Software Foundation, Inc.,
+	51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package edu.emn.mkp;
+
+import java.util.Arrays;
+
+/**
+ * Greedy engine (<code>-solver surrogate</code>) based on the efficiency of the items.
+ * 
+ * The constraints are aggregated in a single surrogate constraint with one multiplier per
+ * constraint, by default the dual values of the linear relaxation. The efficiency of item j is its profit divided by its surrogate weight
+ * <code>sum_i u_i * w_ji</code>. The initial solution is repaired in two phases:
+ *  - DROP: while the solution is unfeasible, remove the selected items by increasing efficiency;
+ *  - ADD: add the items that fit by decreasing efficiency.
+ * From an empty solution, this is the greedy construction by decreasing efficiency.
+ * By default, the engine first repairs the solution with {@link #capacityMultipliers(Instance)},
+ * which do not need the relaxation, and offers it to the incumbent; it then repairs the initial
+ * solution again with the dual values, if the relaxation is solved within {@link #LP_SHARE} of the time left.
+ * 
+ * The static methods are available to the other engines (initial solution, repair operator).
+ * 
+ * @author Fabien Lehuede / Damien Prot / Axel Grimault 2016
+ * 
+ */
+public class SurrogateGreedySolver implements SolverEngine {
+
+    // ---------------------------------------------
+    // --------------- ATTRIBUTES ------------------
+    // ---------------------------------------------
+
+    /** Share of the time left that may be spent to solve the relaxation in {@link #dualMultipliers(Instance, Deadline)} */
+    public static final double LP_SHARE = 0.25;
+
+    /** Multipliers of the surrogate constraint, <code>null</code> for {@link #dualMultipliers(Instance, Deadline)} */
+    private double[] m_multipliers;
+
+    // -------------------------------------
+    // ------------ CONSTRUCTOR ------------
+    // -------------------------------------
+
+    /**
+     * Creates an engine using the multipliers {@link #dualMultipliers(Instance, Deadline)}.
+     */
+    public SurrogateGreedySolver() {
+	this(null);
+    }
+
+    /**
+     * Creates an engine using the given multipliers.
+     * 
+     * @param multipliers : one non-negative multiplier per constraint
+     */
+    public SurrogateGreedySolver(double[] multipliers) {
+	m_multipliers = multipliers;
+    }
+
+    // -------------------------------------
+    // -------------- METHODS --------------
+    // -------------------------------------
+
+    @Override
+    public void solve(MKPSolver solver) throws Exception {
+	Instance instance = solver.getInstance();
+	Solution solution = solver.getSolution();
+	if (m_multipliers != null) {
+	    repair(solution, efficiencyOrder(instance, m_multipliers));
+	    return;
+	}
+
+	// Construction independent of the relaxation
+	Solution initial = solution.clone();
+	repair(solution, efficiencyOrder(instance, capacityMultipliers(instance)));
+	solver.getIncumbent().offer(solution);
+
+	double[] duals = duals(instance, solver.getDeadline());
+	if (duals != null) {
+	    repair(initial, efficiencyOrder(instance, duals));
+	    if (initial.getObjective() > solution.getObjective())
+		solver.setSolution(initial);
+	}
+    }
+
+    /**
+     * Multipliers given by the dual values of the linear relaxation if it is already solved or if
+     * it is solved quickly ({@link LPRelaxation#isCheap(Instance)}), {@link #capacityMultipliers(Instance)} otherwise.
+     * 
+     * @param instance : the problem data
+     * @return One multiplier per constraint.
+     */
+    public static double[] dualMultipliers(Instance instance) {
+	double[] duals = duals(instance, null);
+	return (duals != null) ? duals : capacityMultipliers(instance);
+    }
+
+    /**
+     * Multipliers given by the dual values of the linear relaxation if it is solved within
+     * {@link #LP_SHARE} of the time left before the deadline, {@link #capacityMultipliers(Instance)} otherwise.
+     * 
+     * @param instance : the problem data
+     * @param deadline : deadline of the search
+     * @return One multiplier per constraint.
+     */
+    public static double[] dualMultipliers(Instance instance, Deadline deadline) {
+	double[] duals = duals(instance, deadline);
+	return (duals != null) ? duals : capacityMultipliers(instance);
+    }
+
+    /**
+     * @param instance : the problem data
+     * @param deadline : deadline of the search, <code>null</code> to solve the relaxation only if it is cheap
+     * @return The dual values of the optimal relaxation, <code>null</code> if it is not solved in the
+     * time given or if all the dual values are 0 (no constraint is binding).
+     */
+    private static double[] duals(Instance instance, Deadline deadline) {
+	LPRelaxation relaxation = instance.getRelaxationIfSolved();
+	if ((relaxation == null) && LPRelaxation.isCheap(instance)) {
+	    relaxation = instance.getRelaxation();
+	} else if ((relaxation == null) && (deadline != null)) {
+	    // Not tried if it is not expected to end in time: the time would be lost
+	    long timeLimit = (long) (deadline.getRemainingTime() * LP_SHARE);
+	    if (LPRelaxation.isCheap(instance, timeLimit))
+		relaxation = instance.getRelaxation(new Deadline(deadline, timeLimit));
+	}
+	if ((relaxation == null) || !relaxation.isOptimal())
+	    return null;
+	double[] duals = relaxation.getDuals();
+	for (double dual : duals) {
+	    if (dual > 0)
+		return duals;
+	}
+	return null;
+    }
+
+    /**
+     * Multipliers that normalise each constraint by its capacity: <code>u_i = 1 / c_i</code>.
+     * 
+     * @param instance : the problem data
+     * @return One multiplier per constraint.
+     */
+    public static double[] capacityMultipliers(Instance instance) {
+	double[] multipliers = new double[instance.getNbConstraints()];
+	for (int i = 0; i < multipliers.length; i++) {
+	    multipliers[i] = 1.0 / Math.max(1, instance.capacity(i));
+	}
+	return multipliers;
+    }
+
+    /**
+     * @param instance : the problem data
+     * @param multipliers : one multiplier per constraint
+     * @return For each item, its profit divided by its surrogate weight (infinite if the surrogate weight is 0).
+     */
+    public static double[] efficiencies(Instance instance, double[] multipliers) {
+	int nbItems = instance.getNbItems();
+	int nbConstraints = instance.getNbConstraints();
+	double[] efficiency = new double[nbItems];
+	for (int j = 0; j < nbItems; j++) {
+	    double weight = 0;
+	    for (int i = 0; i < nbConstraints; i++) {
+		weight += multipliers[i] * instance.weight(j, i);
+	    }
+	    efficiency[j] = (weight > 0) ? instance.profit(j) / weight : Double.POSITIVE_INFINITY;
+	}
+	return efficiency;
+    }
+
+    /**
+     * @param instance : the problem data
+     * @param multipliers : one multiplier per constraint
+     * @return The indices of the items sorted by decreasing efficiency.
+     */
+    public static int[] efficiencyOrder(Instance instance, double[] multipliers) {
+	return sortDecreasing(efficiencies(instance, multipliers));
+    }
+
+    /**
+     * @param keys : one value per index
+     * @return The indices sorted by decreasing value (ties broken by increasing index).
+     */
+    static int[] sortDecreasing(final double[] keys) {
+	Integer[] order = new Integer[keys.length];
+	for (int j = 0; j < keys.length; j++) {
+	    order[j] = j;
+	}
+	Arrays.sort(order, (a, b) -> Double.compare(keys[b], keys[a]));
+	int[] result = new int[keys.length];
+	for (int j = 0; j < keys.length; j++) {
+	    result[j] = order[j];
+	}
+	return result;
+    }
+
+    /**
+     * DROP / ADD repair: while the solution is unfeasible, remove the selected items from the end of
+     * <code>order</code>, then add the items that fit from the beginning of <code>order</code>.
+     * 
+     * Used once to build a solution: the ADD phase first checks all the items at once
+     * ({@link Solution#fitAll(int[])}), and only tries the items that fit.
+     * 
+     * @param solution : the solution to repair, feasible at the end
+     * @param order : all the items, sorted by decreasing efficiency
+     */
+    public static void repair(Solution solution, int[] order) {
+	// DROP phase
+	for (int k = order.length - 1; (k >= 0) && !solution.isFeasible(); k--) {
+	    if (solution.selected(order[k]))
+		solution.remove(order[k]);
+	}
+	// ADD phase: the items that do not fit now will never fit, the weights only grow during the phase
+	int[] fit = new int[solution.getInstance().getNbItems()];
+	solution.fitAll(fit);
+	for (int j : order) {
+	    if ((fit[j] >= 0) && !solution.selected(j) && solution.fits(j)) {
+		solution.add(j);
+	    }
+	}
+    }
+
+    /**
+     * ADD phase: add the items that fit, following the order given.
+     * 
+     * @param solution : a feasible solution
+     * @param order : the items to try, by decreasing priority
+     */
+    public static void fill(Solution solution, int[] order) {
+	for (int j : order) {
+	    if (!solution.selected(j) && solution.fits(j)) {
+		solution.add(j);
+	    }
+	}
+    }
+
+}
@@ -0,0 +1,262 @@
+/*
+	mkp-framework
+	Copyright (C) 2013 Fabien Lehuede / Damien Prot / Axel Grimault
+
+	This program is free software; you can redistribute it and/or modify
+	it under the terms of the GNU General Public License as published by
+	the Free Software Foundation; either version 2 of the License, or
+	(at your option) any later version.
+
+	This program is distributed in the hope that it will be useful,
+	but WITHOUT ANY WARRANTY; without even the implied warranty of
+	MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+	GNU General Public License for more details.
+
+	You should have received a copy of the GNU General Public License along
+	with this program; if not, write to the Free Software Foundation, Inc.,
+	51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package edu.emn.mkp;
+
+import java.util.Random;
+
+/**
+ * Tabu search engine (<code>-solver tabu</code>) with add, drop and swap moves.
+ * 
+ * At each iteration the best move that is not tabu is performed, even if it makes the solution
+ * worse. The moves are evaluated with the profit minus a penalty on the violation of the capacities:
+ * the search may cross the feasibility boundary (strategic oscillation). The penalty increases while
+ * the solution is unfeasible and decreases while it is feasible. All the add and drop moves are
+ * evaluated, the swap moves only for the least efficient items of the knapsack.
+ * 
+ * An item moved at iteration k cannot be moved again before iteration k + tenure (plus a random
+ * part), unless the move gives a feasible solution better than the best one (aspiration).
+ * The tabu status is the array of the expiry iterations, the weights of the knapsack are those
+ * maintained incrementally by {@link Solution#applyFlip(int)}.
+ * 
+ * Each improvement of the best solution is offered to the incumbent of the solver; after a number
+ * of iterations without improvement, the search restarts from the incumbent.
+ * 
+ * @author Fabien Lehuede / Damien Prot / Axel Grimault 2016
+ * 
+ */
+public class TabuSearchSolver implements SolverEngine {
+
+    // ---------------------------------------------
+    // --------------- ATTRIBUTES ------------------
+    // ---------------------------------------------
+
+    /** Kinds of moves */
+    private static final int ADD = 0, DROP = 1, SWAP = 2;
+
+    /** Minimum number of iterations an item stays tabu */
+    private final int m_tenure;
+
+    /** Number of items of the knapsack for which the swap moves are evaluated at each iteration */
+    private final int m_nbSwapItems;
+
+    /** Number of moves evaluated by the last search */
+    private long m_nbMoves = 0;
+
+    // -------------------------------------
+    // ------------ CONSTRUCTOR ------------
+    // -------------------------------------
+
+    /**
+     * Creates an engine with a tenure of 3 iterations, evaluating the swaps of 8 items per iteration.
+     */
+    public TabuSearchSolver() {
+	this(3, 8);
+    }
+
+    /**
+     * @param tenure : minimum number of iterations an item stays tabu
+     * @param nbSwapItems : number of items of the knapsack for which the swap moves are evaluated at each iteration
+     */
+    public TabuSearchSolver(int tenure, int nbSwapItems) {
+	m_tenure = tenure;
+	m_nbSwapItems = nbSwapItems;
+    }
+
+    // --------------------------------------------
+    // ------------ GETTERS AND SETTERS -----------
+    // --------------------------------------------
+
+    /**
+     * @return Number of moves evaluated by the last search.
+     */
+    public long getNbMoves() {
+	return m_nbMoves;
+    }
+
+    // -------------------------------------
+    // -------------- METHODS --------------
+    // -------------------------------------
+
+    @Override
+    public void solve(MKPSolver solver) throws Exception {
+	Deadline deadline = solver.getDeadline();
+	Instance instance = solver.getInstance();
+	Incumbent incumbent = solver.getIncumbent();
+	SearchMetrics metrics = solver.getMetrics();
+	Random random = new Random(solver.getSeed());
+	int nbItems = instance.getNbItems();
+	int nbConstraints = instance.getNbConstraints();
+	int[] weights = instance.getWeightsByItem();
+	int[] capacities = instance.getCapacities();
+	int[] profits = instance.getProfits();
+	int[] order = SurrogateGreedySolver.efficiencyOrder(instance,
+		SurrogateGreedySolver.dualMultipliers(instance, deadline));
+
+	Solution current = solver.getSolution();
+	SurrogateGreedySolver.repair(current, order);
+	incumbent.offer(current);
+	Solution best = current.clone();
+	long[] bits = current.getBits();
+
+	// Tabu status: iteration until which each item cannot be moved
+	int[] tabu = new int[nbItems];
+	// Slack and violation of each constraint for the current solution
+	long[] slack = new long[nbConstraints];
+	long[] violation = new long[nbConstraints];
+	int[] swapItems = new int[Math.max(1, m_nbSwapItems)];
+
+	// Initial penalty: average profit per unit of weight of a constraint
+	double totalProfit = 0;
+	double totalWeight = 0;
+	for (int j = 0; j < nbItems; j++) {
+	    totalProfit += profits[j];
+	}
+	for (int w : weights) {
+	    totalWeight += w;
+	}
+	double initialPenalty = (totalWeight > 0) ? totalProfit * nbConstraints / totalWeight : 1;
+	double penalty = initialPenalty;
+
+	long nbMoves = 0;
+	int iteration = 0;
+	int idle = 0;
+	int restart = 20 * nbItems;
+	// An iteration evaluates all the items: the clock is read at each one
+	while (!deadline.isExpired()) {
+	    iteration++;
+	    long nbMovesBefore = nbMoves;
+	    long totalViolation = 0;
+	    for (int i = 0; i < nbConstraints; i++) {
+		slack[i] = capacities[i] - current.getWeight(i);
+		violation[i] = Math.max(0, -slack[i]);
+		totalViolation += violation[i];
+	    }
+	    long objective = current.getObjective();
+	    long bestObjective = best.getObjective();
+
+	    int bestKind = -1;
+	    int bestOut = -1;
+	    int bestIn = -1;
+	    double bestScore = Double.NEGATIVE_INFINITY;
+
+	    // Add and drop moves
+	    for (int j = 0; j < nbItems; j++) {
+		boolean selected = (bits[j >>> 6] & (1L << j)) != 0;
+		int offset = j * nbConstraints;
+		long delta = 0;
+		if (selected) {
+		    for (int i = 0; i < nbConstraints; i++) {
+			delta += Math.max(0, -slack[i] - weights[offset + i]) - violation[i];
+		    }
+		} else {
+		    for (int i = 0; i < nbConstraints; i++) {
+			delta += Math.max(0, weights[offset + i] - slack[i]) - violation[i];
+		    }
+		}
+		int profit = selected ? -profits[j] : profits[j];
+		double score = profit - penalty * delta;
+		if ((score > bestScore) && ((tabu[j] <= iteration)
+			|| ((totalViolation + delta == 0) && (objective + profit > bestObjective)))) {
+		    bestScore = score;
+		    bestKind = selected ? DROP : ADD;
+		    bestOut = j;
+		    bestIn = j;
+		}
+	    }
+	    nbMoves += nbItems;
+
+	    // Swap moves for the least efficient items of the knapsack that are not tabu
+	    int nbSwapItems = 0;
+	    for (int k = nbItems - 1; (k >= 0) && (nbSwapItems < swapItems.length); k--) {
+		int out = order[k];
+		if (((bits[out >>> 6] & (1L << out)) != 0) && (tabu[out] <= iteration))
+		    swapItems[nbSwapItems++] = out;
+	    }
+	    for (int k = 0; k < nbSwapItems; k++) {
+		int out = swapItems[k];
+		int offsetOut = out * nbConstraints;
+		for (int in = 0; in < nbItems; in++) {
+		    if ((bits[in >>> 6] & (1L << in)) != 0)
+			continue;
+		    // Without violation, the penalty cannot increase the score
+		    if ((totalViolation == 0) && (profits[in] - profits[out] <= bestScore))
+			continue;
+		    int offsetIn = in * nbConstraints;
+		    long delta = 0;
+		    for (int i = 0; i < nbConstraints; i++) {
+			delta += Math.max(0, weights[offsetIn + i] - weights[offsetOut + i] - slack[i]) - violation[i];
+		    }
+		    int profit = profits[in] - profits[out];
+		    double score = profit - penalty * delta;
+		    if ((score > bestScore) && ((tabu[in] <= iteration)
+			    || ((totalViolation + delta == 0) && (objective + profit > bestObjective)))) {
+			bestScore = score;
+			bestKind = SWAP;
+			bestOut = out;
+			bestIn = in;
+		    }
+		    nbMoves++;
+		}
+	    }
+
+	    // Perform the move, the items moved become tabu
+	    metrics.add(SearchMetrics.EVALUATED, nbMoves - nbMovesBefore);
+	    if (bestKind < 0)
+		continue;
+	    metrics.add(SearchMetrics.ACCEPTED, 1);
+	    if (bestKind == SWAP) {
+		current.applySwap(bestOut, bestIn);
+		tabu[bestOut] = iteration + m_tenure + random.nextInt(m_tenure + 1);
+		tabu[bestIn] = iteration + m_tenure + random.nextInt(m_tenure + 1);
+	    } else {
+		current.applyFlip(bestIn);
+		tabu[bestIn] = iteration + m_tenure + random.nextInt(m_tenure + 1);
+	    }
+
+	    // Strategic oscillation: the penalty follows the side of the boundary
+	    boolean feasible = current.isFeasible();
+	    if (feasible) {
+		penalty = Math.max(initialPenalty * 1e-2, penalty * 0.98);
+	    } else {
+		penalty = Math.min(initialPenalty * 1e2, penalty * 1.05);
+	    }
+
+	    if (feasible && (current.getObjective() > best.getObjective())) {
+		best = current.clone();
+		incumbent.offer(best);
+		idle = 0;
+	    } else if (++idle >= restart) {
+		// Restart from the best solution known by all the engines
+		Solution shared = incumbent.get();
+		current = (shared != null) ? shared.clone() : best.clone();
+		bits = current.getBits();
+		penalty = initialPenalty;
+		idle = 0;
+		metrics.add(SearchMetrics.RESTARTS, 1);
+		metrics.event(SearchMetrics.RESTART, current.getObjective());
+	    }
+	}
+	m_nbMoves = nbMoves;
+	solver.setSolution(best);
+	System.err.printf("Tabu search: %d iterations, %.1f million moves per second%n", iteration,
+		nbMoves / Math.max(1.0, deadline.getElapsedTime()) / 1000.0);
+    }
+
+}